@@ -10,6 +10,7 @@ import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.ArrayList;
@@ -18,6 +19,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -35,7 +37,10 @@ import org.json.JSONException;
 
 import ch.qos.logback.classic.Level;
 import org.cpilint.api.CloudIntegrationApi;
+import org.cpilint.api.CloudIntegrationApiError;
 import org.cpilint.api.CloudIntegrationOdataApi;
+import org.cpilint.api.IflowArtifactCache;
+import org.cpilint.api.RequestPolicy;
 import org.cpilint.auth.AuthorizationServer;
 import org.cpilint.consumers.ConsoleIssueConsumer;
 import org.cpilint.consumers.ExemptionFilteringIssueConsumer;
@@ -50,6 +55,7 @@ import org.cpilint.suppliers.TenantIndividualPackagesSupplier;
 import org.cpilint.suppliers.TenantSingleArtifactsSupplier;
 import org.cpilint.suppliers.UnpackedFileIflowArtifactSupplier;
 import org.cpilint.util.HttpUtil;
+import org.cpilint.util.SaxonUtil;
 
 public final class CliClient {
 	
@@ -81,6 +87,22 @@ public final class CliClient {
 	private static final String CLI_OPTION_VERCHECK = "vercheck";
 	private static final String CLI_OPTION_SKIPVERCHECK = "skipvercheck";
 	private static final String CLI_OPTION_KEY = "key";
+	private static final String CLI_OPTION_THREADS = "threads";
+	private static final String CLI_OPTION_PREFETCH = "prefetch";
+	private static final String CLI_OPTION_SINGLE_PASS = "single-pass";
+	private static final String CLI_OPTION_DOWNLOADS = "downloads";
+	private static final String CLI_OPTION_EXPAND_PACKAGES = "expand-packages";
+	private static final String CLI_OPTION_CACHE = "cache";
+	private static final String CLI_OPTION_CACHE_SIZE = "cache-size";
+	private static final String CLI_OPTION_INCREMENTAL = "incremental";
+	private static final String CLI_OPTION_HTTP2 = "http2";
+	private static final String CLI_OPTION_GZIP = "gzip";
+	private static final String CLI_OPTION_RETRIES = "retries";
+	private static final String CLI_OPTION_RATE_LIMIT = "rate-limit";
+	private static final int DEFAULT_CACHE_SIZE_MEGABYTES = 1024;
+	private static final int DEFAULT_RETRIES = 3;
+	private static final Duration INITIAL_RETRY_BACKOFF = Duration.ofSeconds(1);
+	private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(60);
 	private static final String CPILINT_WIKI_URL = "https://github.com/mwittrock/cpilint/wiki";
 	private static final String SERVICE_KEY_FIELD_OAUTH = "oauth";
 	private static final String SERVICE_KEY_FIELD_CLIENTSECRET = "clientsecret";
@@ -154,7 +176,10 @@ public final class CliClient {
 		 * it turns out there's a problem with the rules file.  
 		 */
 		RulesFile rulesFile = rulesFileFromCommandLine(cl);
-		IflowArtifactSupplier supplier = supplierFromCommandLine(mode, cl);
+		RequestPolicy requestPolicy = requestPolicyFromCommandLine(cl);
+		IflowArtifactSupplier supplier = supplierFromCommandLine(mode, cl, requestPolicy);
+		int threads = threadsFromCommandLine(cl);
+		int prefetch = prefetchFromCommandLine(cl, threads);
 		/*
 		 * If there are any exemptions, use the IssueConsumer that filters out
 		 * issues based on exemptions. Otherwise use the default IssueConsumer.
@@ -178,7 +203,8 @@ public final class CliClient {
 			versionCheck(false);
 		}
 		// Now, create a CpiLint object and run the test.
-		CpiLint linter = new CpiLint(supplier, rulesFile.getRules(), consumer);
+		Optional<LintResultsCache> resultsCache = resultsCacheFromCommandLine(cl, rulesFile);
+		CpiLint linter = new CpiLint(supplier, rulesFile.getRules(), consumer, threads, prefetch, cl.hasOption(CLI_OPTION_SINGLE_PASS), resultsCache);
 		try {
 			linter.run();
 		} catch (IflowArtifactSupplierError e) {
@@ -189,6 +215,10 @@ public final class CliClient {
 			exitWithErrorMessage("An error occurred: " + e.getMessage());
 		}
 		logger.info("Iflow artifacts supplied: {}", supplier.artifactsSupplied());
+		if (requestPolicy.getRequests() > 0) {
+			logger.info("API requests: {} sent, {} retried ({} ms waiting to retry), {} ms throttled by the rate limit",
+				requestPolicy.getRequests(), requestPolicy.getRetries(), requestPolicy.getRetryWaitMillis(), requestPolicy.getThrottledMillis());
+		}
 		logger.info("Issues found: {}", consumer.issuesConsumed());
 		if (consumer.issuesConsumed() > 0) {
 			System.out.println();
@@ -295,7 +325,76 @@ public final class CliClient {
 		return rulesFile;
 	}
 
-	private static IflowArtifactSupplier supplierFromCommandLine(RunMode mode, CommandLine cl) {
+	private static int threadsFromCommandLine(CommandLine cl) {
+		/*
+		 * Unless told otherwise, inspect iflow artifacts using one worker
+		 * thread per available processor.
+		 */
+		int threads = positiveIntegerOptionValue(cl, CLI_OPTION_THREADS, Runtime.getRuntime().availableProcessors());
+		logger.info("Number of worker threads: {}", threads);
+		return threads;
+	}
+
+	private static int prefetchFromCommandLine(CommandLine cl, int threads) {
+		/*
+		 * Unless told otherwise, let as many iflow artifacts wait for
+		 * inspection as there are worker threads.
+		 */
+		int prefetch = positiveIntegerOptionValue(cl, CLI_OPTION_PREFETCH, threads);
+		logger.info("Number of prefetched iflow artifacts: {}", prefetch);
+		return prefetch;
+	}
+
+	private static int downloadsFromCommandLine(CommandLine cl) {
+		/*
+		 * Unless told otherwise, retrieve iflow artifacts from the tenant
+		 * one at a time.
+		 */
+		int downloads = positiveIntegerOptionValue(cl, CLI_OPTION_DOWNLOADS, 1);
+		logger.info("Maximum number of concurrent iflow downloads: {}", downloads);
+		return downloads;
+	}
+
+	private static RequestPolicy requestPolicyFromCommandLine(CommandLine cl) {
+		/*
+		 * Unless told otherwise, retry failed API requests a few times, and
+		 * do not limit the request rate.
+		 */
+		int retries = nonNegativeIntegerOptionValue(cl, CLI_OPTION_RETRIES, DEFAULT_RETRIES);
+		int rateLimit = cl.hasOption(CLI_OPTION_RATE_LIMIT) ? positiveIntegerOptionValue(cl, CLI_OPTION_RATE_LIMIT, 1) : 0;
+		logger.info("Maximum number of retries per API request: {}", retries);
+		if (rateLimit > 0) {
+			logger.info("API requests limited to {} per second", rateLimit);
+		}
+		return new RequestPolicy(retries, INITIAL_RETRY_BACKOFF, MAX_RETRY_BACKOFF, rateLimit);
+	}
+
+	private static int positiveIntegerOptionValue(CommandLine cl, String option, int defaultValue) {
+		return integerOptionValue(cl, option, defaultValue, 1, "a positive integer");
+	}
+
+	private static int nonNegativeIntegerOptionValue(CommandLine cl, String option, int defaultValue) {
+		return integerOptionValue(cl, option, defaultValue, 0, "zero or a positive integer");
+	}
+
+	private static int integerOptionValue(CommandLine cl, String option, int defaultValue, int minimum, String expected) {
+		if (!cl.hasOption(option)) {
+			return defaultValue;
+		}
+		String optionValue = cl.getOptionValue(option);
+		int value = minimum - 1;
+		try {
+			value = Integer.parseInt(optionValue);
+		} catch (NumberFormatException e) {
+			logger.error(String.format("Unable to parse value of option -%s", option), e);
+		}
+		if (value < minimum) {
+			exitWithErrorMessage(String.format("The value of the -%s option must be %s; got '%s'.", option, expected, optionValue));
+		}
+		return value;
+	}
+
+	private static IflowArtifactSupplier supplierFromCommandLine(RunMode mode, CommandLine cl, RequestPolicy requestPolicy) {
 		/*
 		 * We're assuming that the command line arguments have been validated at
 		 * this point. I.e. we can safely assume that the arguments describe
@@ -306,9 +405,9 @@ public final class CliClient {
 			case DIRECTORY_SUPPLIER_MODE -> directorySupplierFromCommandLine(cl);
 			case FILE_SUPPLIER_MODE -> fileSupplierFromCommandLine(cl);
 			case UNPACKED_FILE_SUPPLIER_MODE -> unpackedFileSupplierFromCommandLine(cl);
-			case TENANT_SUPPLIER_SINGLE_MODE -> tenantSupplierSingleFromCommandLine(cl);
-			case TENANT_SUPPLIER_MULTI_MODE ->tenantSupplierMultiFromCommandLine(cl);
-			case TENANT_SUPPLIER_PACKAGES_MODE -> tenantSupplierPackagesFromCommandLine(cl);
+			case TENANT_SUPPLIER_SINGLE_MODE -> tenantSupplierSingleFromCommandLine(cl, requestPolicy);
+			case TENANT_SUPPLIER_MULTI_MODE ->tenantSupplierMultiFromCommandLine(cl, requestPolicy);
+			case TENANT_SUPPLIER_PACKAGES_MODE -> tenantSupplierPackagesFromCommandLine(cl, requestPolicy);
 			default -> throw new AssertionError("Unexpected RunMode: " + mode);
 		};
 	}
@@ -378,36 +477,42 @@ public final class CliClient {
 		return new UnpackedFileIflowArtifactSupplier(dirPaths);
 	}
 	
-	private static IflowArtifactSupplier tenantSupplierSingleFromCommandLine(CommandLine cl) {
-		CloudIntegrationApi api = cloudIntegrationApiFromCommandLine(cl);
+	private static IflowArtifactSupplier tenantSupplierSingleFromCommandLine(CommandLine cl, RequestPolicy requestPolicy) {
+		CloudIntegrationApi api = cloudIntegrationApiFromCommandLine(cl, requestPolicy);
 		Set<String> fetchIflowArtifactIds = new HashSet<>(Arrays.asList(cl.getOptionValues(CLI_OPTION_IFLOWS)));
-		return new TenantSingleArtifactsSupplier(api, fetchIflowArtifactIds);
+		return new TenantSingleArtifactsSupplier(api, fetchIflowArtifactIds, downloadsFromCommandLine(cl));
 	}
 
-	private static IflowArtifactSupplier tenantSupplierMultiFromCommandLine(CommandLine cl) {
-		CloudIntegrationApi api = cloudIntegrationApiFromCommandLine(cl);
+	private static IflowArtifactSupplier tenantSupplierMultiFromCommandLine(CommandLine cl, RequestPolicy requestPolicy) {
+		CloudIntegrationApi api = cloudIntegrationApiFromCommandLine(cl, requestPolicy);
 		boolean skipSapPackages = cl.hasOption(CLI_OPTION_SKIP_SAP_PACKAGES);
 		boolean skipDrafts = cl.hasOption(CLI_OPTION_SKIP_DRAFTS);
 		Set<String> skipIflowArtifactIds = cl.hasOption(CLI_OPTION_SKIP_IFLOWS) ? new HashSet<>(Arrays.asList(cl.getOptionValues(CLI_OPTION_SKIP_IFLOWS))) : Collections.emptySet();
 		Set<String> skipPackageIds = cl.hasOption(CLI_OPTION_SKIP_PACKAGES) ? new HashSet<>(Arrays.asList(cl.getOptionValues(CLI_OPTION_SKIP_PACKAGES))) : Collections.emptySet();
-		return new TenantAllArtifactsSupplier(api, skipSapPackages, skipDrafts, skipIflowArtifactIds, skipPackageIds);
+		return new TenantAllArtifactsSupplier(api, skipSapPackages, skipDrafts, skipIflowArtifactIds, skipPackageIds, downloadsFromCommandLine(cl), cl.hasOption(CLI_OPTION_EXPAND_PACKAGES));
 	}
 	
-	private static IflowArtifactSupplier tenantSupplierPackagesFromCommandLine(CommandLine cl) {
-		CloudIntegrationApi api = cloudIntegrationApiFromCommandLine(cl);
+	private static IflowArtifactSupplier tenantSupplierPackagesFromCommandLine(CommandLine cl, RequestPolicy requestPolicy) {
+		CloudIntegrationApi api = cloudIntegrationApiFromCommandLine(cl, requestPolicy);
 		boolean skipDrafts = cl.hasOption(CLI_OPTION_SKIP_DRAFTS);
 		Set<String> skipIflowArtifactIds = cl.hasOption(CLI_OPTION_SKIP_IFLOWS) ? new HashSet<>(Arrays.asList(cl.getOptionValues(CLI_OPTION_SKIP_IFLOWS))) : Collections.emptySet();
 		Set<String> packageIds = new HashSet<>(Arrays.asList(cl.getOptionValues(CLI_OPTION_PACKAGES)));
-		return new TenantIndividualPackagesSupplier(api, skipDrafts, packageIds, skipIflowArtifactIds);
+		return new TenantIndividualPackagesSupplier(api, skipDrafts, packageIds, skipIflowArtifactIds, downloadsFromCommandLine(cl), cl.hasOption(CLI_OPTION_EXPAND_PACKAGES));
 	}
 
-	private static CloudIntegrationApi cloudIntegrationApiFromCommandLine(CommandLine cl) {
+	private static CloudIntegrationApi cloudIntegrationApiFromCommandLine(CommandLine cl, RequestPolicy requestPolicy) {
 		CloudIntegrationApi api = null;
+		// The API and the authorization server share one client, and with it its connections.
+		final HttpClient httpClient = httpClientFromCommandLine(cl);
+		final boolean acceptGzip = cl.hasOption(CLI_OPTION_GZIP);
+		if (acceptGzip) {
+			logger.info("Compressed API responses will be requested");
+		}
 		if (basicAuthenticationMode(cl)) {
 			final String hostname = cl.getOptionValue(CLI_OPTION_HOST);
 			final String username = cl.getOptionValue(CLI_OPTION_USERNAME);
 			final char[] password = cl.hasOption(CLI_OPTION_PASSWORD) ? cl.getOptionValue(CLI_OPTION_PASSWORD).toCharArray() : promptForPassword(username);
-			api = new CloudIntegrationOdataApi(hostname, username, password);
+			api = new CloudIntegrationOdataApi(hostname, username, password, SaxonUtil.getSharedProcessor(), artifactCacheFromCommandLine(cl), requestPolicy, httpClient, acceptGzip);
 		} else if (oauthClientCredentialsMode(cl)) {
 			final Path keyPath = Paths.get(cl.getOptionValue(CLI_OPTION_KEY));
 			final JSONObject key = readServiceKey(keyPath).getJSONObject(SERVICE_KEY_FIELD_OAUTH);
@@ -427,8 +532,8 @@ public final class CliClient {
 				logger.error("Bad token URL in service key", e);
 				exitWithErrorMessage("Malformed token URL in service key.");
 			}
-			final AuthorizationServer authServer = AuthorizationServer.newInstance(clientId, clientSecret, tokenUrl);
-			api = new CloudIntegrationOdataApi(hostname, authServer);
+			final AuthorizationServer authServer = AuthorizationServer.newInstance(clientId, clientSecret, tokenUrl, httpClient);
+			api = new CloudIntegrationOdataApi(hostname, authServer, SaxonUtil.getSharedProcessor(), artifactCacheFromCommandLine(cl), requestPolicy, httpClient, acceptGzip);
 		} else {
 			// This should never happen.
 			throw new AssertionError("Unexpected authentication mode");
@@ -436,6 +541,56 @@ public final class CliClient {
 		return api;
 	}
 
+	private static HttpClient httpClientFromCommandLine(CommandLine cl) {
+		final boolean http2 = cl.hasOption(CLI_OPTION_HTTP2);
+		if (http2) {
+			logger.info("HTTP/2 will be used where the server supports it");
+		}
+		return HttpUtil.newHttpClient(http2);
+	}
+
+	private static Optional<IflowArtifactCache> artifactCacheFromCommandLine(CommandLine cl) {
+		if (!cl.hasOption(CLI_OPTION_CACHE)) {
+			if (cl.hasOption(CLI_OPTION_CACHE_SIZE)) {
+				exitWithErrorMessage(String.format("The -%s option requires the -%s option.", CLI_OPTION_CACHE_SIZE, CLI_OPTION_CACHE));
+			}
+			return Optional.empty();
+		}
+		Path cacheDirectory = Paths.get(cl.getOptionValue(CLI_OPTION_CACHE));
+		if (Files.exists(cacheDirectory) && !Files.isDirectory(cacheDirectory)) {
+			exitWithErrorMessage(String.format("Cache path '%s' is not a directory.", cacheDirectory));
+		}
+		long cacheSizeMegabytes = positiveIntegerOptionValue(cl, CLI_OPTION_CACHE_SIZE, DEFAULT_CACHE_SIZE_MEGABYTES);
+		logger.info("Iflow artifact cache directory: {} (maximum size {} MB)", cacheDirectory, cacheSizeMegabytes);
+		IflowArtifactCache cache = null;
+		try {
+			cache = new IflowArtifactCache(cacheDirectory, cacheSizeMegabytes * 1024 * 1024);
+		} catch (CloudIntegrationApiError e) {
+			logger.error("Error opening iflow artifact cache", e);
+			exitWithErrorMessage(String.format("Unable to use cache directory '%s'.", cacheDirectory));
+		}
+		return Optional.of(cache);
+	}
+
+	private static Optional<LintResultsCache> resultsCacheFromCommandLine(CommandLine cl, RulesFile rulesFile) {
+		if (!cl.hasOption(CLI_OPTION_INCREMENTAL)) {
+			return Optional.empty();
+		}
+		Path resultsPath = Paths.get(cl.getOptionValue(CLI_OPTION_INCREMENTAL));
+		if (Files.exists(resultsPath) && !Files.isRegularFile(resultsPath)) {
+			exitWithErrorMessage(String.format("Results file '%s' is not a file.", resultsPath));
+		}
+		logger.info("Incremental run using results file {}", resultsPath);
+		LintResultsCache resultsCache = null;
+		try {
+			resultsCache = new LintResultsCache(resultsPath, VERSION, rulesFile.getDigest());
+		} catch (LintResultsCacheError e) {
+			logger.error("Error opening lint results cache", e);
+			exitWithErrorMessage(String.format("Unable to use results file '%s'.", resultsPath));
+		}
+		return Optional.of(resultsCache);
+	}
+
 	private static JSONObject readServiceKey(Path keyPath) {
 		// Make sure that the service key file exists and actually is a file.
 		if (Files.notExists(keyPath)) {
@@ -566,6 +721,7 @@ public final class CliClient {
 		System.out.println("* Use -skip-packages <id> ... to skip certain packages");
 		System.out.println("* Use -skip-drafts to skip draft iflows");
 		System.out.println("* Use -skip-iflows <id> ... to skip certain iflows");
+		System.out.println("* Use -expand-packages to list packages and their iflows in as few requests as possible");
 		System.out.println();
 		System.out.println("To inspect the iflows in individual packages in your tenant using OAuth 2.0:");
 		System.out.println(">cpilint -rules <file> -key <file> -packages <id> ...");
@@ -574,6 +730,7 @@ public final class CliClient {
 		System.out.println();
 		System.out.println("* Use -skip-drafts to skip draft iflows");
 		System.out.println("* Use -skip-iflows <id> ... to skip certain iflows");
+		System.out.println("* Use -expand-packages to list packages and their iflows in as few requests as possible");
 		System.out.println();
 		System.out.println("To inspect individual iflows in your tenant using OAuth 2.0:");
 		System.out.println(">cpilint -rules <file> -key <file> -iflows <id> ...");
@@ -588,6 +745,22 @@ public final class CliClient {
 		System.out.println();
 		System.out.println("To skip the automatic version check, add the -skipvercheck option.");
 		System.out.println();
+		System.out.println("To set the number of threads used to inspect iflows, add the -threads <n> option. The default is the number of available processors.");
+		System.out.println();
+		System.out.println("To set the number of iflows retrieved ahead of inspection, add the -prefetch <n> option. The default is the number of threads. Lower values use less memory.");
+		System.out.println();
+		System.out.println("To inspect each iflow once for all rules that support it, rather than once per rule, add the -single-pass option.");
+		System.out.println();
+		System.out.println("When inspecting iflow files or a directory on the local machine, add the -incremental <file> option to keep the results in a file, and only inspect iflows again when they or the rules have changed. If an extension rule reports issues at the end of the inspection without supporting incremental inspection, every iflow is inspected again.");
+		System.out.println();
+		System.out.println("When inspecting all iflows or individual packages in your tenant, add the -cache <dir> option to keep downloaded iflows in a local directory, and only download iflows again when they have changed. Use -cache-size <n> to limit the directory to n megabytes (the default is " + DEFAULT_CACHE_SIZE_MEGABYTES + ").");
+		System.out.println();
+		System.out.println("When inspecting iflows in your tenant, add the -downloads <n> option to retrieve up to n iflows or package listings at the same time. The default is one.");
+		System.out.println();
+		System.out.println("When inspecting iflows in your tenant, add the -http2 option to use HTTP/2 where possible, and the -gzip option to request compressed API responses.");
+		System.out.println();
+		System.out.println("When inspecting iflows in your tenant, API requests that fail or are throttled by the tenant are retried up to " + DEFAULT_RETRIES + " times. Use -retries <n> to change that, and -rate-limit <n> to send at most n API requests per second.");
+		System.out.println();
 		System.out.println("The full CPILint documentation is available in the project wiki: " + CPILINT_WIKI_URL);
 	}
 
@@ -763,6 +936,98 @@ public final class CliClient {
             .hasArg()
             .argName("file")
             .desc("Use this service key for authentication")
+            .build());
+        // Add the number of threads option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_THREADS)
+            .required(false)
+            .hasArg()
+            .argName("n")
+            .desc("Inspect iflow artifacts using this many threads")
+            .build());
+        // Add the prefetch option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_PREFETCH)
+            .required(false)
+            .hasArg()
+            .argName("n")
+            .desc("Let this many iflow artifacts wait for inspection")
+            .build());
+        // Add the single-pass option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_SINGLE_PASS)
+            .required(false)
+            .hasArg(false)
+            .desc("Inspect each iflow in a single pass for all rules that support it")
+            .build());
+        // Add the concurrent downloads option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_DOWNLOADS)
+            .required(false)
+            .hasArg()
+            .argName("n")
+            .desc("Retrieve up to this many iflow artifacts or package listings from the tenant at the same time")
+            .build());
+        // Add the cache option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_CACHE)
+            .required(false)
+            .hasArg()
+            .argName("dir")
+            .desc("Keep downloaded iflow artifacts in this directory")
+            .build());
+        // Add the cache size option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_CACHE_SIZE)
+            .required(false)
+            .hasArg()
+            .argName("n")
+            .desc("Limit the iflow artifact cache to this many megabytes")
+            .build());
+        // Add the incremental option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_INCREMENTAL)
+            .required(false)
+            .hasArg()
+            .argName("file")
+            .desc("Keep the results in this file, and only inspect iflows that have changed since")
+            .build());
+        // Add the HTTP/2 option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_HTTP2)
+            .required(false)
+            .hasArg(false)
+            .desc("Use HTTP/2 where the server supports it")
+            .build());
+        // Add the gzip option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_GZIP)
+            .required(false)
+            .hasArg(false)
+            .desc("Request compressed responses from the tenant API")
+            .build());
+        // Add the retries option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_RETRIES)
+            .required(false)
+            .hasArg()
+            .argName("n")
+            .desc("Retry failed or throttled API requests up to this many times")
+            .build());
+        // Add the rate limit option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_RATE_LIMIT)
+            .required(false)
+            .hasArg()
+            .argName("n")
+            .desc("Send at most this many API requests per second")
+            .build());
+        // Add the expand packages option.
+        options.addOption(Option.builder()
+        	.longOpt(CLI_OPTION_EXPAND_PACKAGES)
+            .required(false)
+            .hasArg(false)
+            .desc("List packages together with their iflows, instead of one package at a time")
             .build());
 		// All done.
         return options;
@@ -809,11 +1074,15 @@ public final class CliClient {
     	 * + boring
     	 * + debug
 		 * + skipvercheck
+		 * + threads
+		 * + prefetch
+		 * + single-pass
+		 * + incremental
     	 * 
     	 * The -files option must have at least one argument.
     	 */    	
     	Collection<String> mandatory = List.of(CLI_OPTION_RULES, CLI_OPTION_FILES);
-    	Collection<String> optional = List.of(CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK);
+    	Collection<String> optional = List.of(CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK, CLI_OPTION_THREADS, CLI_OPTION_PREFETCH, CLI_OPTION_SINGLE_PASS, CLI_OPTION_INCREMENTAL);
     	return checkOptions(cl, mandatory, optional) && cl.getOptionValues(CLI_OPTION_FILES).length >= 1;
     }
 
@@ -829,11 +1098,14 @@ public final class CliClient {
          * + boring
          * + debug
          * + skipvercheck
+         * + threads
+         * + prefetch
+         * + single-pass
          *
          * The -unpacked-files option must have at least one argument.
          */
         Collection<String> mandatory = List.of(CLI_OPTION_RULES, CLI_OPTION_UNPACKED_FILES);
-        Collection<String> optional = List.of(CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK);
+        Collection<String> optional = List.of(CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK, CLI_OPTION_THREADS, CLI_OPTION_PREFETCH, CLI_OPTION_SINGLE_PASS);
         return checkOptions(cl, mandatory, optional) && cl.getOptionValues(CLI_OPTION_UNPACKED_FILES).length >= 1;
     }
 
@@ -849,11 +1121,15 @@ public final class CliClient {
     	 * + boring
     	 * + debug
 		 * + skipvercheck
+		 * + threads
+		 * + prefetch
+		 * + single-pass
+		 * + incremental
     	 * 
     	 * The -directory option must have exactly one argument.
     	 */
     	Collection<String> mandatory = List.of(CLI_OPTION_RULES, CLI_OPTION_DIRECTORY);
-    	Collection<String> optional = List.of(CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK);
+    	Collection<String> optional = List.of(CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK, CLI_OPTION_THREADS, CLI_OPTION_PREFETCH, CLI_OPTION_SINGLE_PASS, CLI_OPTION_INCREMENTAL);
     	return checkOptions(cl, mandatory, optional) && cl.getOptionValues(CLI_OPTION_DIRECTORY).length == 1;
     }
     
@@ -873,11 +1149,19 @@ public final class CliClient {
     	 * + boring
     	 * + debug
 		 * + skipvercheck
+		 * + threads
+		 * + prefetch
+		 * + single-pass
+		 * + downloads
+		 * + http2
+		 * + gzip
+		 * + retries
+		 * + rate-limit
 		 *
 		 * Either a service key or a hostname and a username must be provided.
     	 */
 		Collection<String> mandatory = List.of(CLI_OPTION_RULES, CLI_OPTION_IFLOWS);
-		Collection<String> optional = List.of(CLI_OPTION_KEY, CLI_OPTION_HOST, CLI_OPTION_USERNAME, CLI_OPTION_PASSWORD, CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK);
+		Collection<String> optional = List.of(CLI_OPTION_KEY, CLI_OPTION_HOST, CLI_OPTION_USERNAME, CLI_OPTION_PASSWORD, CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK, CLI_OPTION_THREADS, CLI_OPTION_PREFETCH, CLI_OPTION_SINGLE_PASS, CLI_OPTION_DOWNLOADS, CLI_OPTION_HTTP2, CLI_OPTION_GZIP, CLI_OPTION_RETRIES, CLI_OPTION_RATE_LIMIT);
 		return checkOptions(cl, mandatory, optional) && authAndHostProvided(cl);
     }
 
@@ -900,11 +1184,22 @@ public final class CliClient {
     	 * + boring
     	 * + debug
 		 * + skipvercheck
+		 * + threads
+		 * + prefetch
+		 * + single-pass
+		 * + downloads
+		 * + cache
+		 * + cache-size
+		 * + expand-packages
+		 * + http2
+		 * + gzip
+		 * + retries
+		 * + rate-limit
 		 *
 		 * Either a service key or a hostname and a username must be provided.
     	 */
 		Collection<String> mandatory = List.of(CLI_OPTION_RULES);
-		Collection<String> optional = List.of(CLI_OPTION_KEY, CLI_OPTION_HOST, CLI_OPTION_USERNAME, CLI_OPTION_PASSWORD, CLI_OPTION_SKIP_SAP_PACKAGES, CLI_OPTION_SKIP_IFLOWS, CLI_OPTION_SKIP_PACKAGES, CLI_OPTION_SKIP_DRAFTS, CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK);
+		Collection<String> optional = List.of(CLI_OPTION_KEY, CLI_OPTION_HOST, CLI_OPTION_USERNAME, CLI_OPTION_PASSWORD, CLI_OPTION_SKIP_SAP_PACKAGES, CLI_OPTION_SKIP_IFLOWS, CLI_OPTION_SKIP_PACKAGES, CLI_OPTION_SKIP_DRAFTS, CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK, CLI_OPTION_THREADS, CLI_OPTION_PREFETCH, CLI_OPTION_SINGLE_PASS, CLI_OPTION_DOWNLOADS, CLI_OPTION_CACHE, CLI_OPTION_CACHE_SIZE, CLI_OPTION_EXPAND_PACKAGES, CLI_OPTION_HTTP2, CLI_OPTION_GZIP, CLI_OPTION_RETRIES, CLI_OPTION_RATE_LIMIT);
 		return checkOptions(cl, mandatory, optional) && authAndHostProvided(cl);
     }
     
@@ -926,11 +1221,22 @@ public final class CliClient {
     	 * + boring
     	 * + debug
 		 * + skipvercheck
+		 * + threads
+		 * + prefetch
+		 * + single-pass
+		 * + downloads
+		 * + cache
+		 * + cache-size
+		 * + expand-packages
+		 * + http2
+		 * + gzip
+		 * + retries
+		 * + rate-limit
 		 *
 		 * Either a service key or a hostname and a username must be provided.
     	 */
 		Collection<String> mandatory = List.of(CLI_OPTION_RULES, CLI_OPTION_PACKAGES);
-		Collection<String> optional = List.of(CLI_OPTION_KEY, CLI_OPTION_HOST, CLI_OPTION_USERNAME, CLI_OPTION_PASSWORD, CLI_OPTION_SKIP_IFLOWS, CLI_OPTION_SKIP_DRAFTS, CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK);
+		Collection<String> optional = List.of(CLI_OPTION_KEY, CLI_OPTION_HOST, CLI_OPTION_USERNAME, CLI_OPTION_PASSWORD, CLI_OPTION_SKIP_IFLOWS, CLI_OPTION_SKIP_DRAFTS, CLI_OPTION_BORING, CLI_OPTION_DEBUG, CLI_OPTION_SKIPVERCHECK, CLI_OPTION_THREADS, CLI_OPTION_PREFETCH, CLI_OPTION_SINGLE_PASS, CLI_OPTION_DOWNLOADS, CLI_OPTION_CACHE, CLI_OPTION_CACHE_SIZE, CLI_OPTION_EXPAND_PACKAGES, CLI_OPTION_HTTP2, CLI_OPTION_GZIP, CLI_OPTION_RETRIES, CLI_OPTION_RATE_LIMIT);
 		return checkOptions(cl, mandatory, optional) && authAndHostProvided(cl);
     }
     
@@ -1055,7 +1361,7 @@ public final class CliClient {
 			// This should never happen!
 			throw new VersionCheckError("Unexpected GitHub API URI issue", e);
 		}
-        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpClient client = HttpUtil.newHttpClient(false);
         HttpRequest request = HttpRequest.newBuilder()
             .uri(apiUri)
             .GET()
@@ -0,0 +1,24 @@
+package org.cpilint;
+
+import net.sf.saxon.s9api.XQueryExecutable;
+
+public final class CompiledXquery {
+
+	private final String query;
+	private final XQueryExecutable executable;
+
+	CompiledXquery(String query, XQueryExecutable executable) {
+		// Instances are returned by IflowXml.compileXquery.
+		this.query = query;
+		this.executable = executable;
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	XQueryExecutable getExecutable() {
+		return executable;
+	}
+
+}
@@ -2,45 +2,385 @@ package org.cpilint;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.consumers.IssueConsumer;
+import org.cpilint.consumers.RecordingIssueConsumer;
+import org.cpilint.consumers.SynchronizedIssueConsumer;
+import org.cpilint.issues.Issue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.rules.CrossIflowRule;
+import org.cpilint.rules.IflowElementVisitor;
 import org.cpilint.rules.Rule;
+import org.cpilint.rules.RuleBase;
+import org.cpilint.rules.VisitingRule;
 import org.cpilint.suppliers.IflowArtifactSupplier;
 
 public final class CpiLint {
-	
+
 	private static final Logger logger = LoggerFactory.getLogger(CpiLint.class);
+	private static final long ENQUEUE_TIMEOUT_MILLIS = 100;
 	private final IflowArtifactSupplier supplier;
-	private final Collection<Rule> rules;
-	private final IssueConsumer consumer;
-	
+	private final List<Rule> rules;
+	private final RecordingIssueConsumer consumer;
+	private final int workers;
+	private final int prefetch;
+	private final boolean singlePass;
+	private final ArtifactRequirements requirements;
+	private final Optional<LintResultsCache> resultsCache;
+	private final List<Rule> rulesPreventingReplay;
+
 	public CpiLint(IflowArtifactSupplier supplier, Collection<Rule> rules, IssueConsumer consumer) {
+		// Inspect sequentially, so existing callers keep getting issues in supply order.
+		this(supplier, rules, consumer, 1);
+	}
+
+	public CpiLint(IflowArtifactSupplier supplier, Collection<Rule> rules, IssueConsumer consumer, int workers) {
+		// By default, let each worker have one iflow artifact waiting.
+		this(supplier, rules, consumer, workers, workers);
+	}
+
+	public CpiLint(IflowArtifactSupplier supplier, Collection<Rule> rules, IssueConsumer consumer, int workers, int prefetch) {
+		this(supplier, rules, consumer, workers, prefetch, false);
+	}
+
+	public CpiLint(IflowArtifactSupplier supplier, Collection<Rule> rules, IssueConsumer consumer, int workers, int prefetch, boolean singlePass) {
+		this(supplier, rules, consumer, workers, prefetch, singlePass, Optional.empty());
+	}
+
+	public CpiLint(IflowArtifactSupplier supplier, Collection<Rule> rules, IssueConsumer consumer, int workers, int prefetch, boolean singlePass, Optional<LintResultsCache> resultsCache) {
 		this.supplier = Objects.requireNonNull(supplier, "supplier must not be null");
-		this.consumer = Objects.requireNonNull(consumer, "consumer must not be null");
+		Objects.requireNonNull(consumer, "consumer must not be null");
 		Objects.requireNonNull(rules, "rules must not be null");
 		if (rules.isEmpty()) {
 			throw new IllegalArgumentException("Empty rules collection");
 		}
+		if (workers < 1) {
+			throw new IllegalArgumentException("workers must be at least one");
+		}
+		if (prefetch < 1) {
+			throw new IllegalArgumentException("prefetch must be at least one");
+		}
 		this.rules = new ArrayList<>(rules);
+		this.workers = workers;
+		this.prefetch = prefetch;
+		this.singlePass = singlePass;
+		this.resultsCache = Objects.requireNonNull(resultsCache, "resultsCache must not be null");
+		this.rulesPreventingReplay = this.rules
+			.stream()
+			.filter(CpiLint::reportsStateNotReplayed)
+			.toList();
+		// Only extract from each iflow artifact what at least one rule needs.
+		this.requirements = this.rules
+			.stream()
+			.map(Rule::getRequirements)
+			.reduce(ArtifactRequirements.none(), ArtifactRequirements::combine);
+		/*
+		 * With more than one worker, issues are consumed from multiple
+		 * threads. They are recorded per iflow artifact when the results are
+		 * cached.
+		 */
+		this.consumer = new RecordingIssueConsumer(workers > 1 ? new SynchronizedIssueConsumer(consumer) : consumer);
 	}
 
 	public void run() {
 		logger.info("Starting inspection of iflow artifacts");
 		rules.forEach(r -> r.startTesting(consumer));
+		logger.debug("Artifact requirements of the rules: {}", requirements);
+		supplier.setRequirements(requirements);
+		resultsCache.ifPresent(supplier::setResultsCache);
 		supplier.setup();
-		while (supplier.canSupply()) {
-			IflowArtifact ia = supplier.supply();
-			logger.debug("Iflow artifact supplied: {}", ia.getTag());
-			rules.forEach(r -> r.inspect(ia));
+		if (resultsCache.isPresent() && !rulesPreventingReplay.isEmpty()) {
+			logger.warn("Results are not replayed for unchanged iflow artifacts, since these rules report in endTesting without supporting replay: {}", rulesPreventingReplay
+				.stream()
+				.map(r -> r.getClass().getName())
+				.collect(Collectors.joining(", ")));
+		}
+		if (singlePass) {
+			logger.info("Visiting rules inspect each iflow in a single pass");
+		}
+		if (workers == 1) {
+			inspectSequentially();
+		} else {
+			inspectInPipeline();
 		}
 		supplier.shutdown();
 		rules.forEach(r -> r.endTesting());
+		if (resultsCache.isPresent()) {
+			LintResultsCache cache = resultsCache.get();
+			logger.info("Results replayed for {} unchanged iflow artifacts ({} inspected)", cache.getHits(), cache.getMisses());
+			cache.save();
+		}
+		XpathExecutableCache xpathCache = IflowXml.getSharedXpathCache();
+		logger.debug("XPath executable cache: {} hits, {} misses, {} entries", xpathCache.getHits(), xpathCache.getMisses(), xpathCache.size());
 		logger.info("Inspection completed");
 	}
 
+	private void inspectSequentially() {
+		// With a single worker, this thread both supplies and inspects.
+		logger.info("Inspecting iflow artifacts sequentially");
+		while (supplier.canSupply()) {
+			IflowArtifact ia = supplier.supply();
+			logger.debug("Iflow artifact supplied: {}", ia.getTag());
+			Optional<LintResultsCache.CachedResults> cached = cachedResultsFor(ia);
+			if (cached.isPresent()) {
+				// The artifact has not changed, so there's no need to inspect it again.
+				replay(cached.get());
+			} else {
+				inspectWithAllRules(ia);
+			}
+		}
+	}
+
+	private void inspectInPipeline() {
+		logger.info("Inspecting iflow artifacts using {} worker threads and a prefetch of {}", workers, prefetch);
+		/*
+		 * Inspection is a two-stage pipeline. This thread is the producer: it
+		 * is the only thread to call the supplier, and it puts each supplied
+		 * iflow artifact on a bounded queue. The worker threads take artifacts
+		 * off the queue and run all rules on them. Since the producer blocks
+		 * when the queue is full, at most prefetch + workers + 1 artifacts are
+		 * in memory at any time. An empty Optional tells a worker to stop.
+		 */
+		BlockingQueue<Optional<IflowArtifact>> queue = new ArrayBlockingQueue<>(prefetch);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		ExecutorService executor = Executors.newFixedThreadPool(workers, new WorkerThreadFactory());
+		for (int i = 0; i < workers; i++) {
+			executor.execute(() -> inspectFromQueue(queue, failure));
+		}
+		boolean producerDone = false;
+		try {
+			while (failure.get() == null && supplier.canSupply()) {
+				IflowArtifact ia = supplier.supply();
+				logger.debug("Iflow artifact supplied: {}", ia.getTag());
+				Optional<LintResultsCache.CachedResults> cached = cachedResultsFor(ia);
+				if (cached.isPresent()) {
+					// The artifact has not changed, so there's no need to inspect it again.
+					replay(cached.get());
+				} else {
+					enqueue(queue, Optional.of(ia), failure);
+				}
+			}
+			for (int i = 0; i < workers; i++) {
+				enqueue(queue, Optional.empty(), failure);
+			}
+			if (failure.get() == null) {
+				executor.shutdown();
+			} else {
+				// No need to let the other workers finish.
+				executor.shutdownNow();
+			}
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				logger.debug("Waiting for workers to finish inspecting");
+			}
+			producerDone = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CpiLintError("Interrupted while inspecting iflow artifacts", e);
+		} finally {
+			if (!producerDone) {
+				// The supplier failed or we were interrupted; stop the workers.
+				executor.shutdownNow();
+			}
+		}
+		/*
+		 * If a worker failed, rethrow its Throwable on this thread, so that
+		 * the caller sees the same errors as it would without the workers.
+		 */
+		Throwable t = failure.get();
+		if (t instanceof Error) {
+			throw (Error)t;
+		}
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException)t;
+		}
+		if (t != null) {
+			// Rules cannot throw checked exceptions, so this should never happen.
+			throw new AssertionError("Unexpected Throwable from worker", t);
+		}
+	}
+
+	private static void enqueue(BlockingQueue<Optional<IflowArtifact>> queue, Optional<IflowArtifact> item, AtomicReference<Throwable> failure) throws InterruptedException {
+		/*
+		 * Wait for room in the queue, but give up if a worker has failed. In
+		 * that case, the remaining workers might never make room.
+		 */
+		while (!queue.offer(item, ENQUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+			if (failure.get() != null) {
+				return;
+			}
+		}
+	}
+
+	private void inspectFromQueue(BlockingQueue<Optional<IflowArtifact>> queue, AtomicReference<Throwable> failure) {
+		try {
+			while (failure.get() == null) {
+				Optional<IflowArtifact> item = queue.take();
+				if (item.isEmpty()) {
+					// No more iflow artifacts.
+					return;
+				}
+				inspectWithAllRules(item.get());
+			}
+		} catch (InterruptedException e) {
+			// The producer asked the workers to stop.
+			Thread.currentThread().interrupt();
+		} catch (Throwable t) {
+			failure.compareAndSet(null, t);
+		}
+	}
+
+	private Optional<LintResultsCache.CachedResults> cachedResultsFor(IflowArtifact ia) {
+		/*
+		 * Results are only replayed if every rule would report the same
+		 * issues without inspecting the artifact again.
+		 */
+		if (resultsCache.isEmpty() || !rulesPreventingReplay.isEmpty() || ia.getArchiveDigest().isEmpty()) {
+			return Optional.empty();
+		}
+		return resultsCache.get().lookup(ia.getArchiveDigest().get());
+	}
+
+	private static boolean reportsStateNotReplayed(Rule r) {
+		/*
+		 * A rule that reports issues in endTesting might do so based on
+		 * state collected from every iflow artifact. Unless it is a
+		 * CrossIflowRule, that state cannot be restored for the artifacts
+		 * whose results are replayed, so its endTesting results would be
+		 * incomplete.
+		 */
+		if (r instanceof CrossIflowRule) {
+			return false;
+		}
+		try {
+			return r.getClass().getMethod("endTesting").getDeclaringClass() != RuleBase.class;
+		} catch (NoSuchMethodException e) {
+			throw new AssertionError("Rule without endTesting method", e);
+		}
+	}
+
+	private void replay(LintResultsCache.CachedResults cached) {
+		/*
+		 * Consume the issues found in the artifact when it was last inspected,
+		 * and restore what it contributed to the cross-iflow rules, so that
+		 * their endTesting results are the same as if it had been inspected.
+		 */
+		cached.issues().forEach(consumer::consume);
+		for (Map.Entry<Integer, JSONObject> contribution : cached.contributions().entrySet()) {
+			int ruleIndex = contribution.getKey();
+			if (ruleIndex < 0 || ruleIndex >= rules.size() || !(rules.get(ruleIndex) instanceof CrossIflowRule)) {
+				throw new LintResultsCacheError("Lint results cache does not match the rules");
+			}
+			CrossIflowRule r = (CrossIflowRule)rules.get(ruleIndex);
+			if (r.isThreadSafe()) {
+				r.addContribution(cached.tag(), contribution.getValue());
+			} else {
+				synchronized (r) {
+					r.addContribution(cached.tag(), contribution.getValue());
+				}
+			}
+		}
+	}
+
+	private void inspectWithAllRules(IflowArtifact ia) {
+		/*
+		 * If the results are cached and the artifact's archive digest is
+		 * known, record the issues found in it and what it contributes to
+		 * the cross-iflow rules.
+		 */
+		Optional<String> archiveDigest = resultsCache.isPresent() ? ia.getArchiveDigest() : Optional.empty();
+		if (archiveDigest.isEmpty()) {
+			inspectWithAllRules(ia, Optional.empty());
+			return;
+		}
+		Map<Integer, JSONObject> contributions = new HashMap<>();
+		consumer.startRecording();
+		List<Issue> issues;
+		try {
+			inspectWithAllRules(ia, Optional.of(contributions));
+		} finally {
+			issues = consumer.stopRecording();
+		}
+		resultsCache.get().record(archiveDigest.get(), ia.getTag(), issues, contributions);
+	}
+
+	private void inspectWithAllRules(IflowArtifact ia, Optional<Map<Integer, JSONObject>> contributions) {
+		List<IflowElementVisitor> visitors = new ArrayList<>();
+		for (int i = 0; i < rules.size(); i++) {
+			Rule r = rules.get(i);
+			if (contributions.isPresent() && r instanceof CrossIflowRule) {
+				// Keep what the artifact contributes, so it can be restored in a later run.
+				contributions.get().put(i, inspectForContribution((CrossIflowRule)r, ia));
+			} else if (singlePass && r.isThreadSafe() && r instanceof VisitingRule) {
+				// This rule is handled in the single pass below.
+				visitors.add(((VisitingRule)r).visitorFor(ia));
+			} else if (r.isThreadSafe()) {
+				r.inspect(ia);
+			} else {
+				// Rules that are not thread-safe inspect one artifact at a time.
+				synchronized (r) {
+					r.inspect(ia);
+				}
+			}
+		}
+		if (!visitors.isEmpty()) {
+			inspectInSinglePass(ia, visitors);
+		}
+	}
+
+	private static JSONObject inspectForContribution(CrossIflowRule r, IflowArtifact ia) {
+		if (r.isThreadSafe()) {
+			return r.inspectForContribution(ia);
+		}
+		synchronized (r) {
+			return r.inspectForContribution(ia);
+		}
+	}
+
+	private static void inspectInSinglePass(IflowArtifact ia, List<IflowElementVisitor> visitors) {
+		/*
+		 * Classify the elements of the iflow XML once, and let every visiting
+		 * rule see every element, instead of having each rule evaluate its own
+		 * XPath expressions against the document.
+		 */
+		for (IflowElement element : ia.getIflowXml().getElementIndex().getElements()) {
+			for (IflowElementVisitor visitor : visitors) {
+				visitor.visit(element);
+			}
+		}
+		visitors.forEach(IflowElementVisitor::endVisit);
+	}
+
+	private static final class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "cpilint-worker-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+
+	}
+
 }
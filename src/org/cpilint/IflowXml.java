@@ -1,19 +1,27 @@
 package org.cpilint;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
+import java.util.Objects;
 
 import javax.xml.transform.stream.StreamSource;
 
+import org.cpilint.model.IflowElementIndex;
+import org.cpilint.model.XmlModelFactory;
+import org.cpilint.util.SaxonUtil;
+
 import net.sf.saxon.s9api.Processor;
 import net.sf.saxon.s9api.SaxonApiException;
 import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathSelector;
 import net.sf.saxon.s9api.XQueryCompiler;
 import net.sf.saxon.s9api.XQueryEvaluator;
 import net.sf.saxon.s9api.XQueryExecutable;
 import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.XdmNodeKind;
 import net.sf.saxon.s9api.XdmValue;
 
 public final class IflowXml {
@@ -22,27 +30,76 @@ public final class IflowXml {
 		"bpmn2", "http://www.omg.org/spec/BPMN/20100524/MODEL",
 		"ifl", "http:///com.sap.ifl.model/Ifl.xsd"
 	); 
+	private static final int XPATH_CACHE_MAX_SIZE = 1000;
+	private static final XpathExecutableCache sharedXpathCache = new XpathExecutableCache(newXpathCompiler(SaxonUtil.getSharedProcessor()), XPATH_CACHE_MAX_SIZE);
+	private static final XQueryCompiler sharedXqueryCompiler = SaxonUtil.getSharedProcessor().newXQueryCompiler();
 	
-	private byte[] rawDocument;
+	private volatile byte[] rawDocument;
 	private XdmNode docRoot;
-	private XPathCompiler xpathCompiler;
+	private Processor processor;
+	private XpathExecutableCache xpathCache;
 	private XQueryCompiler xqueryCompiler;
+	private volatile IflowElementIndex elementIndex;
 	
-	private IflowXml(byte[] rawDocument, XdmNode docRoot, XPathCompiler xpathCompiler, XQueryCompiler xqueryCompiler) {
+	private IflowXml(byte[] rawDocument, XdmNode docRoot, Processor processor, XpathExecutableCache xpathCache, XQueryCompiler xqueryCompiler) {
 		this.rawDocument = rawDocument;
 		this.docRoot = docRoot;
-		this.xpathCompiler = xpathCompiler;
+		this.processor = processor;
+		this.xpathCache = xpathCache;
 		this.xqueryCompiler = xqueryCompiler;
 	}
 	
 	public InputStream getRawDocument() {
-		return new ByteArrayInputStream(rawDocument);
+		/*
+		 * An IflowXml created from a document node has no raw document until
+		 * one is requested. It is then serialized from the document node.
+		 */
+		byte[] raw = rawDocument;
+		if (raw == null) {
+			synchronized (this) {
+				raw = rawDocument;
+				if (raw == null) {
+					raw = serialize(docRoot, processor);
+					rawDocument = raw;
+				}
+			}
+		}
+		return new ByteArrayInputStream(raw);
+	}
+
+	public XdmNode getDocumentNode() {
+		return docRoot;
+	}
+
+	public IflowElementIndex getElementIndex() {
+		/*
+		 * The index is built the first time it is requested, so runs whose
+		 * rules never ask for it don't pay for it. After that, all rules
+		 * inspecting this iflow (possibly from different threads) share it.
+		 */
+		IflowElementIndex index = elementIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = elementIndex;
+				if (index == null) {
+					index = XmlModelFactory.getModelFor(this).indexIflowElements(docRoot);
+					elementIndex = index;
+				}
+			}
+		}
+		return index;
 	}
 
 	public XdmValue evaluateXpath(String xpath) {
 		XdmValue value;
 		try {
-			value = xpathCompiler.evaluate(xpath, docRoot);
+			/*
+			 * The same expressions are evaluated against every iflow, so they
+			 * are compiled once and then loaded for each evaluation.
+			 */
+			XPathSelector selector = xpathCache.getExecutable(xpath).load();
+			selector.setContextItem(docRoot);
+			value = selector.evaluate();
 		} catch (SaxonApiException e) {
 			throw new IflowXmlError("Error while processing iflow XML: " + e.getMessage(), e);
 		}
@@ -50,9 +107,21 @@ public final class IflowXml {
 	}
 	
 	public XdmValue executeXquery(String query) {
+		return executeXquery(compileXquery(query, xqueryCompiler));
+	}
+
+	public XdmValue executeXquery(CompiledXquery query) {
+		Objects.requireNonNull(query, "query must not be null");
+		/*
+		 * A compiled query can only be evaluated against a document built by
+		 * the same Processor. Queries are compiled with the shared Processor,
+		 * so if this document was built by another one, compile it again.
+		 */
+		XQueryExecutable exe = xqueryCompiler == sharedXqueryCompiler
+			? query.getExecutable()
+			: compileXquery(query.getQuery(), xqueryCompiler).getExecutable();
 		XdmValue result;
 		try {
-			XQueryExecutable exe = xqueryCompiler.compile(query);
 			XQueryEvaluator eval = exe.load();
 			eval.setSource(docRoot.asSource());
 			result = eval.evaluate();
@@ -61,8 +130,35 @@ public final class IflowXml {
 		}
 		return result;
 	}
+
+	public static CompiledXquery compileXquery(String query) {
+		return compileXquery(query, sharedXqueryCompiler);
+	}
+
+	private static CompiledXquery compileXquery(String query, XQueryCompiler compiler) {
+		Objects.requireNonNull(query, "query must not be null");
+		XQueryExecutable exe;
+		try {
+			/*
+			 * XQueryCompiler is not thread-safe, and the same compiler is used
+			 * by every worker thread (and by extension rules calling
+			 * executeXquery with a query string).
+			 */
+			synchronized (compiler) {
+				exe = compiler.compile(query);
+			}
+		} catch (SaxonApiException e) {
+			throw new IflowXmlError("Error compiling XQuery query", e);
+		}
+		return new CompiledXquery(query, exe);
+	}
 	
 	public static IflowXml fromInputStream(InputStream is) {
+		return fromInputStream(is, SaxonUtil.getSharedProcessor());
+	}
+
+	public static IflowXml fromInputStream(InputStream is, Processor processor) {
+		Objects.requireNonNull(processor, "processor must not be null");
 		// Read the document into a byte array.
 		byte[] rawDocument;
 		try {
@@ -71,22 +167,64 @@ public final class IflowXml {
 			throw new IflowXmlError("I/O error when reading iflow XML document", e);
 		}
 		// Parse the document.
-		Processor p = new Processor(false);
 		XdmNode docRoot;
 		try {
-			docRoot = p.newDocumentBuilder().build(new StreamSource(new ByteArrayInputStream(rawDocument)));
+			docRoot = processor.newDocumentBuilder().build(new StreamSource(new ByteArrayInputStream(rawDocument)));
 		} catch (SaxonApiException e) {
 			throw new IflowXmlError("Error while processing iflow XML", e);
 		}
-		XPathCompiler xpathCompiler = p.newXPathCompiler();
-		namespacePrefixes.forEach((prefix, ns) -> xpathCompiler.declareNamespace(prefix, ns));
+		return create(rawDocument, docRoot, processor);
+	}
+
+	public static IflowXml fromDocumentNode(XdmNode docRoot, Processor processor) {
+		/*
+		 * Use an already built tree (e.g. the result of a transformation) as
+		 * is, instead of serializing it and parsing it again. The node must
+		 * have been built by the provided Processor.
+		 */
+		Objects.requireNonNull(docRoot, "docRoot must not be null");
+		Objects.requireNonNull(processor, "processor must not be null");
+		if (docRoot.getNodeKind() != XdmNodeKind.DOCUMENT) {
+			throw new IllegalArgumentException("docRoot must be a document node");
+		}
+		return create(null, docRoot, processor);
+	}
+
+	private static IflowXml create(byte[] rawDocument, XdmNode docRoot, Processor processor) {
 		/*
 		 *  To use an XdmNode (the document node, specifically) as a source in
 		 *  XQuery evaluation, the node and the XQueryCompiler must originate
 		 *  from the same Processor object. Otherwise the evaluation will fail
-		 *  at runtime. 
+		 *  at runtime. The compilers for the shared Processor are created once
+		 *  and shared by all IflowXml objects. Compilers are not thread-safe,
+		 *  so compiling with them is synchronized on the compiler; the
+		 *  resulting executables can be used from any thread.
 		 */
-		return new IflowXml(rawDocument, docRoot, xpathCompiler, p.newXQueryCompiler());
+		if (processor == SaxonUtil.getSharedProcessor()) {
+			return new IflowXml(rawDocument, docRoot, processor, sharedXpathCache, sharedXqueryCompiler);
+		}
+		XpathExecutableCache xpathCache = new XpathExecutableCache(newXpathCompiler(processor), XPATH_CACHE_MAX_SIZE);
+		return new IflowXml(rawDocument, docRoot, processor, xpathCache, processor.newXQueryCompiler());
+	}
+
+	private static byte[] serialize(XdmNode node, Processor processor) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			processor.newSerializer(out).serializeNode(node);
+		} catch (SaxonApiException e) {
+			throw new IflowXmlError("Error while serializing iflow XML", e);
+		}
+		return out.toByteArray();
+	}
+
+	public static XpathExecutableCache getSharedXpathCache() {
+		return sharedXpathCache;
+	}
+
+	private static XPathCompiler newXpathCompiler(Processor processor) {
+		XPathCompiler xpathCompiler = processor.newXPathCompiler();
+		namespacePrefixes.forEach((prefix, ns) -> xpathCompiler.declareNamespace(prefix, ns));
+		return xpathCompiler;
 	}
 	
 }
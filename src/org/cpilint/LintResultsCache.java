@@ -0,0 +1,255 @@
+package org.cpilint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cpilint.artifacts.IflowArtifactTag;
+import org.cpilint.artifacts.PackageInfo;
+import org.cpilint.issues.Issue;
+import org.cpilint.issues.ReplayedIssue;
+
+public final class LintResultsCache {
+
+	/*
+	 * The results of an earlier run, stored in a JSON file. For each iflow
+	 * artifact, identified by a digest of its archive, the file holds the
+	 * issues found while inspecting it, and what it contributed to the
+	 * state of each cross-iflow rule. The results are only valid for the
+	 * CPILint version and the effective rules that produced them; if
+	 * either has changed, the file is ignored and every artifact is
+	 * inspected. When saved, only the artifacts seen in this run are kept.
+	 */
+
+	private static final Logger logger = LoggerFactory.getLogger(LintResultsCache.class);
+	private static final String HASHING_ALGORITHM = "SHA-256";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final String VERSION_KEY = "version";
+	private static final String RULES_DIGEST_KEY = "rulesDigest";
+	private static final String ARTIFACTS_KEY = "artifacts";
+	private static final String TAG_KEY = "tag";
+	private static final String ISSUES_KEY = "issues";
+	private static final String CONTRIBUTIONS_KEY = "contributions";
+	private static final String RULE_ID_KEY = "ruleId";
+	private static final String TAGS_KEY = "tags";
+	private static final String MESSAGE_KEY = "message";
+	private static final String ID_KEY = "id";
+	private static final String NAME_KEY = "name";
+	private static final String PACKAGE_ID_KEY = "packageId";
+	private static final String PACKAGE_NAME_KEY = "packageName";
+
+	private final Path file;
+	private final String version;
+	private final String rulesDigest;
+	// Archive digest to results, as read from the file.
+	private final Map<String, JSONObject> previous;
+	// Archive digest to results, for the artifacts seen in this run.
+	private final Map<String, JSONObject> current = new HashMap<>();
+	private long hits = 0;
+	private long misses = 0;
+
+	public LintResultsCache(Path file, String version, String rulesDigest) {
+		this.file = Objects.requireNonNull(file, "file must not be null");
+		this.version = Objects.requireNonNull(version, "version must not be null");
+		this.rulesDigest = Objects.requireNonNull(rulesDigest, "rulesDigest must not be null");
+		this.previous = readPrevious();
+		logger.info("Lint results cache '{}' holds results for {} iflow artifacts", file, previous.size());
+	}
+
+	public synchronized Optional<IflowArtifactTag> unchangedTag(String archiveDigest) {
+		/*
+		 * Returns the tag of the iflow artifact with the provided archive
+		 * digest, if results are available for it.
+		 */
+		Objects.requireNonNull(archiveDigest, "archiveDigest must not be null");
+		JSONObject results = resultsFor(archiveDigest);
+		return results == null ? Optional.empty() : Optional.of(tagFromJson(results.getJSONObject(TAG_KEY)));
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized void save() {
+		JSONObject json = new JSONObject()
+			.put(VERSION_KEY, version)
+			.put(RULES_DIGEST_KEY, rulesDigest)
+			.put(ARTIFACTS_KEY, new JSONObject(current));
+		try {
+			Path directory = file.toAbsolutePath().getParent();
+			Files.createDirectories(directory);
+			Path temp = Files.createTempFile(directory, file.getFileName().toString(), TEMP_FILE_SUFFIX);
+			try {
+				Files.writeString(temp, json.toString(), StandardCharsets.UTF_8);
+				moveIntoPlace(temp, file);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			throw new LintResultsCacheError("Error while writing lint results cache", e);
+		}
+		logger.info("Lint results cache '{}' saved with results for {} iflow artifacts", file, current.size());
+	}
+
+	public static String digestOf(Path archive) throws IOException {
+		Objects.requireNonNull(archive, "archive must not be null");
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance(HASHING_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new LintResultsCacheError(String.format("Unknown hashing algorithm '%s'", HASHING_ALGORITHM), e);
+		}
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream is = Files.newInputStream(archive)) {
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				md.update(buffer, 0, read);
+			}
+		}
+		return HexFormat.of().formatHex(md.digest());
+	}
+
+	synchronized Optional<CachedResults> lookup(String archiveDigest) {
+		assert archiveDigest != null;
+		JSONObject results = resultsFor(archiveDigest);
+		if (results == null) {
+			misses++;
+			return Optional.empty();
+		}
+		hits++;
+		current.put(archiveDigest, results);
+		IflowArtifactTag tag = tagFromJson(results.getJSONObject(TAG_KEY));
+		List<Issue> issues = new ArrayList<>();
+		JSONArray issuesJson = results.getJSONArray(ISSUES_KEY);
+		for (int i = 0; i < issuesJson.length(); i++) {
+			issues.add(issueFromJson(issuesJson.getJSONObject(i)));
+		}
+		Map<Integer, JSONObject> contributions = new HashMap<>();
+		JSONObject contributionsJson = results.getJSONObject(CONTRIBUTIONS_KEY);
+		for (String ruleIndex : contributionsJson.keySet()) {
+			contributions.put(Integer.valueOf(ruleIndex), contributionsJson.getJSONObject(ruleIndex));
+		}
+		return Optional.of(new CachedResults(tag, issues, contributions));
+	}
+
+	synchronized void record(String archiveDigest, IflowArtifactTag tag, List<Issue> issues, Map<Integer, JSONObject> contributions) {
+		assert archiveDigest != null;
+		assert tag != null;
+		assert issues != null;
+		assert contributions != null;
+		JSONArray issuesJson = new JSONArray();
+		issues.forEach(i -> issuesJson.put(issueToJson(i)));
+		JSONObject contributionsJson = new JSONObject();
+		contributions.forEach((ruleIndex, c) -> contributionsJson.put(ruleIndex.toString(), c));
+		current.put(archiveDigest, new JSONObject()
+			.put(TAG_KEY, tagToJson(tag))
+			.put(ISSUES_KEY, issuesJson)
+			.put(CONTRIBUTIONS_KEY, contributionsJson));
+	}
+
+	private JSONObject resultsFor(String archiveDigest) {
+		// Results recorded in this run take precedence over the previous ones.
+		JSONObject results = current.get(archiveDigest);
+		return results != null ? results : previous.get(archiveDigest);
+	}
+
+	private Map<String, JSONObject> readPrevious() {
+		Map<String, JSONObject> results = new HashMap<>();
+		if (Files.notExists(file)) {
+			logger.info("Lint results cache '{}' does not exist yet", file);
+			return results;
+		}
+		JSONObject json;
+		try {
+			json = new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new LintResultsCacheError("Error while reading lint results cache", e);
+		} catch (JSONException e) {
+			// The cache only saves work, so a damaged file is not fatal.
+			logger.warn("Lint results cache '{}' could not be parsed and is ignored", file, e);
+			return results;
+		}
+		if (!version.equals(json.optString(VERSION_KEY)) || !rulesDigest.equals(json.optString(RULES_DIGEST_KEY))) {
+			logger.info("Lint results cache '{}' was created by another version or with other rules and is ignored", file);
+			return results;
+		}
+		JSONObject artifacts = json.getJSONObject(ARTIFACTS_KEY);
+		for (String archiveDigest : artifacts.keySet()) {
+			results.put(archiveDigest, artifacts.getJSONObject(archiveDigest));
+		}
+		return results;
+	}
+
+	private static JSONObject issueToJson(Issue issue) {
+		JSONArray tags = new JSONArray();
+		issue.getTags().forEach(t -> tags.put(tagToJson(t)));
+		JSONObject json = new JSONObject()
+			.put(TAGS_KEY, tags)
+			.put(MESSAGE_KEY, issue.getMessage());
+		issue.getRuleId().ifPresent(id -> json.put(RULE_ID_KEY, id));
+		return json;
+	}
+
+	private static Issue issueFromJson(JSONObject json) {
+		Set<IflowArtifactTag> tags = new HashSet<>();
+		JSONArray tagsJson = json.getJSONArray(TAGS_KEY);
+		for (int i = 0; i < tagsJson.length(); i++) {
+			tags.add(tagFromJson(tagsJson.getJSONObject(i)));
+		}
+		Optional<String> ruleId = json.has(RULE_ID_KEY) ? Optional.of(json.getString(RULE_ID_KEY)) : Optional.empty();
+		return new ReplayedIssue(ruleId, tags, json.getString(MESSAGE_KEY));
+	}
+
+	private static JSONObject tagToJson(IflowArtifactTag tag) {
+		JSONObject json = new JSONObject()
+			.put(ID_KEY, tag.getId())
+			.put(NAME_KEY, tag.getName());
+		tag.getPackageInfo().ifPresent(p -> json.put(PACKAGE_ID_KEY, p.id()).put(PACKAGE_NAME_KEY, p.name()));
+		return json;
+	}
+
+	private static IflowArtifactTag tagFromJson(JSONObject json) {
+		IflowArtifactTag tag = new IflowArtifactTag(json.getString(ID_KEY), json.getString(NAME_KEY));
+		if (json.has(PACKAGE_ID_KEY)) {
+			tag.setPackageInfo(new PackageInfo(json.getString(PACKAGE_ID_KEY), json.getString(PACKAGE_NAME_KEY)));
+		}
+		return tag;
+	}
+
+	private static void moveIntoPlace(Path temp, Path file) throws IOException {
+		try {
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	record CachedResults(IflowArtifactTag tag, List<Issue> issues, Map<Integer, JSONObject> contributions) {}
+
+}
@@ -0,0 +1,14 @@
+package org.cpilint;
+
+@SuppressWarnings("serial")
+public final class LintResultsCacheError extends CpiLintError {
+	
+	public LintResultsCacheError(String message) {
+		super(message);
+	}
+	
+	public LintResultsCacheError(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
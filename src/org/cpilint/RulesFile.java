@@ -1,14 +1,25 @@
 package org.cpilint;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Objects;
 import java.util.ServiceLoader;
@@ -61,6 +72,7 @@ public final class RulesFile {
 	private static final String IMPORTS_ELEMENT = "imports";
 	private static final String RULES_ELEMENT = "rules";
 	private static final String EXTENSION_RULES_ELEMENT = "extension-rules";
+	private static final String HASHING_ALGORITHM = "SHA-256";
 
 	private static final Logger logger = LoggerFactory.getLogger(RulesFile.class);
 	private static final Collection<RuleFactory> ruleFactories;
@@ -68,6 +80,7 @@ public final class RulesFile {
 
 	private final Collection<Rule> rules;
 	private final Set<Exemption> exemptions;
+	private final String digest;
 
 	static {
 		ruleFactories = new ArrayList<>();
@@ -98,11 +111,12 @@ public final class RulesFile {
 		logger.info("Extension rule factories loaded: {}", extensionRuleFactories.size());
 	}
 	
-	private RulesFile(Collection<Rule> rules, Set<Exemption> exemptions) {
+	private RulesFile(Collection<Rule> rules, Set<Exemption> exemptions, String digest) {
 		assert rules != null;
 		assert exemptions != null;
 		this.rules = Collections.unmodifiableCollection(rules);
 		this.exemptions = Collections.unmodifiableSet(exemptions);
+		this.digest = digest;
 	}
 
 	public Collection<Rule> getRules() {
@@ -112,10 +126,21 @@ public final class RulesFile {
 	public Set<Exemption> getExemptions() {
 		return exemptions;
 	}
+
+	public String getDigest() {
+		/*
+		 * A digest of the contents of the rules file and all the files it
+		 * imports, in the order they were processed, and of the extension
+		 * rule factories that were loaded. If the digest has not changed,
+		 * neither have the effective rules.
+		 */
+		return digest;
+	}
 	
 	public static RulesFile fromPath(Path rulesFilePath) {
 		Objects.requireNonNull(rulesFilePath, "rulesFilePath must not be null");
-		RulesFile rulesFile = fromPath(rulesFilePath, new HashSet<Path>());
+		MessageDigest md = newMessageDigest();
+		RulesFile rulesFile = fromPath(rulesFilePath, new HashSet<Path>(), md);
 		/*
 		 * With the introduction of exemptions, XML Schema validation alone can no
 		 * longer guarantee, that rules will be present. Therefore we check here if
@@ -136,12 +161,14 @@ public final class RulesFile {
 			throw new RulesFileError("Duplicate rule IDs in rules file(s): " + String.join(", ", duplicateRuleIds));
 		}
 		logger.debug("RulesFile created with {} rule(s) and {} exemption(s)", rulesFile.rules.size(), rulesFile.exemptions.size());
-		return rulesFile;
+		updateWithExtensionRuleFactories(md);
+		return new RulesFile(rulesFile.rules, rulesFile.exemptions, HexFormat.of().formatHex(md.digest()));
 	}
 
-	private static RulesFile fromPath(Path rulesFilePath, Set<Path> visited) {
+	private static RulesFile fromPath(Path rulesFilePath, Set<Path> visited, MessageDigest md) {
 		assert rulesFilePath != null;
 		assert visited != null;
+		assert md != null;
 		if (!Files.exists(rulesFilePath)) {
 			throw new RulesFileError("Rules file does not exist: " + rulesFilePath);
 		}
@@ -153,8 +180,10 @@ public final class RulesFile {
 		logger.debug("Canonical rules file path: {}", canonicalRulesFilePath);
 		visited.add(canonicalRulesFilePath);
 		Document doc;
-		try (InputStream is = Files.newInputStream(canonicalRulesFilePath)) {
-			doc = parseRulesFile(is);
+		try {
+			byte[] rulesFileContents = Files.readAllBytes(canonicalRulesFilePath);
+			updateWithLength(md, rulesFileContents);
+			doc = parseRulesFile(new ByteArrayInputStream(rulesFileContents));
 		} catch (IOException e) {
 			throw new RulesFileError("I/O error opening rules file", e);
 		} catch (DocumentException | SAXException e) {
@@ -186,7 +215,7 @@ public final class RulesFile {
 					throw new RulesFileError(message);
 				}
 				logger.info("Recursively processing import '{}'", canonicalImportPath);
-				RulesFile imported = fromPath(canonicalImportPath, visited);
+				RulesFile imported = fromPath(canonicalImportPath, visited, md);
 				rules.addAll(imported.rules);
 				exemptions.addAll(imported.exemptions);
 			}
@@ -292,7 +321,65 @@ public final class RulesFile {
 				// Why aren't we reading the exemption reason? It's for documentation only.
 			}
 		}
-		return new RulesFile(rules, exemptions);
+		// The digest is only known once all imports have been processed.
+		return new RulesFile(rules, exemptions, null);
+	}
+
+	private static void updateWithExtensionRuleFactories(MessageDigest md) {
+		/*
+		 * Extension rules are created by the extension rule factories, so
+		 * their code is part of the effective rules as well. Each factory is
+		 * identified by its class name and a digest of the JAR file it was
+		 * loaded from. If it was not loaded from a file, e.g. from a
+		 * directory of classes, the class file of the factory is used.
+		 */
+		for (ExtensionRuleFactory e : extensionRuleFactories) {
+			Class<?> factoryClass = e.getClass();
+			updateWithLength(md, factoryClass.getName().getBytes(StandardCharsets.UTF_8));
+			updateWithLength(md, codeDigest(factoryClass));
+		}
+	}
+
+	private static byte[] codeDigest(Class<?> factoryClass) {
+		MessageDigest md = newMessageDigest();
+		try {
+			CodeSource codeSource = factoryClass.getProtectionDomain().getCodeSource();
+			if (codeSource != null && codeSource.getLocation() != null && "file".equals(codeSource.getLocation().getProtocol())) {
+				Path location = Paths.get(codeSource.getLocation().toURI());
+				if (Files.isRegularFile(location)) {
+					try (InputStream is = new DigestInputStream(Files.newInputStream(location), md)) {
+						is.transferTo(OutputStream.nullOutputStream());
+					}
+					return md.digest();
+				}
+			}
+			String className = factoryClass.getName();
+			try (InputStream is = factoryClass.getResourceAsStream(className.substring(className.lastIndexOf('.') + 1) + ".class")) {
+				if (is != null) {
+					md.update(is.readAllBytes());
+				}
+			}
+		} catch (IOException | URISyntaxException e) {
+			throw new RulesFileError("Error reading extension rule factory " + factoryClass.getName(), e);
+		}
+		return md.digest();
+	}
+
+	private static void updateWithLength(MessageDigest md, byte[] bytes) {
+		/*
+		 * Each input is preceded by its length, so that moving bytes from the
+		 * end of one input to the start of the next changes the digest.
+		 */
+		md.update(ByteBuffer.allocate(Long.BYTES).putLong(bytes.length).array());
+		md.update(bytes);
+	}
+
+	private static MessageDigest newMessageDigest() {
+		try {
+			return MessageDigest.getInstance(HASHING_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RulesFileError(String.format("Unknown hashing algorithm '%s'", HASHING_ALGORITHM), e);
+		}
 	}
 
 	private static Path toCanonicalPath(Path p) {
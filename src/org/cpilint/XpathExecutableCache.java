@@ -0,0 +1,73 @@
+package org.cpilint;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathExecutable;
+
+public final class XpathExecutableCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(XpathExecutableCache.class);
+
+	private final XPathCompiler xpathCompiler;
+	private final int maxSize;
+	private final Map<String, XPathExecutable> executables = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	XpathExecutableCache(XPathCompiler xpathCompiler, int maxSize) {
+		/*
+		 * The compiler's static context (i.e. its namespace declarations) is
+		 * part of what an expression means. A cache is therefore tied to a
+		 * single compiler, and expressions are keyed by their text alone.
+		 */
+		this.xpathCompiler = Objects.requireNonNull(xpathCompiler, "xpathCompiler must not be null");
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be at least one");
+		}
+		this.maxSize = maxSize;
+	}
+
+	XPathExecutable getExecutable(String xpath) throws SaxonApiException {
+		XPathExecutable exe = executables.get(xpath);
+		if (exe != null) {
+			hits.increment();
+			return exe;
+		}
+		misses.increment();
+		/*
+		 * XPathCompiler is not thread-safe, so compiling is synchronized on
+		 * it. Two threads may still compile the same expression one after the
+		 * other; that is harmless, and only happens on a miss.
+		 */
+		synchronized (xpathCompiler) {
+			exe = xpathCompiler.compile(xpath);
+		}
+		if (executables.size() < maxSize) {
+			executables.putIfAbsent(xpath, exe);
+		} else {
+			logger.debug("XPath executable cache is full; not caching expression");
+		}
+		return exe;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public int size() {
+		return executables.size();
+	}
+
+}
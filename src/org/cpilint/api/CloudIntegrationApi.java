@@ -1,15 +1,35 @@
 package org.cpilint.api;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
 
 public interface CloudIntegrationApi {
 	
-	public IflowArtifact getIflowArtifact(String iflowArtifactId);
+	public default IflowArtifact getIflowArtifact(String iflowArtifactId) {
+		return getIflowArtifact(iflowArtifactId, ArtifactRequirements.all());
+	}
+	
+	public IflowArtifact getIflowArtifact(String iflowArtifactId, ArtifactRequirements requirements);
 	
 	public Set<String> getEditableIntegrationPackageIds(boolean skipSapPackages);
 	
 	public Set<String> getIflowArtifactIdsFromPackage(String packageId, boolean skipDrafts);
+
+	public default Map<String, Set<String>> getEditableIntegrationPackagesWithIflowArtifactIds(boolean skipSapPackages, boolean skipDrafts) {
+		/*
+		 * Returns the iflow artifact IDs of every editable package, keyed by
+		 * package ID. Implementations that can list packages and their
+		 * artifacts in fewer requests should override this method.
+		 */
+		Map<String, Set<String>> iflowArtifactIdsByPackage = new HashMap<>();
+		for (String packageId : getEditableIntegrationPackageIds(skipSapPackages)) {
+			iflowArtifactIdsByPackage.put(packageId, getIflowArtifactIdsFromPackage(packageId, skipDrafts));
+		}
+		return iflowArtifactIdsByPackage;
+	}
 	
 }
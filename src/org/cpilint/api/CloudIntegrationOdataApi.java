@@ -1,36 +1,47 @@
 package org.cpilint.api;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.stream.StreamSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.PackageInfo;
 import org.cpilint.artifacts.ZipArchiveIflowArtifact;
 import org.cpilint.auth.AccessToken;
+import org.cpilint.auth.AccessTokenProvider;
 import org.cpilint.auth.AuthMode;
 import org.cpilint.auth.AuthorizationServer;
 import org.cpilint.util.JarResourceUtil;
 import org.cpilint.util.HttpUtil;
+import org.cpilint.util.IoUtil;
+import org.cpilint.util.SaxonUtil;
 import net.sf.saxon.s9api.Processor;
 import net.sf.saxon.s9api.QName;
 import net.sf.saxon.s9api.SaxonApiException;
@@ -49,45 +60,137 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 	private static final String ODATA_API_BASE_PATH = "/api/v1/";
 	private static final String URI_SCHEME = "https";
 	private static final String EXPECTED_IFLOW_ARTIFACT_RESPONSE_TYPE = "application/zip";
+	private static final String EXPANDED_PACKAGES_QUERY = "$expand=IntegrationDesigntimeArtifacts&$select=Id,Name,Mode,Vendor,IntegrationDesigntimeArtifacts/Id,IntegrationDesigntimeArtifacts/Version,IntegrationDesigntimeArtifacts/ModifiedAt";
+	private static final String EDITABLE_PACKAGE_MODE = "EDIT_ALLOWED";
+	private static final String SAP_VENDOR = "SAP";
+	private static final String DRAFT_VERSION = "Active";
 
 	private final AuthMode authMode;
 	private final String hostname;
 	private final String apiUsername;
 	private final char[] apiPassword;
-	private final AuthorizationServer authServer;
-	private AccessToken accessToken;
-	private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
-	private final XQueryCompiler xqueryCompiler = new Processor(false).newXQueryCompiler();
-	private final Map<String, PackageInfo> packageIdToPackageInfo = new HashMap<>();
-	private final Map<String, PackageInfo> iflowIdToPackageInfo = new HashMap<>();
+	// Null in basic authentication mode.
+	private final AccessTokenProvider tokenProvider;
+	private final HttpClient httpClient;
+	// Whether compressed responses are requested, where it pays off.
+	private final boolean acceptGzip;
+	private final Processor processor;
+	private final XQueryCompiler xqueryCompiler;
+	/*
+	 * Iflow artifacts can be retrieved from several threads at once, so the
+	 * package info caches and the access token must be thread-safe.
+	 */
+	private final Map<String, PackageInfo> packageIdToPackageInfo = new ConcurrentHashMap<>();
+	private final Map<String, PackageInfo> iflowIdToPackageInfo = new ConcurrentHashMap<>();
+	// Null if downloaded iflow artifacts are not cached.
+	private final IflowArtifactCache artifactCache;
+	private final Map<String, String> iflowIdToCacheKey = new ConcurrentHashMap<>();
+	private final RequestPolicy requestPolicy;
 
 	public CloudIntegrationOdataApi(String hostname, String apiUsername, char[] apiPassword) {
-		logger.debug("Instantiating CloudIntegrationOdataApi in basic authentication mode");
-		authMode = AuthMode.BASIC_AUTH;
-		this.hostname = Objects.requireNonNull(hostname, "hostname must not be null");
-		this.apiUsername = Objects.requireNonNull(apiUsername, "apiUsername must not be null");
-		this.apiPassword = Objects.requireNonNull(apiPassword, "apiPassword must not be null");
-		this.authServer = null;
+		this(hostname, apiUsername, apiPassword, SaxonUtil.getSharedProcessor());
+	}
+
+	public CloudIntegrationOdataApi(String hostname, String apiUsername, char[] apiPassword, Processor processor) {
+		this(hostname, apiUsername, apiPassword, processor, Optional.empty(), RequestPolicy.none());
+	}
+
+	public CloudIntegrationOdataApi(String hostname, String apiUsername, char[] apiPassword, Processor processor, IflowArtifactCache artifactCache) {
+		this(hostname, apiUsername, apiPassword, processor, Optional.of(Objects.requireNonNull(artifactCache, "artifactCache must not be null")), RequestPolicy.none());
+	}
+
+	public CloudIntegrationOdataApi(String hostname, String apiUsername, char[] apiPassword, Processor processor, Optional<IflowArtifactCache> artifactCache, RequestPolicy requestPolicy) {
+		this(hostname, apiUsername, apiPassword, processor, artifactCache, requestPolicy, HttpUtil.newHttpClient(false), false);
+	}
+
+	public CloudIntegrationOdataApi(String hostname, String apiUsername, char[] apiPassword, Processor processor, Optional<IflowArtifactCache> artifactCache, RequestPolicy requestPolicy, HttpClient httpClient, boolean acceptGzip) {
+		this(AuthMode.BASIC_AUTH, hostname, Objects.requireNonNull(apiUsername, "apiUsername must not be null"), Objects.requireNonNull(apiPassword, "apiPassword must not be null"), null, processor, artifactCache, requestPolicy, httpClient, acceptGzip);
 	}
 
 	public CloudIntegrationOdataApi(String hostname, AuthorizationServer authServer) {
-		logger.debug("Instantiating CloudIntegrationOdataApi in OAuth Client Credentials mode");
-		authMode = AuthMode.OAUTH_CLIENT_CREDENTIALS;
+		this(hostname, authServer, SaxonUtil.getSharedProcessor());
+	}
+
+	public CloudIntegrationOdataApi(String hostname, AuthorizationServer authServer, Processor processor) {
+		this(hostname, authServer, processor, Optional.empty(), RequestPolicy.none());
+	}
+
+	public CloudIntegrationOdataApi(String hostname, AuthorizationServer authServer, Processor processor, IflowArtifactCache artifactCache) {
+		this(hostname, authServer, processor, Optional.of(Objects.requireNonNull(artifactCache, "artifactCache must not be null")), RequestPolicy.none());
+	}
+
+	public CloudIntegrationOdataApi(String hostname, AuthorizationServer authServer, Processor processor, Optional<IflowArtifactCache> artifactCache, RequestPolicy requestPolicy) {
+		this(hostname, authServer, processor, artifactCache, requestPolicy, HttpUtil.newHttpClient(false), false);
+	}
+
+	public CloudIntegrationOdataApi(String hostname, AuthorizationServer authServer, Processor processor, Optional<IflowArtifactCache> artifactCache, RequestPolicy requestPolicy, HttpClient httpClient, boolean acceptGzip) {
+		this(AuthMode.OAUTH_CLIENT_CREDENTIALS, hostname, null, null, Objects.requireNonNull(authServer, "authServer must not be null"), processor, artifactCache, requestPolicy, httpClient, acceptGzip);
+	}
+
+	private CloudIntegrationOdataApi(AuthMode authMode, String hostname, String apiUsername, char[] apiPassword, AuthorizationServer authServer, Processor processor, Optional<IflowArtifactCache> artifactCache, RequestPolicy requestPolicy, HttpClient httpClient, boolean acceptGzip) {
+		logger.debug(authMode == AuthMode.BASIC_AUTH
+			? "Instantiating CloudIntegrationOdataApi in basic authentication mode"
+			: "Instantiating CloudIntegrationOdataApi in OAuth Client Credentials mode");
+		this.authMode = authMode;
 		this.hostname = Objects.requireNonNull(hostname, "hostname must not be null");
-		this.apiUsername = null;
-		this.apiPassword = null;
-		this.authServer = Objects.requireNonNull(authServer, "authServer must not be null");
+		this.apiUsername = apiUsername;
+		this.apiPassword = apiPassword;
+		this.tokenProvider = authServer == null ? null : new AccessTokenProvider(authServer);
+		this.processor = Objects.requireNonNull(processor, "processor must not be null");
+		this.xqueryCompiler = processor.newXQueryCompiler();
+		this.artifactCache = Objects.requireNonNull(artifactCache, "artifactCache must not be null").orElse(null);
+		this.requestPolicy = Objects.requireNonNull(requestPolicy, "requestPolicy must not be null");
+		this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+		this.acceptGzip = acceptGzip;
+		if (this.artifactCache != null) {
+			logger.debug("Downloaded iflow artifacts will be cached");
+		}
 	}
 
 	@Override
-	public IflowArtifact getIflowArtifact(String iflowArtifactId) {
+	public IflowArtifact getIflowArtifact(String iflowArtifactId, ArtifactRequirements requirements) {
 		Objects.requireNonNull(iflowArtifactId, "iflowArtifactId must not be null");
+		Objects.requireNonNull(requirements, "requirements must not be null");
 		if (iflowArtifactId.isBlank()) {
 			throw new IllegalArgumentException("iflowArtifactId must not be blank");
 		}
+		/*
+		 * If the iflow artifact is cacheable (i.e. it was listed along with
+		 * its version), and it has not changed since it was cached, there is
+		 * no need to download it again.
+		 */
+		String cacheKey = artifactCache == null ? null : iflowIdToCacheKey.get(iflowArtifactId);
+		Optional<IflowArtifact> cached = cacheKey == null ? Optional.empty() : iflowArtifactFromCache(iflowArtifactId, cacheKey, requirements);
+		IflowArtifact iflowArtifact = cached.isPresent() ? cached.get() : downloadIflowArtifact(iflowArtifactId, cacheKey, requirements);
+		// If we have package info cached for this iflow, add it to the IflowArtifactTag.
+		PackageInfo packageInfo = iflowIdToPackageInfo.get(iflowArtifactId);
+		if (packageInfo != null) {
+			iflowArtifact.getTag().setPackageInfo(packageInfo);
+		}
+		return iflowArtifact;
+	}
+
+	private Optional<IflowArtifact> iflowArtifactFromCache(String iflowArtifactId, String cacheKey, ArtifactRequirements requirements) {
+		Optional<byte[]> archive = artifactCache.get(cacheKey);
+		if (archive.isEmpty()) {
+			return Optional.empty();
+		}
+		logger.debug("Iflow artifact found in cache: {}", iflowArtifactId);
+		try {
+			return Optional.of(ZipArchiveIflowArtifact.fromArchiveStream(new ByteArrayInputStream(archive.get()), processor, requirements));
+		} catch (IOException | SaxonApiException e) {
+			// Download the iflow artifact again, rather than failing the run.
+			logger.warn("Unable to process cached iflow artifact {}; removing it from the cache", iflowArtifactId, e);
+			artifactCache.invalidate(cacheKey);
+			return Optional.empty();
+		}
+	}
+
+	private IflowArtifact downloadIflowArtifact(String iflowArtifactId, String cacheKey, ArtifactRequirements requirements) {
 		logger.debug("Retrieving iflow artifact from tenant: {}", iflowArtifactId);
 		URI uri = iflowArtifactUriFromIflowArtifactId(iflowArtifactId);
-		HttpResponse<InputStream> apiResponse = httpGetRequest(uri);
+		// The artifact is a ZIP archive, so there's nothing to gain from compressing it.
+		HttpResponse<InputStream> apiResponse = httpGetRequest(uri, false);
 		final int httpStatus = apiResponse.statusCode();
 		if (httpStatus == HttpUtil.HTTP_BAD_REQUEST_STATUS_CODE) {
 			String message = String.format("HTTP status Bad Request returned for iflow artifact ID '%s', indicating that its package is read-only", iflowArtifactId);
@@ -108,17 +211,28 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 			String message = String.format("Unexpected response content type '%s' when retrieving iflow artifact ID '%s'", contentType.get(), iflowArtifactId);
 			throw new CloudIntegrationApiError(message);
 		}
+		/*
+		 * The archive is processed as it arrives, so it is never held in
+		 * memory as a whole. If it is to be cached, it is copied to the cache
+		 * on the way, and only committed once it is known to be a valid iflow
+		 * artifact.
+		 */
 		IflowArtifact iflowArtifact;
-		try {
-			iflowArtifact = ZipArchiveIflowArtifact.fromArchiveStream(apiResponse.body());
+		try (InputStream body = apiResponse.body()) {
+			if (cacheKey == null) {
+				iflowArtifact = ZipArchiveIflowArtifact.fromArchiveStream(body, processor, requirements);
+			} else {
+				try (IflowArtifactCache.Writer writer = artifactCache.writer(cacheKey)) {
+					InputStream copying = IoUtil.copying(body, writer);
+					iflowArtifact = ZipArchiveIflowArtifact.fromArchiveStream(IoUtil.nonClosing(copying), processor, requirements);
+					// Reading the entries stops at the central directory, which must be cached too.
+					copying.transferTo(OutputStream.nullOutputStream());
+					writer.commit();
+				}
+			}
 		} catch (IOException | SaxonApiException e) {
 			throw new CloudIntegrationApiError("Error while processing iflow artifact response", e);
 		}
-		// If we have package info cached for this iflow, add it to the IflowArtifactTag.
-		if (iflowIdToPackageInfo.containsKey(iflowArtifactId)) {
-			PackageInfo packageInfo = iflowIdToPackageInfo.get(iflowArtifactId);
-			iflowArtifact.getTag().setPackageInfo(packageInfo);
-		}
 		return iflowArtifact;
 	}
 
@@ -176,7 +290,25 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 		logger.debug(skipDrafts ? "Draft iflows will be skipped" : "Draft iflows will be included");
 		XQueryEvaluator evaluator = createXqueryEvaluator("iflow-artifact-ids-from-api-response.xquery");
 		evaluator.setExternalVariable(new QName("skipDrafts"), new XdmAtomicValue(skipDrafts));
-		Set<String> iflowArtifactIds = getApiResponseAndEvaluateXquery(iflowArtifactsUriFromPackageId(packageId), evaluator);
+		HttpResponse<InputStream> apiResponse = getApiResponse(iflowArtifactsUriFromPackageId(packageId));
+		XdmValue result = evaluateXquery(apiResponse.body(), evaluator);
+		/*
+		 * The resulting sequence consists of triples of iflow artifact ID,
+		 * version and modification time, so its size must be a multiple of
+		 * three.
+		 */
+		if (result.size() % 3 != 0) {
+			throw new CloudIntegrationApiError(String.format("Unexpected size (%d) of sequence returned by XQuery query", result.size()));
+		}
+		Iterator<XdmItem> itemIterator = result.iterator();
+		Set<String> iflowArtifactIds = new HashSet<>();
+		while (itemIterator.hasNext()) {
+			String iflowArtifactId = itemIterator.next().getStringValue();
+			String version = itemIterator.next().getStringValue();
+			String modifiedAt = itemIterator.next().getStringValue();
+			iflowArtifactIds.add(iflowArtifactId);
+			recordCacheKey(iflowArtifactId, version, modifiedAt);
+		}
 		logger.debug("{} iflow artifact IDs retrieved from package {}: {}", iflowArtifactIds.size(), packageId, iflowArtifactIds.stream().collect(Collectors.joining(",")));
 		// Cache package info for each iflow.
 		for (String iflowArtifactId : iflowArtifactIds) {
@@ -186,12 +318,132 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 		return iflowArtifactIds;
 	}
 
+	@Override
+	public Map<String, Set<String>> getEditableIntegrationPackagesWithIflowArtifactIds(boolean skipSapPackages, boolean skipDrafts) {
+		/*
+		 * Lists the packages with their iflow artifacts expanded inline,
+		 * following the server's paging, instead of making one request per
+		 * package. Package info is cached for later, just like in the
+		 * other two listing calls. The filtering below matches the XQuery
+		 * queries used by those calls.
+		 */
+		logger.info("Retrieving package IDs and iflow artifact IDs from tenant");
+		logger.debug(skipSapPackages ? "SAP packages will be skipped" : "SAP packages will be included");
+		logger.debug(skipDrafts ? "Draft iflows will be skipped" : "Draft iflows will be included");
+		Map<String, Set<String>> iflowArtifactIdsByPackage = new HashMap<>();
+		List<String> packagesNotExpanded = new ArrayList<>();
+		Optional<URI> pageUri = Optional.of(expandedIntegrationPackagesUri());
+		int pages = 0;
+		while (pageUri.isPresent()) {
+			HttpResponse<InputStream> apiResponse = getApiResponse(pageUri.get());
+			PackageFeedPage page;
+			try (InputStream body = apiResponse.body()) {
+				page = PackageFeedPage.read(body);
+			} catch (IOException | XMLStreamException e) {
+				throw new CloudIntegrationApiError("Error while processing integration packages response", e);
+			}
+			pages++;
+			for (PackageFeedPage.PackageEntry packageEntry : page.getPackages()) {
+				if (!includePackage(packageEntry, skipSapPackages)) {
+					continue;
+				}
+				String packageId = packageEntry.getId();
+				PackageInfo packageInfo = new PackageInfo(packageId, packageEntry.getName());
+				packageIdToPackageInfo.put(packageId, packageInfo);
+				if (!packageEntry.hasAllArtifacts()) {
+					packagesNotExpanded.add(packageId);
+					continue;
+				}
+				Set<String> iflowArtifactIds = packageEntry
+					.getArtifacts()
+					.stream()
+					.filter(a -> !skipDrafts || a.getVersion().filter(v -> !v.equals(DRAFT_VERSION)).isPresent())
+					.map(PackageFeedPage.ArtifactEntry::getId)
+					.collect(Collectors.toSet());
+				iflowArtifactIds.forEach(i -> iflowIdToPackageInfo.put(i, packageInfo));
+				for (PackageFeedPage.ArtifactEntry artifactEntry : packageEntry.getArtifacts()) {
+					recordCacheKey(artifactEntry.getId(), artifactEntry.getVersion().orElse(""), artifactEntry.getModifiedAt().orElse(""));
+				}
+				iflowArtifactIdsByPackage.put(packageId, iflowArtifactIds);
+			}
+			pageUri = nextPageUri(page);
+		}
+		logger.debug("{} packages retrieved in {} pages", iflowArtifactIdsByPackage.size() + packagesNotExpanded.size(), pages);
+		// Packages whose artifacts were not expanded, or were paged, are listed individually.
+		for (String packageId : packagesNotExpanded) {
+			iflowArtifactIdsByPackage.put(packageId, getIflowArtifactIdsFromPackage(packageId, skipDrafts));
+		}
+		return iflowArtifactIdsByPackage;
+	}
+
+	private void recordCacheKey(String iflowArtifactId, String version, String modifiedAt) {
+		/*
+		 * A saved version of an iflow never changes, but a draft (whose
+		 * version is "Active") does. A draft can therefore only be cached, if
+		 * the listing included its modification time. The hostname is part
+		 * of the key, since iflow IDs are only unique within a tenant.
+		 */
+		if (artifactCache == null || iflowArtifactId == null) {
+			return;
+		}
+		if (version.isBlank() || (version.equals(DRAFT_VERSION) && modifiedAt.isBlank())) {
+			iflowIdToCacheKey.remove(iflowArtifactId);
+			return;
+		}
+		iflowIdToCacheKey.put(iflowArtifactId, String.join("\n", hostname, iflowArtifactId, version, modifiedAt));
+	}
+
+	private static boolean includePackage(PackageFeedPage.PackageEntry packageEntry, boolean skipSapPackages) {
+		if (packageEntry.getId() == null || packageEntry.getId().isBlank()) {
+			throw new CloudIntegrationApiError("Package without an ID in integration packages response");
+		}
+		// Read-only packages are always skipped.
+		if (!packageEntry.getMode().filter(m -> m.equals(EDITABLE_PACKAGE_MODE)).isPresent()) {
+			return false;
+		}
+		return !skipSapPackages || packageEntry.getVendor().filter(v -> !v.equals(SAP_VENDOR)).isPresent();
+	}
+
+	private Optional<URI> nextPageUri(PackageFeedPage page) {
+		if (page.getNextLink().isEmpty()) {
+			return Optional.empty();
+		}
+		URI next;
+		try {
+			URI base = new URI(page.getBase().orElse(tenantUriFromPath(ODATA_API_BASE_PATH).toString()));
+			next = base.resolve(page.getNextLink().get());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			throw new CloudIntegrationApiError("Bad next page link in integration packages response", e);
+		}
+		/*
+		 * Only keep the path and query (i.e. the skip token) of the link, so
+		 * that the credentials are never sent anywhere but the tenant.
+		 */
+		StringBuilder uriBuilder = new StringBuilder();
+		uriBuilder.append(URI_SCHEME).append("://").append(hostname).append(next.getRawPath());
+		if (next.getRawQuery() != null) {
+			uriBuilder.append('?').append(next.getRawQuery());
+		}
+		URI nextPageUri;
+		try {
+			nextPageUri = new URI(uriBuilder.toString());
+		} catch (URISyntaxException e) {
+			throw new CloudIntegrationApiError("Bad tenant URI error", e);
+		}
+		logger.debug("Next page URI: {}", nextPageUri);
+		return Optional.of(nextPageUri);
+	}
+
 	private URI tenantUriFromPath(String path) {
+		return tenantUriFromPath(path, null);
+	}
+
+	private URI tenantUriFromPath(String path, String query) {
 		assert path != null;
 		assert !path.isBlank();
 		URI uri;
 		try {
-			uri = new URI(URI_SCHEME, hostname, path, null); // The null indicates no fragment, i.e. no location specified with #location.
+			uri = new URI(URI_SCHEME, hostname, path, query, null); // The null indicates no fragment, i.e. no location specified with #location.
 		} catch (URISyntaxException e) {
 			throw new CloudIntegrationApiError("Bad tenant URI error", e);
 		}
@@ -220,6 +472,15 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 		return integrationPackagesUri;
 	}
 	
+	private URI expandedIntegrationPackagesUri() {
+		StringBuilder pathBuilder = new StringBuilder();
+		pathBuilder.append(ODATA_API_BASE_PATH);
+		pathBuilder.append("IntegrationPackages");
+		URI expandedIntegrationPackagesUri = tenantUriFromPath(pathBuilder.toString(), EXPANDED_PACKAGES_QUERY);
+		logger.debug("Expanded integration packages URI generated: {}", expandedIntegrationPackagesUri);
+		return expandedIntegrationPackagesUri;
+	}
+
 	private URI iflowArtifactsUriFromPackageId(String packageId) {
 		assert packageId != null;
 		assert !packageId.isBlank();
@@ -233,7 +494,7 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 		return iflowArtifactsUri;
 	}
 
-	private String authorizationHeaderValue() {
+	private String authorizationHeaderValue(AccessToken token) {
 		String headerValue;
 		if (authMode == AuthMode.BASIC_AUTH) {
 			assert apiUsername != null;
@@ -241,8 +502,8 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 			// TODO: Duplicated in AuthorizationServer; could be moved to HttpUtil
 			headerValue = "Basic " + Base64.getEncoder().encodeToString((apiUsername + ":" + new String(apiPassword)).getBytes(StandardCharsets.UTF_8));
 		} else if (authMode == AuthMode.OAUTH_CLIENT_CREDENTIALS) {
-			assert accessToken != null;
-			headerValue = "Bearer " + accessToken.getToken();
+			assert token != null;
+			headerValue = "Bearer " + token.getToken();
 		} else {
 			// This should never happen.
 			throw new AssertionError("Unexpected authentication mode");
@@ -250,39 +511,27 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 	    return headerValue;
 	}
 	
-	private HttpResponse<InputStream> httpGetRequest(URI uri) {
-		return httpGetRequest(uri, false);
+	private HttpResponse<InputStream> httpGetRequest(URI uri, boolean acceptGzip) {
+		return httpGetRequest(uri, acceptGzip, false);
 	}
 
-	private HttpResponse<InputStream> httpGetRequest(URI uri, boolean tokenExpired) {
+	private HttpResponse<InputStream> httpGetRequest(URI uri, boolean acceptGzip, boolean tokenExpired) {
 		assert uri != null;
 		assert !(tokenExpired && authMode == AuthMode.BASIC_AUTH) : "Expired tokens only make sense in OAuth Client Credentials mode";
 		/*
 		 * Make sure we have a valid access token if the authentication mode
 		 * is OAuth Client Credentials.
 		 */
-		if (authMode == AuthMode.OAUTH_CLIENT_CREDENTIALS) {
-			if (accessToken == null || !accessToken.isValid()) {
-				if (accessToken == null) {
-					logger.info("Requesting first access token");
-				} else {
-					logger.info("Access token has expired; requesting a new one");
-				}
-				accessToken = authServer.requestAccessToken();
-				assert accessToken.isValid();
-			}
-		}
-		HttpRequest request = HttpRequest.newBuilder()
+		AccessToken token = authMode == AuthMode.OAUTH_CLIENT_CREDENTIALS ? tokenProvider.getToken() : null;
+		HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
            	.uri(uri)
-			.header(HttpUtil.REQUEST_HEADER_AUTHORIZATION, authorizationHeaderValue())
-           	.GET()
-            .build();
-        HttpResponse<InputStream> response;
-		try {
-			response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
-		} catch (IOException | InterruptedException e) {
-			throw new CloudIntegrationApiError("HTTP request error", e);
+			.header(HttpUtil.REQUEST_HEADER_AUTHORIZATION, authorizationHeaderValue(token))
+           	.GET();
+		if (acceptGzip) {
+			requestBuilder.header(HttpUtil.REQUEST_HEADER_ACCEPT_ENCODING, HttpUtil.GZIP_CONTENT_CODING);
 		}
+		HttpRequest request = requestBuilder.build();
+        HttpResponse<InputStream> response = sendWithRetries(request);
 		final int httpStatus = response.statusCode();
 		if (httpStatus == HttpUtil.HTTP_UNAUTHORIZED_STATUS_CODE) {
 			/*
@@ -290,9 +539,9 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 			 * we retry the HTTP request once with a new access token. In all other cases,
 			 * nothing further can be done so we throw an exception.
 			 */
-			if (authMode == AuthMode.OAUTH_CLIENT_CREDENTIALS && !accessToken.isValid() && !tokenExpired) {
+			if (authMode == AuthMode.OAUTH_CLIENT_CREDENTIALS && !token.isValid() && !tokenExpired) {
 				logger.info("API call failed on authentication and access token has expired; retrying once with a new token");
-				return httpGetRequest(uri, true);
+				return httpGetRequest(uri, acceptGzip, true);
 			} else {
 				throw new CloudIntegrationApiError(MESSAGE_NOT_AUTHENTICATED);
 			}
@@ -304,13 +553,69 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 		return response;
 	}
 
+	private HttpResponse<InputStream> sendWithRetries(HttpRequest request) {
+		/*
+		 * Send the request, pacing and retrying it according to the request
+		 * policy. All requests are GETs, so they can safely be retried.
+		 */
+		int retriesSoFar = 0;
+		while (true) {
+			HttpResponse<InputStream> response = null;
+			IOException failure = null;
+			Optional<Duration> delay;
+			try {
+				requestPolicy.awaitPermit();
+				// A compressed response body is decompressed while it is read.
+				response = httpClient.send(request, HttpUtil.ofDecompressedInputStream());
+			} catch (IOException e) {
+				failure = e;
+			} catch (InterruptedException e) {
+				throw new CloudIntegrationApiError("HTTP request error", e);
+			}
+			if (failure != null) {
+				delay = requestPolicy.retryDelay(retriesSoFar, Optional.empty());
+				if (delay.isEmpty()) {
+					throw new CloudIntegrationApiError("HTTP request error", failure);
+				}
+				logger.warn("HTTP request to {} failed ({}); retrying in {} ms", request.uri(), failure.toString(), delay.get().toMillis());
+			} else if (RequestPolicy.isRetryableStatus(response.statusCode())) {
+				delay = requestPolicy.retryDelay(retriesSoFar, response.headers().firstValue(HttpUtil.RESPONSE_HEADER_RETRY_AFTER));
+				if (delay.isEmpty()) {
+					return response;
+				}
+				logger.warn("HTTP status {} returned for {}; retrying in {} ms", response.statusCode(), request.uri(), delay.get().toMillis());
+				discardBody(response);
+			} else {
+				return response;
+			}
+			try {
+				requestPolicy.awaitRetry(delay.get());
+			} catch (InterruptedException e) {
+				throw new CloudIntegrationApiError("Interrupted while waiting to retry HTTP request", e);
+			}
+			retriesSoFar++;
+		}
+	}
+
+	private static void discardBody(HttpResponse<InputStream> response) {
+		// Closing the body lets the connection be reused.
+		try {
+			response.body().close();
+		} catch (IOException e) {
+			logger.debug("Error discarding HTTP response body", e);
+		}
+	}
+
 	private XQueryEvaluator createXqueryEvaluator(String xqueryFilename) {
 		assert xqueryFilename != null;
 		assert !xqueryFilename.isBlank();
 		String xquery = JarResourceUtil.loadXqueryResource(xqueryFilename);
 		XQueryExecutable exe;
 		try {
-			exe = xqueryCompiler.compile(xquery);
+			// XQueryCompiler is not thread-safe, and packages can be listed concurrently.
+			synchronized (xqueryCompiler) {
+				exe = xqueryCompiler.compile(xquery);
+			}
 		} catch (SaxonApiException e) {
 			throw new CloudIntegrationApiError("Error compiling XQuery file", e);
 		}
@@ -319,7 +624,8 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 
 	private HttpResponse<InputStream> getApiResponse(URI uri) {
 		assert uri != null;
-		HttpResponse<InputStream> apiResponse = httpGetRequest(uri);
+		// The XML feeds returned by the API compress well.
+		HttpResponse<InputStream> apiResponse = httpGetRequest(uri, acceptGzip);
 		final int httpStatus = apiResponse.statusCode();
 		/*
 		 * HTTP status codes are checked in httpGetRequest, so anything but HTTP status
@@ -332,19 +638,6 @@ public final class CloudIntegrationOdataApi implements CloudIntegrationApi {
 		return apiResponse;
 	}
 
-	private Set<String> getApiResponseAndEvaluateXquery(URI uri, XQueryEvaluator evaluator) {
-		assert uri != null;
-		assert evaluator != null;
-		HttpResponse<InputStream> apiResponse = getApiResponse(uri);
-		// Execute the XQuery query.
-		XdmValue result = evaluateXquery(apiResponse.body(), evaluator);
-		// Return a Set of the string values of every item in the result sequence.
-		return result
-			.stream()
-			.map(XdmItem::getStringValue)
-			.collect(Collectors.toSet());
-	}
-
 	private static XdmValue evaluateXquery(InputStream document, XQueryEvaluator evaluator){
 		assert document != null;
 		assert evaluator != null;
@@ -0,0 +1,267 @@
+package org.cpilint.api;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class IflowArtifactCache {
+
+	/*
+	 * A directory of downloaded iflow artifact archives. Each archive is
+	 * stored under a digest of its key, and the least recently used archives
+	 * are evicted when the total size exceeds the limit. The last modified
+	 * time of each file records when it was last used, so that the order
+	 * survives between runs. Archives are written to a temporary file and
+	 * then moved into place, so a crashed run never leaves a partial archive
+	 * behind. All methods are safe to call from several threads, but a
+	 * single Writer must only be used by one thread.
+	 */
+
+	private static final Logger logger = LoggerFactory.getLogger(IflowArtifactCache.class);
+	private static final String HASHING_ALGORITHM = "SHA-256";
+	private static final String ARCHIVE_SUFFIX = ".zip";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+	private final Path directory;
+	private final long maxBytes;
+	// File name to size, in least recently used order.
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes = 0;
+
+	public IflowArtifactCache(Path directory, long maxBytes) {
+		this.directory = Objects.requireNonNull(directory, "directory must not be null");
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes must be at least one");
+		}
+		this.maxBytes = maxBytes;
+		try {
+			Files.createDirectories(directory);
+			loadEntries();
+		} catch (IOException e) {
+			throw new CloudIntegrationApiError("Error while opening iflow artifact cache", e);
+		}
+		logger.info("Iflow artifact cache in {} holds {} archives ({} bytes)", directory, entries.size(), totalBytes);
+	}
+
+	public Optional<byte[]> get(String key) {
+		Objects.requireNonNull(key, "key must not be null");
+		String fileName = fileNameFromKey(key);
+		synchronized (this) {
+			// Unlike containsKey, get moves the entry to the most recently used end.
+			if (entries.get(fileName) == null) {
+				return Optional.empty();
+			}
+		}
+		/*
+		 * Only the bookkeeping is done under the lock; the file is read
+		 * outside it, so that reading one archive does not hold up the other
+		 * threads. An archive is only ever replaced by moving a complete file
+		 * into place, so a read never sees a partial archive. If the file was
+		 * evicted in the meantime, it is a miss.
+		 */
+		Path file = directory.resolve(fileName);
+		byte[] archive;
+		try {
+			archive = Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			// The file was evicted, or someone else removed it.
+			synchronized (this) {
+				remove(fileName);
+			}
+			return Optional.empty();
+		} catch (IOException e) {
+			throw new CloudIntegrationApiError("Error while reading from iflow artifact cache", e);
+		}
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (NoSuchFileException e) {
+			// Evicted since it was read; the archive that was read is still good.
+		} catch (IOException e) {
+			throw new CloudIntegrationApiError("Error while reading from iflow artifact cache", e);
+		}
+		return Optional.of(archive);
+	}
+
+	public Writer writer(String key) throws IOException {
+		/*
+		 * Returns a Writer, which an archive can be written to while it is
+		 * being downloaded, instead of being buffered in memory first. The
+		 * archive is only added to the cache if the Writer is committed.
+		 */
+		Objects.requireNonNull(key, "key must not be null");
+		return new Writer(fileNameFromKey(key));
+	}
+
+	public synchronized void invalidate(String key) {
+		Objects.requireNonNull(key, "key must not be null");
+		String fileName = fileNameFromKey(key);
+		try {
+			Files.deleteIfExists(directory.resolve(fileName));
+		} catch (IOException e) {
+			throw new CloudIntegrationApiError("Error while removing from iflow artifact cache", e);
+		}
+		remove(fileName);
+	}
+
+	private void loadEntries() throws IOException {
+		List<Path> files;
+		try (Stream<Path> list = Files.list(directory)) {
+			files = list.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+		// Temporary files can only be left behind by a run that was killed while writing.
+		for (Path temp : files) {
+			if (temp.getFileName().toString().endsWith(TEMP_FILE_SUFFIX)) {
+				Files.deleteIfExists(temp);
+			}
+		}
+		List<Path> archives = files
+			.stream()
+			.filter(p -> p.getFileName().toString().endsWith(ARCHIVE_SUFFIX))
+			.collect(Collectors.toList());
+		// Oldest first, so that the iteration order of the map is least recently used first.
+		archives.sort(Comparator.comparing(IflowArtifactCache::lastModified));
+		for (Path archive : archives) {
+			long size = Files.size(archive);
+			entries.put(archive.getFileName().toString(), size);
+			totalBytes += size;
+		}
+		evict();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+		while (totalBytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, Long> eldest = it.next();
+			try {
+				Files.deleteIfExists(directory.resolve(eldest.getKey()));
+			} catch (IOException e) {
+				throw new CloudIntegrationApiError("Error while evicting from iflow artifact cache", e);
+			}
+			logger.debug("Evicted {} from iflow artifact cache", eldest.getKey());
+			totalBytes -= eldest.getValue();
+			it.remove();
+		}
+	}
+
+	private void remove(String fileName) {
+		Long size = entries.remove(fileName);
+		if (size != null) {
+			totalBytes -= size;
+		}
+	}
+
+	private static void moveIntoPlace(Path temp, Path file) throws IOException {
+		try {
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private synchronized void add(String fileName, Path temp, long size) throws IOException {
+		if (size > maxBytes) {
+			logger.debug("Archive of {} bytes is larger than the cache; not caching it", size);
+			return;
+		}
+		moveIntoPlace(temp, directory.resolve(fileName));
+		remove(fileName);
+		entries.put(fileName, size);
+		totalBytes += size;
+		evict();
+	}
+
+	private static FileTime lastModified(Path file) {
+		try {
+			return Files.getLastModifiedTime(file);
+		} catch (IOException e) {
+			throw new CloudIntegrationApiError("Error while opening iflow artifact cache", e);
+		}
+	}
+
+	private static String fileNameFromKey(String key) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance(HASHING_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new CloudIntegrationApiError(String.format("Unknown hashing algorithm '%s'", HASHING_ALGORITHM), e);
+		}
+		return HexFormat.of().formatHex(md.digest(key.getBytes(StandardCharsets.UTF_8))) + ARCHIVE_SUFFIX;
+	}
+
+	public final class Writer extends OutputStream {
+
+		/*
+		 * Writes an archive to a temporary file in the cache directory. Only
+		 * writing happens outside the cache's lock; committing moves the file
+		 * into place. Closing a Writer that was not committed discards the
+		 * archive.
+		 */
+
+		private final String fileName;
+		private final Path temp;
+		private final OutputStream out;
+		private long size = 0;
+		private boolean committed = false;
+
+		private Writer(String fileName) throws IOException {
+			this.fileName = fileName;
+			this.temp = Files.createTempFile(directory, fileName, TEMP_FILE_SUFFIX);
+			this.out = new BufferedOutputStream(Files.newOutputStream(temp));
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			size++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			size += len;
+		}
+
+		public void commit() throws IOException {
+			if (committed) {
+				throw new IllegalStateException("Archive already committed");
+			}
+			out.close();
+			add(fileName, temp, size);
+			committed = true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				out.close();
+			} finally {
+				// After a commit, the temporary file has already been moved.
+				Files.deleteIfExists(temp);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,238 @@
+package org.cpilint.api;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+final class PackageFeedPage {
+
+	/*
+	 * One page of the Atom feed returned by the IntegrationPackages OData API
+	 * when the package artifacts are expanded inline. The feed is read with
+	 * StAX, keeping only the few properties that are needed, so the feed
+	 * tree is never built in memory.
+	 */
+
+	private static final String ATOM_NS = "http://www.w3.org/2005/Atom";
+	private static final String METADATA_NS = "http://schemas.microsoft.com/ado/2007/08/dataservices/metadata";
+	private static final String DATASERVICES_NS = "http://schemas.microsoft.com/ado/2007/08/dataservices";
+	private static final String NEXT_LINK_REL = "next";
+
+	private final List<PackageEntry> packages;
+	private final String nextLink;
+	private final String base;
+
+	private PackageFeedPage(List<PackageEntry> packages, String nextLink, String base) {
+		this.packages = Collections.unmodifiableList(packages);
+		this.nextLink = nextLink;
+		this.base = base;
+	}
+
+	List<PackageEntry> getPackages() {
+		return packages;
+	}
+
+	Optional<String> getNextLink() {
+		// The link to the next page, if the server paged the feed.
+		return Optional.ofNullable(nextLink);
+	}
+
+	Optional<String> getBase() {
+		// The feed's xml:base, which relative links are resolved against.
+		return Optional.ofNullable(base);
+	}
+
+	static PackageFeedPage read(InputStream feed) throws XMLStreamException {
+		assert feed != null;
+		XMLInputFactory factory = XMLInputFactory.newFactory();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		XMLStreamReader reader = factory.createXMLStreamReader(feed);
+		try {
+			return read(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static PackageFeedPage read(XMLStreamReader reader) throws XMLStreamException {
+		/*
+		 * The feed is laid out like this (only the relevant parts shown):
+		 *
+		 * feed
+		 *   link rel="next"                  (if paged)
+		 *   entry                            (a package)
+		 *     m:properties/d:*
+		 *     link
+		 *       m:inline
+		 *         feed
+		 *           link rel="next"          (if the artifacts were paged)
+		 *           entry                    (an artifact)
+		 *             m:properties/d:*
+		 *
+		 * The m:properties element can also be wrapped in a content element.
+		 * Depths are tracked instead of full paths, since the nesting above
+		 * is fixed by the OData Atom format.
+		 */
+		List<PackageEntry> packages = new ArrayList<>();
+		String nextLink = null;
+		String base = null;
+		int depth = 0;
+		PackageEntry currentPackage = null;
+		int inlineDepth = 0;
+		ArtifactEntry currentArtifact = null;
+		int artifactDepth = 0;
+		int propertiesDepth = 0;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				if (depth == 1 && isAtom(reader, "feed")) {
+					base = reader.getAttributeValue(XMLConstants.XML_NS_URI, "base");
+				} else if (depth == 2 && isAtom(reader, "link") && isNextLink(reader)) {
+					nextLink = reader.getAttributeValue(null, "href");
+				} else if (depth == 2 && isAtom(reader, "entry")) {
+					currentPackage = new PackageEntry();
+				} else if (currentPackage != null && inlineDepth == 0 && is(reader, METADATA_NS, "inline")) {
+					inlineDepth = depth;
+					currentPackage.artifactsInline = true;
+				} else if (inlineDepth > 0 && depth == inlineDepth + 2 && isAtom(reader, "link") && isNextLink(reader)) {
+					currentPackage.artifactsPaged = true;
+				} else if (inlineDepth > 0 && depth == inlineDepth + 2 && isAtom(reader, "entry")) {
+					currentArtifact = new ArtifactEntry();
+					artifactDepth = depth;
+				} else if (currentPackage != null && propertiesDepth == 0 && is(reader, METADATA_NS, "properties")) {
+					propertiesDepth = depth;
+				} else if (propertiesDepth > 0 && depth == propertiesDepth + 1 && DATASERVICES_NS.equals(reader.getNamespaceURI())) {
+					String name = reader.getLocalName();
+					String value = reader.getElementText();
+					// getElementText leaves the reader on the matching end tag.
+					depth--;
+					if (currentArtifact != null) {
+						currentArtifact.setProperty(name, value);
+					} else if (inlineDepth == 0) {
+						currentPackage.setProperty(name, value);
+					}
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (depth == propertiesDepth) {
+					propertiesDepth = 0;
+				} else if (currentArtifact != null && depth == artifactDepth) {
+					currentPackage.artifacts.add(currentArtifact);
+					currentArtifact = null;
+				} else if (depth == inlineDepth) {
+					inlineDepth = 0;
+				} else if (currentPackage != null && depth == 2) {
+					packages.add(currentPackage);
+					currentPackage = null;
+				}
+				depth--;
+			}
+		}
+		return new PackageFeedPage(packages, nextLink, base);
+	}
+
+	private static boolean is(XMLStreamReader reader, String namespace, String localName) {
+		return namespace.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+	}
+
+	private static boolean isAtom(XMLStreamReader reader, String localName) {
+		return is(reader, ATOM_NS, localName);
+	}
+
+	private static boolean isNextLink(XMLStreamReader reader) {
+		return NEXT_LINK_REL.equals(reader.getAttributeValue(null, "rel"));
+	}
+
+	static final class PackageEntry {
+
+		private String id;
+		private String name;
+		private String mode;
+		private String vendor;
+		private final List<ArtifactEntry> artifacts = new ArrayList<>();
+		private boolean artifactsInline = false;
+		private boolean artifactsPaged = false;
+
+		private void setProperty(String property, String value) {
+			switch (property) {
+				case "Id" -> id = value;
+				case "Name" -> name = value;
+				case "Mode" -> mode = value;
+				case "Vendor" -> vendor = value;
+				default -> {
+					// Not needed.
+				}
+			}
+		}
+
+		String getId() {
+			return id;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		Optional<String> getMode() {
+			return Optional.ofNullable(mode);
+		}
+
+		Optional<String> getVendor() {
+			return Optional.ofNullable(vendor);
+		}
+
+		List<ArtifactEntry> getArtifacts() {
+			return Collections.unmodifiableList(artifacts);
+		}
+
+		boolean hasAllArtifacts() {
+			/*
+			 * The artifacts are only complete, if the server expanded them
+			 * inline and did not page them.
+			 */
+			return artifactsInline && !artifactsPaged;
+		}
+
+	}
+
+	static final class ArtifactEntry {
+
+		private String id;
+		private String version;
+		private String modifiedAt;
+
+		private void setProperty(String property, String value) {
+			switch (property) {
+				case "Id" -> id = value;
+				case "Version" -> version = value;
+				case "ModifiedAt" -> modifiedAt = value;
+				default -> {
+					// Not needed.
+				}
+			}
+		}
+
+		String getId() {
+			return id;
+		}
+
+		Optional<String> getVersion() {
+			return Optional.ofNullable(version);
+		}
+
+		Optional<String> getModifiedAt() {
+			return Optional.ofNullable(modifiedAt);
+		}
+
+	}
+
+}
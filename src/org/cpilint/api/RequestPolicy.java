@@ -0,0 +1,170 @@
+package org.cpilint.api;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class RequestPolicy {
+
+	/*
+	 * How requests to the tenant API are paced and retried. Requests are
+	 * paced by a token bucket holding up to one second's worth of requests,
+	 * so short bursts are allowed but the average rate stays within the
+	 * limit. Requests that fail with an I/O error, or that the tenant
+	 * rejects as too many or unavailable, are retried with exponential
+	 * backoff and jitter, unless the tenant says how long to wait in a
+	 * Retry-After header. One instance is shared by all the requests of an
+	 * API, so it is thread-safe, and it also counts retries and the time
+	 * spent waiting.
+	 */
+
+	private static final int HTTP_TOO_MANY_REQUESTS_STATUS_CODE = 429;
+	private static final int HTTP_SERVICE_UNAVAILABLE_STATUS_CODE = 503;
+	// A longer Retry-After than this is treated as the tenant giving up.
+	private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(10);
+
+	private final int maxRetries;
+	private final Duration initialBackoff;
+	private final Duration maxBackoff;
+	// Zero if requests are not rate limited.
+	private final double requestsPerSecond;
+	// The token bucket; guarded by this.
+	private double tokens;
+	private long lastRefillNanos;
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong retryWaitNanos = new AtomicLong();
+	private final AtomicLong throttledNanos = new AtomicLong();
+
+	public RequestPolicy(int maxRetries, Duration initialBackoff, Duration maxBackoff, double requestsPerSecond) {
+		if (maxRetries < 0) {
+			throw new IllegalArgumentException("maxRetries must not be negative");
+		}
+		this.initialBackoff = Objects.requireNonNull(initialBackoff, "initialBackoff must not be null");
+		this.maxBackoff = Objects.requireNonNull(maxBackoff, "maxBackoff must not be null");
+		if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+			throw new IllegalArgumentException("Backoffs must not be negative and initialBackoff must not exceed maxBackoff");
+		}
+		if (requestsPerSecond < 0) {
+			throw new IllegalArgumentException("requestsPerSecond must not be negative");
+		}
+		this.maxRetries = maxRetries;
+		this.requestsPerSecond = requestsPerSecond;
+		this.tokens = requestsPerSecond;
+		this.lastRefillNanos = System.nanoTime();
+	}
+
+	public static RequestPolicy none() {
+		// No retries and no rate limit.
+		return new RequestPolicy(0, Duration.ZERO, Duration.ZERO, 0);
+	}
+
+	public long getRequests() {
+		return requests.get();
+	}
+
+	public long getRetries() {
+		return retries.get();
+	}
+
+	public long getRetryWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(retryWaitNanos.get());
+	}
+
+	public long getThrottledMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+	}
+
+	void awaitPermit() throws InterruptedException {
+		requests.incrementAndGet();
+		if (requestsPerSecond == 0) {
+			return;
+		}
+		long waitNanos = reserveToken();
+		if (waitNanos > 0) {
+			throttledNanos.addAndGet(waitNanos);
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	static boolean isRetryableStatus(int httpStatus) {
+		return httpStatus == HTTP_TOO_MANY_REQUESTS_STATUS_CODE || httpStatus == HTTP_SERVICE_UNAVAILABLE_STATUS_CODE;
+	}
+
+	Optional<Duration> retryDelay(int retriesSoFar, Optional<String> retryAfter) {
+		/*
+		 * Returns how long to wait before the next retry, or nothing if the
+		 * request should not be retried.
+		 */
+		assert retriesSoFar >= 0;
+		assert retryAfter != null;
+		if (retriesSoFar >= maxRetries) {
+			return Optional.empty();
+		}
+		Optional<Duration> requested = retryAfter.flatMap(RequestPolicy::parseRetryAfter);
+		if (requested.isPresent()) {
+			return requested.get().compareTo(MAX_RETRY_AFTER) > 0 ? Optional.empty() : requested;
+		}
+		/*
+		 * Double the backoff for each retry, up to the maximum, and wait a
+		 * random time between half of that and all of it, so that concurrent
+		 * requests that failed together do not retry together.
+		 */
+		long backoffNanos = initialBackoff.toNanos();
+		for (int i = 0; i < retriesSoFar && backoffNanos < maxBackoff.toNanos(); i++) {
+			backoffNanos *= 2;
+		}
+		backoffNanos = Math.min(backoffNanos, maxBackoff.toNanos());
+		long half = backoffNanos / 2;
+		return Optional.of(Duration.ofNanos(half + ThreadLocalRandom.current().nextLong(half + 1)));
+	}
+
+	void awaitRetry(Duration delay) throws InterruptedException {
+		assert delay != null;
+		retries.incrementAndGet();
+		retryWaitNanos.addAndGet(delay.toNanos());
+		TimeUnit.NANOSECONDS.sleep(delay.toNanos());
+	}
+
+	private synchronized long reserveToken() {
+		/*
+		 * Refill the bucket for the time that has passed, and take a token.
+		 * If there was none, the token is borrowed from the future, and the
+		 * caller must wait until it would have been added. Sleeping happens
+		 * outside the lock.
+		 */
+		long now = System.nanoTime();
+		tokens = Math.min(requestsPerSecond, tokens + (now - lastRefillNanos) * requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+		lastRefillNanos = now;
+		tokens -= 1;
+		if (tokens >= 0) {
+			return 0;
+		}
+		return (long)Math.ceil(-tokens / requestsPerSecond * TimeUnit.SECONDS.toNanos(1));
+	}
+
+	private static Optional<Duration> parseRetryAfter(String value) {
+		// Retry-After is either a number of seconds or an HTTP date.
+		String trimmed = value.trim();
+		try {
+			long seconds = Long.parseLong(trimmed);
+			return seconds < 0 ? Optional.empty() : Optional.of(Duration.ofSeconds(seconds));
+		} catch (NumberFormatException e) {
+			// Not a number of seconds; try a date instead.
+		}
+		try {
+			ZonedDateTime date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+			Duration untilDate = Duration.between(ZonedDateTime.now(date.getZone()), date);
+			return Optional.of(untilDate.isNegative() ? Duration.ZERO : untilDate);
+		} catch (DateTimeParseException e) {
+			return Optional.empty();
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+package org.cpilint.artifacts;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+public final class ArtifactRequirements {
+
+	/*
+	 * Describes what needs to be extracted from an iflow artifact: whether the
+	 * iflow XML must be parsed, which resource types are needed, and whether
+	 * the contents of those resources are needed or merely their names.
+	 * Instances are immutable; the with* methods return new instances.
+	 */
+
+	private static final ArtifactRequirements NONE = new ArtifactRequirements(false, EnumSet.noneOf(ArtifactResourceType.class), EnumSet.noneOf(ArtifactResourceType.class));
+	private static final ArtifactRequirements ALL = new ArtifactRequirements(true, EnumSet.allOf(ArtifactResourceType.class), EnumSet.allOf(ArtifactResourceType.class));
+
+	private final boolean iflowXml;
+	private final Set<ArtifactResourceType> resourceNames;
+	private final Set<ArtifactResourceType> resourceContents;
+
+	private ArtifactRequirements(boolean iflowXml, Set<ArtifactResourceType> resourceNames, Set<ArtifactResourceType> resourceContents) {
+		// Needing the contents of a resource type implies needing the names.
+		Set<ArtifactResourceType> names = EnumSet.noneOf(ArtifactResourceType.class);
+		names.addAll(resourceNames);
+		names.addAll(resourceContents);
+		Set<ArtifactResourceType> contents = EnumSet.noneOf(ArtifactResourceType.class);
+		contents.addAll(resourceContents);
+		this.iflowXml = iflowXml;
+		this.resourceNames = Collections.unmodifiableSet(names);
+		this.resourceContents = Collections.unmodifiableSet(contents);
+	}
+
+	public static ArtifactRequirements none() {
+		return NONE;
+	}
+
+	public static ArtifactRequirements all() {
+		return ALL;
+	}
+
+	public ArtifactRequirements withIflowXml() {
+		return new ArtifactRequirements(true, resourceNames, resourceContents);
+	}
+
+	public ArtifactRequirements withResourceNames(ArtifactResourceType... types) {
+		return withResourceNames(Set.of(types));
+	}
+
+	public ArtifactRequirements withResourceNames(Set<ArtifactResourceType> types) {
+		Objects.requireNonNull(types, "types must not be null");
+		Set<ArtifactResourceType> names = EnumSet.noneOf(ArtifactResourceType.class);
+		names.addAll(resourceNames);
+		names.addAll(types);
+		return new ArtifactRequirements(iflowXml, names, resourceContents);
+	}
+
+	public ArtifactRequirements withResourceContents(ArtifactResourceType... types) {
+		return withResourceContents(Set.of(types));
+	}
+
+	public ArtifactRequirements withResourceContents(Set<ArtifactResourceType> types) {
+		Objects.requireNonNull(types, "types must not be null");
+		Set<ArtifactResourceType> contents = EnumSet.noneOf(ArtifactResourceType.class);
+		contents.addAll(resourceContents);
+		contents.addAll(types);
+		return new ArtifactRequirements(iflowXml, resourceNames, contents);
+	}
+
+	public ArtifactRequirements combine(ArtifactRequirements other) {
+		Objects.requireNonNull(other, "other must not be null");
+		return new ArtifactRequirements(iflowXml || other.iflowXml, union(resourceNames, other.resourceNames), union(resourceContents, other.resourceContents));
+	}
+
+	public boolean needsIflowXml() {
+		return iflowXml;
+	}
+
+	public boolean needsResourceNames(ArtifactResourceType type) {
+		return resourceNames.contains(type);
+	}
+
+	public boolean needsResourceContents(ArtifactResourceType type) {
+		return resourceContents.contains(type);
+	}
+
+	public boolean needsAnyResourceContents() {
+		return !resourceContents.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("iflow XML: %s, resource names: %s, resource contents: %s", iflowXml, resourceNames, resourceContents);
+	}
+
+	private static Set<ArtifactResourceType> union(Set<ArtifactResourceType> a, Set<ArtifactResourceType> b) {
+		Set<ArtifactResourceType> union = EnumSet.noneOf(ArtifactResourceType.class);
+		union.addAll(a);
+		union.addAll(b);
+		return union;
+	}
+
+}
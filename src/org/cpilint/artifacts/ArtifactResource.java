@@ -1,8 +1,11 @@
 package org.cpilint.artifacts;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.Optional;
 
 public final class ArtifactResource {
 	
@@ -10,14 +13,64 @@ public final class ArtifactResource {
 	private ArtifactResourceType type;
 	private String name;
 	private byte[] contents;
+	private ResourceContentsLoader loader;
+	// Negative if the size of contents loaded on demand is not known without loading them.
+	private long size;
+	// Calculated when first requested, unless it was known on creation.
+	private volatile ResourceDigest digest;
 	
 	public ArtifactResource(IflowArtifactTag tag, ArtifactResourceType type, String name, byte[] contents) {
+		// Defensively copy the contents byte array into the instance array.
+		this(tag, type, name, contents.clone(), null, contents.length, null);
+	}
+	
+	ArtifactResource(IflowArtifactTag tag, ArtifactResourceType type, String name, long size, ResourceContentsLoader loader) {
+		/*
+		 * The contents of a resource created with this constructor are not
+		 * kept in memory. They are loaded every time getContents is called,
+		 * so resources that no rule reads are never loaded at all. The size
+		 * of the contents is provided if it is known without loading them,
+		 * e.g. from the archive entry; otherwise, it is negative.
+		 */
+		this(tag, type, name, null, Objects.requireNonNull(loader, "loader must not be null"), size, null);
+	}
+
+	private ArtifactResource(IflowArtifactTag tag, ArtifactResourceType type, String name, byte[] contents, ResourceContentsLoader loader, long size, ResourceDigest digest) {
+		assert (contents == null) != (loader == null);
+		assert contents == null || contents.length == size;
 		this.tag = tag;
 		this.type = type;
 		this.name = name;
-		// Defensively copy the contents byte array into the instance array.
-		this.contents = new byte[contents.length];
-		System.arraycopy(contents, 0, this.contents, 0, contents.length);
+		this.contents = contents;
+		this.loader = loader;
+		this.size = size;
+		this.digest = digest;
+	}
+
+	static ArtifactResource owning(IflowArtifactTag tag, ArtifactResourceType type, String name, byte[] contents, Optional<ResourceDigest> digest) {
+		/*
+		 * Creates a resource that takes ownership of the contents array
+		 * instead of copying it. Only for arrays nobody else holds on to,
+		 * e.g. entries just read from an archive. The digest is provided if
+		 * it was calculated while the contents were read.
+		 */
+		Objects.requireNonNull(contents, "contents must not be null");
+		Objects.requireNonNull(digest, "digest must not be null");
+		return new ArtifactResource(tag, type, name, contents, null, contents.length, digest.orElse(null));
+	}
+
+	public static ArtifactResource withoutContents(IflowArtifactTag tag, ArtifactResourceType type, String name) {
+		/*
+		 * Creates a resource that only identifies a resource by iflow, type
+		 * and name, e.g. to report one whose contents were not kept. Its
+		 * contents cannot be read.
+		 */
+		Objects.requireNonNull(tag, "tag must not be null");
+		Objects.requireNonNull(type, "type must not be null");
+		Objects.requireNonNull(name, "name must not be null");
+		return new ArtifactResource(tag, type, name, -1, () -> {
+			throw new IOException("Contents not available, since only the resource name is known: " + name);
+		});
 	}
 	
 	public IflowArtifactTag getTag() {
@@ -33,7 +86,62 @@ public final class ArtifactResource {
 	}
 	
 	public InputStream getContents() {
-		return new ByteArrayInputStream(contents);
+		if (loader == null) {
+			return new ByteArrayInputStream(contents);
+		}
+		return new ByteArrayInputStream(load());
+	}
+
+	public boolean isLoadedOnDemand() {
+		// True if the contents are not kept in memory, but loaded every time they are read.
+		return loader != null;
+	}
+
+	public long getSize() {
+		/*
+		 * The size of the contents. Unless it is known, the contents are
+		 * loaded to find it, and their digest is calculated on the way.
+		 */
+		return size >= 0 ? size : getDigest().getSize();
+	}
+
+	public ByteBuffer getContentsBuffer() {
+		/*
+		 * A read-only view of the contents, for callers that can work on a
+		 * buffer directly. Contents kept in memory are not copied.
+		 */
+		return ByteBuffer.wrap(loader == null ? contents : load()).asReadOnlyBuffer();
+	}
+
+	public ResourceDigest getDigest() {
+		/*
+		 * The digest is calculated at most once per resource, however many
+		 * times, and by however many threads, it is requested.
+		 */
+		ResourceDigest d = digest;
+		if (d == null) {
+			synchronized (this) {
+				d = digest;
+				if (d == null) {
+					d = ResourceDigest.of(loader == null ? contents : load());
+					digest = d;
+				}
+			}
+		}
+		return d;
+	}
+
+	public Optional<ResourceDigest> getDigestIfCalculated() {
+		// The digest, if it is already known, so that it can be used without loading the contents.
+		return Optional.ofNullable(digest);
+	}
+
+	private byte[] load() {
+		try {
+			return loader.load();
+		} catch (IOException e) {
+			throw new IflowArtifactError("Error loading artifact resource contents", e);
+		}
 	}
 	
 	@Override
@@ -1,6 +1,7 @@
 package org.cpilint.artifacts;
 
 import java.util.Collection;
+import java.util.Optional;
 
 import org.cpilint.IflowXml;
 
@@ -11,5 +12,10 @@ public interface IflowArtifact {
 	public IflowXml getIflowXml();
 	
 	public IflowArtifactTag getTag();
+
+	public default Optional<String> getArchiveDigest() {
+		// Only suppliers that support incremental runs digest the archives they read.
+		return Optional.empty();
+	}
 	
 }
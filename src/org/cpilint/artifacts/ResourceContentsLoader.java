@@ -0,0 +1,14 @@
+package org.cpilint.artifacts;
+
+import java.io.IOException;
+
+@FunctionalInterface
+interface ResourceContentsLoader {
+	
+	/*
+	 * Loads the contents of an artifact resource on demand, e.g. by
+	 * decompressing a single entry of an iflow archive.
+	 */
+	public byte[] load() throws IOException;
+
+}
@@ -0,0 +1,82 @@
+package org.cpilint.artifacts;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Objects;
+
+public final class ResourceDigest {
+
+	/*
+	 * A fingerprint of the contents of an artifact resource: their size
+	 * and their SHA-256 hash. Two resources have equal digests if and only
+	 * if their contents are the same (barring a SHA-256 collision).
+	 */
+
+	public static final String HASHING_ALGORITHM = "SHA-256";
+	public static final int HASH_LENGTH = 32;
+
+	private final long size;
+	private final byte[] hash;
+
+	public ResourceDigest(long size, byte[] hash) {
+		if (size < 0) {
+			throw new IllegalArgumentException("size must not be negative");
+		}
+		Objects.requireNonNull(hash, "hash must not be null");
+		if (hash.length != HASH_LENGTH) {
+			throw new IllegalArgumentException(String.format("hash must be %d bytes long", HASH_LENGTH));
+		}
+		this.size = size;
+		this.hash = hash.clone();
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public byte[] getHash() {
+		return hash.clone();
+	}
+
+	public ByteBuffer getHashBuffer() {
+		// A read-only view of the hash, for callers that only read it, so it is not copied.
+		return ByteBuffer.wrap(hash).asReadOnlyBuffer();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof ResourceDigest)) {
+			return false;
+		}
+		ResourceDigest other = (ResourceDigest)o;
+		return this.size == other.size && Arrays.equals(this.hash, other.hash);
+	}
+
+	@Override
+	public int hashCode() {
+		// The hash is already uniformly distributed.
+		return (hash[0] & 0xff) << 24 | (hash[1] & 0xff) << 16 | (hash[2] & 0xff) << 8 | (hash[3] & 0xff);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s:%s (%d bytes)", HASHING_ALGORITHM, HexFormat.of().formatHex(hash), size);
+	}
+
+	static ResourceDigest of(byte[] contents) {
+		assert contents != null;
+		return new ResourceDigest(contents.length, newMessageDigest().digest(contents));
+	}
+
+	static MessageDigest newMessageDigest() {
+		try {
+			return MessageDigest.getInstance(HASHING_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IflowArtifactError(String.format("Unknown hashing algorithm '%s'", HASHING_ALGORITHM), e);
+		}
+	}
+
+}
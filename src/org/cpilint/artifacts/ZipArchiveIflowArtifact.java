@@ -1,36 +1,48 @@
 package org.cpilint.artifacts;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
-import java.util.function.Predicate;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
+import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 
 import org.cpilint.IflowXml;
+import org.cpilint.util.IoUtil;
 import org.cpilint.util.JarResourceUtil;
+import org.cpilint.util.SaxonUtil;
 
 import net.sf.saxon.s9api.Processor;
 import net.sf.saxon.s9api.QName;
 import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmDestination;
 import net.sf.saxon.s9api.XdmMap;
+import net.sf.saxon.s9api.XdmNode;
 import net.sf.saxon.s9api.XsltCompiler;
 import net.sf.saxon.s9api.XsltExecutable;
 import net.sf.saxon.s9api.XsltTransformer;
@@ -43,28 +55,34 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 	private static final String ID_MANIFEST_HEADER = "Bundle-SymbolicName";
 	private static final String IFLOW_RESOURCES_BASE_PATH = "src/main/resources/";
 	private static final String EXT_PARAMS_PATH = IFLOW_RESOURCES_BASE_PATH + "parameters.prop";
-	private static final Map<ArtifactResourceType, Predicate<String>> typePredicates;
+	/*
+	 * Resource types by directory (relative to the resources base path) and
+	 * then by file extension. A resource can also be in a subdirectory of its
+	 * type's directory.
+	 */
+	private static final Map<String, Map<String, ArtifactResourceType>> resourceTypesByDirectory;
+	private static volatile XsltExecutable sharedExtParamsReplaceStylesheet;
 	
 	static {
-		typePredicates = new HashMap<>();
-		typePredicates.put(ArtifactResourceType.GROOVY_SCRIPT, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "script/") && (s.endsWith(".groovy") || s.endsWith(".gsh")));
-		typePredicates.put(ArtifactResourceType.JAVASCRIPT_SCRIPT, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "script/") && s.endsWith(".js"));
-		typePredicates.put(ArtifactResourceType.XSD, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "xsd/") && s.endsWith(".xsd"));
-		typePredicates.put(ArtifactResourceType.MESSAGE_MAPPING, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "mapping/") && s.endsWith(".mmap"));
-		typePredicates.put(ArtifactResourceType.XSLT_MAPPING, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "mapping/") && (s.endsWith(".xsl") || s.endsWith(".xslt")));
-		typePredicates.put(ArtifactResourceType.IFLOW, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "scenarioflows/integrationflow/") && s.endsWith(".iflw"));
-		typePredicates.put(ArtifactResourceType.JAVA_ARCHIVE, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "lib/") && (s.endsWith(".jar") || s.endsWith(".zip")));
-		typePredicates.put(ArtifactResourceType.WSDL, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "wsdl/") && (s.endsWith(".wsdl")));
-		typePredicates.put(ArtifactResourceType.EDMX, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "edmx/") && (s.endsWith(".edmx")));
-		typePredicates.put(ArtifactResourceType.OPERATION_MAPPING, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "mapping/") && s.endsWith(".opmap"));
-		typePredicates.put(ArtifactResourceType.JSON, s -> s.startsWith(IFLOW_RESOURCES_BASE_PATH + "json/") && s.endsWith(".json"));
+		resourceTypesByDirectory = new HashMap<>();
+		addResourceType(ArtifactResourceType.GROOVY_SCRIPT, "script/", "groovy", "gsh");
+		addResourceType(ArtifactResourceType.JAVASCRIPT_SCRIPT, "script/", "js");
+		addResourceType(ArtifactResourceType.XSD, "xsd/", "xsd");
+		addResourceType(ArtifactResourceType.MESSAGE_MAPPING, "mapping/", "mmap");
+		addResourceType(ArtifactResourceType.XSLT_MAPPING, "mapping/", "xsl", "xslt");
+		addResourceType(ArtifactResourceType.IFLOW, "scenarioflows/integrationflow/", "iflw");
+		addResourceType(ArtifactResourceType.JAVA_ARCHIVE, "lib/", "jar", "zip");
+		addResourceType(ArtifactResourceType.WSDL, "wsdl/", "wsdl");
+		addResourceType(ArtifactResourceType.EDMX, "edmx/", "edmx");
+		addResourceType(ArtifactResourceType.OPERATION_MAPPING, "mapping/", "opmap");
+		addResourceType(ArtifactResourceType.JSON, "json/", "json");
 	}
 	
 	private final IflowArtifactTag tag;
 	private final IflowXml iflowXml;
-	private final Map<ArtifactResourceType, Collection<ArtifactResource>> resources;
+	private final Map<ArtifactResourceType, List<ArtifactResource>> resources;
 	
-	private ZipArchiveIflowArtifact(IflowArtifactTag tag, Map<ArtifactResourceType, Collection<ArtifactResource>> resources, IflowXml iflowXml) {
+	private ZipArchiveIflowArtifact(IflowArtifactTag tag, Map<ArtifactResourceType, List<ArtifactResource>> resources, IflowXml iflowXml) {
 		// Private, since instances are returned by the static factory methods.
 		this.tag = tag;
 		this.resources = resources;
@@ -77,7 +95,8 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 		 * The resources map is expected to contain a key for every artifact
 		 * resource type. If this iflow artifact does not contain any resources of
 		 * the specified type, the resources map will contain an empty collection
-		 * for that key.
+		 * for that key. The exception is resource types that were not required
+		 * when the artifact was created; they are not in the map at all.
 		 */
 		if (!resources.containsKey(type)) {
 			throw new IflowArtifactError("Artifact resource type not found");
@@ -87,6 +106,9 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 
 	@Override
 	public IflowXml getIflowXml() {
+		if (iflowXml == null) {
+			throw new IflowArtifactError("Iflow XML not extracted, since it was not required");
+		}
 		return iflowXml;
 	}
 	
@@ -96,51 +118,135 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 	}
 
 	public static IflowArtifact fromArchiveFile(Path file) throws IOException, SaxonApiException {
+		return fromArchiveFile(file, SaxonUtil.getSharedProcessor());
+	}
+
+	public static IflowArtifact fromArchiveFile(Path file, Processor processor) throws IOException, SaxonApiException {
 		if (Files.notExists(file)) {
 			throw new IllegalArgumentException("Provided file does not exist: " + file.toString());
 		}
 		if (!Files.isRegularFile(file)) {
 			throw new IllegalArgumentException("Provided file is not a file: " + file.toString());
 		}
-		Map<String, byte[]> contents;
+		ArtifactEntries entries = new ArtifactEntries();
 		try (InputStream is = Files.newInputStream(file)) {
-			contents = contentsFromArchive(is);
+			contentsFromArchive(is, ArtifactRequirements.all(), entries, processor);
 		}
-		return fromContents(contents);
+		return fromContents(entries, processor, ArtifactRequirements.all());
+	}
+
+	public static IflowArtifact fromZipFile(Path file) throws IOException, SaxonApiException {
+		return fromZipFile(file, SaxonUtil.getSharedProcessor());
+	}
+
+	public static IflowArtifact fromZipFile(Path file, Processor processor) throws IOException, SaxonApiException {
+		return fromZipFile(file, processor, ArtifactRequirements.all());
+	}
+
+	public static IflowArtifact fromZipFile(Path file, Processor processor, ArtifactRequirements requirements) throws IOException, SaxonApiException {
+		Objects.requireNonNull(requirements, "requirements must not be null");
+		if (Files.notExists(file)) {
+			throw new IllegalArgumentException("Provided file does not exist: " + file.toString());
+		}
+		if (!Files.isRegularFile(file)) {
+			throw new IllegalArgumentException("Provided file is not a file: " + file.toString());
+		}
+		/*
+		 * Unlike fromArchiveFile, which decompresses every entry of the
+		 * archive, only the entries needed to create the artifact (the
+		 * manifest, the iflow XML and the external parameters) are read here.
+		 * Resources of the required types are decompressed from the archive
+		 * if and when their contents are requested. Entries that are not
+		 * required at all are skipped.
+		 */
+		ArtifactEntries entries = new ArtifactEntries();
+		try (ZipFile zipFile = new ZipFile(file.toFile())) {
+			for (ZipEntry entry : Collections.list(zipFile.entries())) {
+				String path = entry.getName();
+				ArtifactResourceType type = resourceType(path);
+				if (isEagerlyReadPath(path, type, requirements)) {
+					try (InputStream is = zipFile.getInputStream(entry)) {
+						entries.addContents(path, type, is.readAllBytes());
+					}
+				} else if (isResourceRequired(type, requirements)) {
+					entries.addLazyContents(path, type, entry.getSize(), () -> contentsFromZipFile(file, path));
+				}
+			}
+		} catch (ZipException e) {
+			// The file is not a ZIP archive and therefore not an iflow artifact.
+			throw new IflowArtifactError("Not a valid iflow artifact", e);
+		}
+		if (entries.isEmpty()) {
+			throw new IflowArtifactError("Not a valid iflow artifact");
+		}
+		return fromContents(entries, processor, requirements);
 	}
 
 	public static IflowArtifact fromArchiveStream(InputStream is) throws IOException, SaxonApiException {
-		Map<String, byte[]> contents = contentsFromArchive(is);
-		return fromContents(contents);
+		return fromArchiveStream(is, SaxonUtil.getSharedProcessor());
+	}
+
+	public static IflowArtifact fromArchiveStream(InputStream is, Processor processor) throws IOException, SaxonApiException {
+		return fromArchiveStream(is, processor, ArtifactRequirements.all());
+	}
+
+	public static IflowArtifact fromArchiveStream(InputStream is, Processor processor, ArtifactRequirements requirements) throws IOException, SaxonApiException {
+		Objects.requireNonNull(requirements, "requirements must not be null");
+		Objects.requireNonNull(processor, "processor must not be null");
+		ArtifactEntries entries = new ArtifactEntries();
+		contentsFromArchive(is, requirements, entries, processor);
+		return fromContents(entries, processor, requirements);
 	}
 
 	public static IflowArtifact fromDirectory(Path dir) throws IOException, SaxonApiException {
+		return fromDirectory(dir, SaxonUtil.getSharedProcessor());
+	}
+
+	public static IflowArtifact fromDirectory(Path dir, Processor processor) throws IOException, SaxonApiException {
+		return fromDirectory(dir, processor, ArtifactRequirements.all());
+	}
+
+	public static IflowArtifact fromDirectory(Path dir, Processor processor, ArtifactRequirements requirements) throws IOException, SaxonApiException {
+		Objects.requireNonNull(requirements, "requirements must not be null");
 		if (Files.notExists(dir)) {
 			throw new IllegalArgumentException("Provided directory does not exist: " + dir.toString());
 		}
 		if (!Files.isDirectory(dir)) {
 			throw new IllegalArgumentException("Provided directory is not a directory: " + dir.toString());
 		}
-		Map<String, byte[]> contents = contentsFromDirectory(dir);
-		return fromContents(contents);
+		ArtifactEntries entries = new ArtifactEntries();
+		contentsFromDirectory(dir, requirements, entries);
+		return fromContents(entries, processor, requirements);
 	}
 
-	private static IflowArtifact fromContents(Map<String, byte[]> contents) throws IOException, SaxonApiException {
+	private static IflowArtifact fromContents(ArtifactEntries entries, Processor processor, ArtifactRequirements requirements) throws IOException, SaxonApiException {
+		Objects.requireNonNull(processor, "processor must not be null");
+		Map<String, byte[]> contents = entries.contents;
 		// Extract the iflow's name and ID from the manifest.
 		if (!contents.containsKey(MANIFEST_PATH)) {
 			// No manifest means that this is not a valid iflow artifact.
 			throw new IflowArtifactError("No manifest found");
 		}
 		IflowArtifactTag tag = createTag(contents.get(MANIFEST_PATH));
-		// Replace external parameters in the iflow XML, if this iflow artifact
-		// actually contains an external parameters file (this is not always the case).
-		if (externalParametersPresent(contents)) {
-			replaceExternalParameters(contents);
+		// Get an IflowXml object, unless the iflow XML is not required.
+		IflowXml iflowXml = null;
+		if (isIflowXmlContentsRequired(requirements)) {
+			String iflowXmlPath = getIflowXmlPath(entries);
+			XdmNode parsed = entries.parsedContents.get(iflowXmlPath);
+			iflowXml = createIflowXml(iflowXmlPath, parsed, contents, processor);
+			/*
+			 * If external parameters were replaced, the iflow XML resource
+			 * must contain the result. The same goes for an iflow XML that was
+			 * parsed without being read into memory. It is only serialized if
+			 * requested.
+			 */
+			if (externalParametersPresent(contents) || parsed != null) {
+				IflowXml transformed = iflowXml;
+				entries.replaceWithLazyContents(iflowXmlPath, () -> transformed.getRawDocument().readAllBytes());
+			}
 		}
-		// Create ArtifactResource objects for all resources.
-		Map<ArtifactResourceType, Collection<ArtifactResource>> resources = createResourcesMap(tag, contents);
-		// Get an IflowXml object.
-		IflowXml iflowXml = createIflowXml(contents);
+		// Create ArtifactResource objects for all resources of the required types.
+		Map<ArtifactResourceType, List<ArtifactResource>> resources = createResourcesMap(tag, entries, requirements);
 		// All done.
 		return new ZipArchiveIflowArtifact(tag, resources, iflowXml);
 	}
@@ -149,39 +255,63 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 		return contents.containsKey(EXT_PARAMS_PATH);
 	}
 
-	private static void replaceExternalParameters(Map<String, byte[]> contents) throws IOException, SaxonApiException {
-		String iflowXmlPath = getIflowXmlPath(contents.keySet());
-		InputStream iflowXml = new ByteArrayInputStream(contents.get(iflowXmlPath));
-		InputStream stylesheet = ZipArchiveIflowArtifact.class.getClassLoader().getResourceAsStream(EXT_PARAMS_REPLACE_XSLT_PATH);
+	private static XdmNode replaceExternalParameters(Source iflowXml, Map<String, byte[]> contents, Processor processor) throws IOException, SaxonApiException {
+		XsltExecutable stylesheet = getExtParamsReplaceStylesheet(processor);
 		Map<String, String> parametersMap = getExternalParamsMap(contents);
-		byte[] newIflowXml = transformIflowXml(stylesheet, iflowXml, parametersMap);
-		contents.put(iflowXmlPath, newIflowXml);
+		return transformIflowXml(stylesheet, iflowXml, parametersMap, processor);
+	}
+
+	private static XsltExecutable getExtParamsReplaceStylesheet(Processor processor) throws IOException, SaxonApiException {
+		/*
+		 * An XsltExecutable can only be used with nodes from the Processor
+		 * that compiled it. For the shared Processor, the stylesheet is
+		 * compiled the first time it is needed, and then shared by all
+		 * artifacts. XsltExecutable is thread-safe; each transformation
+		 * loads its own XsltTransformer.
+		 */
+		if (processor != SaxonUtil.getSharedProcessor()) {
+			return compileExtParamsReplaceStylesheet(processor);
+		}
+		XsltExecutable exe = sharedExtParamsReplaceStylesheet;
+		if (exe == null) {
+			synchronized (ZipArchiveIflowArtifact.class) {
+				exe = sharedExtParamsReplaceStylesheet;
+				if (exe == null) {
+					exe = compileExtParamsReplaceStylesheet(processor);
+					sharedExtParamsReplaceStylesheet = exe;
+				}
+			}
+		}
+		return exe;
 	}
 
-	private static String getIflowXmlPath(Set<String> allPaths) {
-		List<String> iflowXmlPaths = allPaths
-			.stream()
-			.filter(typePredicates.get(ArtifactResourceType.IFLOW))
-			.collect(Collectors.toList());
+	private static XsltExecutable compileExtParamsReplaceStylesheet(Processor processor) throws IOException, SaxonApiException {
+		try (InputStream stylesheet = ZipArchiveIflowArtifact.class.getClassLoader().getResourceAsStream(EXT_PARAMS_REPLACE_XSLT_PATH)) {
+			XsltCompiler comp = processor.newXsltCompiler();
+			return comp.compile(new StreamSource(stylesheet));
+		}
+	}
+
+	private static String getIflowXmlPath(ArtifactEntries entries) {
+		// The iflow XML paths were recorded when the entries were read.
+		Set<String> iflowXmlPaths = entries.resourcePaths(ArtifactResourceType.IFLOW);
 		// We expect exactly one iflow XML path.
 		if (iflowXmlPaths.isEmpty() || iflowXmlPaths.size() > 1) {
 			throw new IflowArtifactError("Unable to locate iflow XML in artifact");
 		}
-		return iflowXmlPaths.get(0);
+		return iflowXmlPaths.iterator().next();
 	}
 	
-	private static byte[] transformIflowXml(InputStream stylesheet, InputStream iflowXml, Map<String, String> parametersMap) throws SaxonApiException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-		Processor proc = new Processor(false);
-        XsltCompiler comp = proc.newXsltCompiler();
-        XsltExecutable exe = comp.compile(new StreamSource(stylesheet));
-        XsltTransformer xslt = exe.load();
-        xslt.setSource(new StreamSource(iflowXml));
-        xslt.setDestination(proc.newSerializer(out));
+	private static XdmNode transformIflowXml(XsltExecutable stylesheet, Source iflowXml, Map<String, String> parametersMap, Processor proc) throws SaxonApiException {
+        // The result tree is used as the iflow XML as is, so the iflow XML is only parsed once.
+        XdmDestination out = new XdmDestination();
+        XsltTransformer xslt = stylesheet.load();
+        xslt.setSource(iflowXml);
+        xslt.setDestination(out);
         XdmMap xdmMap = XdmMap.makeMap(parametersMap);
         xslt.setParameter(new QName("parameterMap"), xdmMap);
         xslt.transform();
-        return out.toByteArray();
+        return out.getXdmNode();
 	}
 
 	private static Map<String, String> getExternalParamsMap(Map<String, byte[]> contents) throws IOException {
@@ -192,31 +322,52 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 		return Collections.unmodifiableMap(parametersMap);
 	}
 	
-	private static Map<String, byte[]> contentsFromArchive(InputStream is) {
+	private static void contentsFromArchive(InputStream is, ArtifactRequirements requirements, ArtifactEntries entries, Processor processor) throws SaxonApiException {
 		assert is != null;
-		Map<String, byte[]> contents = new HashMap<>();
+		int entryCount = 0;
 		try (ZipInputStream zis = new ZipInputStream(is)) {
 			ZipEntry entry = null;
 			while ((entry = zis.getNextEntry()) != null) {
+				entryCount++;
 				String path = entry.getName();
-				byte[] bytes = zis.readAllBytes();
-				contents.put(path, bytes);
+				ArtifactResourceType type = resourceType(path);
+				/*
+				 * A stream cannot be revisited, so contents that might be
+				 * needed are read now. Unless its raw contents are required,
+				 * the iflow XML is parsed straight from the entry, so it is
+				 * never held in memory as bytes. The contents of resources are
+				 * digested while they are inflated, so the digest does not take
+				 * a second pass over them. For resources whose names are
+				 * required, but not their contents, the entry is skipped.
+				 */
+				if (isDirectlyParsedPath(type, requirements)) {
+					entries.addParsedContents(path, type, processor.newDocumentBuilder().build(new StreamSource(IoUtil.nonClosing(zis))));
+				} else if (isResourceContentsRequired(type, requirements)) {
+					MessageDigest md = ResourceDigest.newMessageDigest();
+					byte[] bytes = new DigestInputStream(zis, md).readAllBytes();
+					entries.addContents(path, type, bytes);
+					entries.digests.put(path, new ResourceDigest(bytes.length, md.digest()));
+				} else if (isEagerlyReadPath(path, type, requirements)) {
+					entries.addContents(path, type, zis.readAllBytes());
+				} else if (isResourceRequired(type, requirements)) {
+					entries.addLazyContents(path, type, -1, () -> {
+						throw new IOException("Contents not extracted, since only the resource name was required: " + path);
+					});
+				}
 			}
 		} catch (IOException e) {
 			throw new IflowArtifactError("Error accessing archive contents", e);
 		}
 		/*
-		 * If the Map is empty, there were no entries, meaning that the
-		 * InputStream was not in fact a ZIP archive and therefore not
-		 * an iflow artifact.
+		 * If there were no entries, the InputStream was not in fact a ZIP
+		 * archive and therefore not an iflow artifact.
 		 */
-		if (contents.isEmpty()) {
+		if (entryCount == 0) {
 			throw new IflowArtifactError("Not a valid iflow artifact");
 		}
-		return contents;
 	}
 
-	private static Map<String, byte[]> contentsFromDirectory(Path dir) {
+	private static void contentsFromDirectory(Path dir, ArtifactRequirements requirements, ArtifactEntries entries) {
 		assert dir != null;
 		assert Files.exists(dir);
 		assert Files.isDirectory(dir);
@@ -234,7 +385,6 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 		 * returned by Files.walk, you might ask. It could, but handling the checked
 		 * exceptions thrown by the I/O inside the lambda really hurts the readability.
          */
-		Map<String, byte[]> contents = new HashMap<>();
 		for (Path p : filesToAdd) {
 			String path = dir.relativize(p).toString();
 			/*
@@ -244,21 +394,32 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 			if (File.separatorChar == '\\') {
 				path = path.replace('\\', '/');
 			}
-			try (InputStream is = Files.newInputStream(p)) {
-				byte[] bytes = is.readAllBytes();
-				contents.put(path, bytes);
-			} catch (IOException e) {
-				throw new IflowArtifactError("Error accessing folder contents", e);
+			ArtifactResourceType type = resourceType(path);
+			if (isEagerlyReadPath(path, type, requirements)) {
+				try (InputStream is = Files.newInputStream(p)) {
+					byte[] bytes = is.readAllBytes();
+					entries.addContents(path, type, bytes);
+				} catch (IOException e) {
+					throw new IflowArtifactError("Error accessing folder contents", e);
+				}
+			} else if (isResourceRequired(type, requirements)) {
+				// Resource files are only read if and when their contents are requested.
+				long size;
+				try {
+					size = Files.size(p);
+				} catch (IOException e) {
+					throw new IflowArtifactError("Error accessing folder contents", e);
+				}
+				entries.addLazyContents(path, type, size, () -> Files.readAllBytes(p));
 			}
 		}
 		/*
-		 * If the Map is empty, there were no files in the directory,
-		 * meaning that it did not contain an unpacked iflow artifact.
+		 * If there were no files in the directory, it did not contain an
+		 * unpacked iflow artifact.
 		 */
-		if (contents.isEmpty()) {
+		if (filesToAdd.isEmpty()) {
 			throw new IflowArtifactError("Directory did not contain an unpacked iflow artifact");
 		}
-		return contents;
 	}
 	
 	private static String extractId(String manifestValue) {
@@ -283,9 +444,21 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 		return tokens[0];
 	}
 	
-	private static IflowXml createIflowXml(Map<String, byte[]> contents) throws IOException {
-		String iflowXmlPath = getIflowXmlPath(contents.keySet());
-		return IflowXml.fromInputStream(new ByteArrayInputStream(contents.get(iflowXmlPath)));
+	private static IflowXml createIflowXml(String iflowXmlPath, XdmNode parsed, Map<String, byte[]> contents, Processor processor) throws IOException, SaxonApiException {
+		/*
+		 * Replace external parameters in the iflow XML, if this iflow artifact
+		 * actually contains an external parameters file (this is not always
+		 * the case). The transformation parses the iflow XML, unless it has
+		 * already been parsed, and its result is used directly.
+		 */
+		if (externalParametersPresent(contents)) {
+			Source source = parsed != null ? parsed.asSource() : new StreamSource(new ByteArrayInputStream(contents.get(iflowXmlPath)));
+			return IflowXml.fromDocumentNode(replaceExternalParameters(source, contents, processor), processor);
+		}
+		if (parsed != null) {
+			return IflowXml.fromDocumentNode(parsed, processor);
+		}
+		return IflowXml.fromInputStream(new ByteArrayInputStream(contents.get(iflowXmlPath)), processor);
 	}
 
 	private static IflowArtifactTag createTag(byte[] manifestContents) throws IOException {
@@ -302,19 +475,110 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 		return new IflowArtifactTag(id, name);
 	}
 	
-	private static Map<ArtifactResourceType, Collection<ArtifactResource>> createResourcesMap(IflowArtifactTag tag, Map<String, byte[]> contents) {
-		Map<ArtifactResourceType, Collection<ArtifactResource>> resourcesMap = new HashMap<>();
-		for (ArtifactResourceType type : typePredicates.keySet()) {
-			Collection<ArtifactResource> resources = contents.keySet()
-				.stream()
-				.filter(typePredicates.get(type))
-				.map(p -> new ArtifactResource(tag, type, resourceNameFromResourcePath(p), contents.get(p)))
-				.collect(Collectors.toList());
+	private static Map<ArtifactResourceType, List<ArtifactResource>> createResourcesMap(IflowArtifactTag tag, ArtifactEntries entries, ArtifactRequirements requirements) {
+		Map<ArtifactResourceType, List<ArtifactResource>> resourcesMap = new EnumMap<>(ArtifactResourceType.class);
+		for (ArtifactResourceType type : ArtifactResourceType.values()) {
+			if (!requirements.needsResourceNames(type)) {
+				continue;
+			}
+			Set<String> paths = entries.resourcePaths(type);
+			List<ArtifactResource> resources = new ArrayList<>(paths.size());
+			for (String p : paths) {
+				String name = resourceNameFromResourcePath(p);
+				byte[] bytes = entries.contents.get(p);
+				if (bytes != null) {
+					// The contents were read for this artifact alone, so they need not be copied.
+					resources.add(ArtifactResource.owning(tag, type, name, bytes, Optional.ofNullable(entries.digests.get(p))));
+				} else {
+					resources.add(new ArtifactResource(tag, type, name, entries.lazySizes.get(p), entries.lazyContents.get(p)));
+				}
+			}
 			resourcesMap.put(type, resources);
 		}
 		return resourcesMap;
 	}
 
+	private static void addResourceType(ArtifactResourceType type, String directory, String... extensions) {
+		Map<String, ArtifactResourceType> typesByExtension = resourceTypesByDirectory.computeIfAbsent(directory, d -> new HashMap<>());
+		for (String extension : extensions) {
+			typesByExtension.put(extension, type);
+		}
+	}
+
+	private static ArtifactResourceType resourceType(String path) {
+		/*
+		 * Returns the type of the resource at the path, or null if the path
+		 * is not that of a resource. Rather than trying every type in turn,
+		 * the extension of the file name and each directory on the path are
+		 * looked up in the table.
+		 */
+		if (!path.startsWith(IFLOW_RESOURCES_BASE_PATH)) {
+			return null;
+		}
+		int lastSlashIndex = path.lastIndexOf('/');
+		int lastDotIndex = path.lastIndexOf('.');
+		if (lastDotIndex < lastSlashIndex) {
+			// The file name has no extension (or the path is a directory).
+			return null;
+		}
+		String extension = path.substring(lastDotIndex + 1);
+		int base = IFLOW_RESOURCES_BASE_PATH.length();
+		for (int slash = path.indexOf('/', base); slash != -1; slash = path.indexOf('/', slash + 1)) {
+			Map<String, ArtifactResourceType> typesByExtension = resourceTypesByDirectory.get(path.substring(base, slash + 1));
+			if (typesByExtension != null && typesByExtension.containsKey(extension)) {
+				return typesByExtension.get(extension);
+			}
+		}
+		return null;
+	}
+
+	private static boolean isEagerlyReadPath(String path, ArtifactResourceType type, ArtifactRequirements requirements) {
+		// The manifest is always needed, the iflow XML and external parameters only if the iflow XML is.
+		if (path.equals(MANIFEST_PATH)) {
+			return true;
+		}
+		if (path.equals(EXT_PARAMS_PATH) || type == ArtifactResourceType.IFLOW) {
+			return isIflowXmlContentsRequired(requirements);
+		}
+		return false;
+	}
+
+	private static boolean isDirectlyParsedPath(ArtifactResourceType type, ArtifactRequirements requirements) {
+		// The iflow XML can be parsed without reading it into memory, unless its raw contents are needed.
+		return type == ArtifactResourceType.IFLOW
+			&& isIflowXmlContentsRequired(requirements)
+			&& !requirements.needsResourceContents(ArtifactResourceType.IFLOW);
+	}
+
+	private static boolean isIflowXmlContentsRequired(ArtifactRequirements requirements) {
+		return requirements.needsIflowXml() || requirements.needsResourceContents(ArtifactResourceType.IFLOW);
+	}
+
+	private static boolean isResourceRequired(ArtifactResourceType type, ArtifactRequirements requirements) {
+		return type != null && requirements.needsResourceNames(type);
+	}
+
+	private static boolean isResourceContentsRequired(ArtifactResourceType type, ArtifactRequirements requirements) {
+		return type != null && requirements.needsResourceContents(type);
+	}
+
+	private static byte[] contentsFromZipFile(Path file, String path) throws IOException {
+		/*
+		 * Open the archive for every resource loaded, rather than keeping it
+		 * open for the lifetime of the artifact. Opening a ZipFile only reads
+		 * the central directory, and this way no file handles are leaked.
+		 */
+		try (ZipFile zipFile = new ZipFile(file.toFile())) {
+			ZipEntry entry = zipFile.getEntry(path);
+			if (entry == null) {
+				throw new IOException("Archive entry no longer exists: " + path);
+			}
+			try (InputStream is = zipFile.getInputStream(entry)) {
+				return is.readAllBytes();
+			}
+		}
+	}
+
 	private static String resourceNameFromResourcePath(String resourcePath) {
 		// All resource paths have the same base path.
 		if (!resourcePath.startsWith(IFLOW_RESOURCES_BASE_PATH)) {
@@ -328,5 +592,68 @@ public final class ZipArchiveIflowArtifact implements IflowArtifact {
 		}
 		return resourcePath.substring(lastSlashIndex + 1);		
 	}
-	
+
+	private static final class ArtifactEntries {
+
+		/*
+		 * The entries of an artifact that were kept when it was read, whether
+		 * from an archive or a directory. Each entry is classified once, as it
+		 * is read, and the paths of resources are recorded by type, in the
+		 * order they were read. An entry's contents are either in memory,
+		 * loaded on request (with their size, if known) or, for the iflow
+		 * XML, already parsed.
+		 */
+
+		private final Map<String, byte[]> contents = new HashMap<>();
+		private final Map<String, ResourceContentsLoader> lazyContents = new HashMap<>();
+		private final Map<String, Long> lazySizes = new HashMap<>();
+		private final Map<String, XdmNode> parsedContents = new HashMap<>();
+		private final Map<String, ResourceDigest> digests = new HashMap<>();
+		private final Map<ArtifactResourceType, Set<String>> resourcePaths = new EnumMap<>(ArtifactResourceType.class);
+
+		private void addContents(String path, ArtifactResourceType type, byte[] bytes) {
+			contents.put(path, bytes);
+			addResourcePath(path, type);
+		}
+
+		private void addLazyContents(String path, ArtifactResourceType type, long size, ResourceContentsLoader loader) {
+			lazyContents.put(path, loader);
+			lazySizes.put(path, size);
+			addResourcePath(path, type);
+		}
+
+		private void replaceWithLazyContents(String path, ResourceContentsLoader loader) {
+			/*
+			 * The size of the new contents is not known until they are
+			 * loaded, and any digest calculated while reading was of the
+			 * original contents.
+			 */
+			contents.remove(path);
+			digests.remove(path);
+			lazyContents.put(path, loader);
+			lazySizes.put(path, -1L);
+		}
+
+		private void addParsedContents(String path, ArtifactResourceType type, XdmNode document) {
+			parsedContents.put(path, document);
+			addResourcePath(path, type);
+		}
+
+		private Set<String> resourcePaths(ArtifactResourceType type) {
+			return resourcePaths.getOrDefault(type, Collections.emptySet());
+		}
+
+		private boolean isEmpty() {
+			return contents.isEmpty() && lazyContents.isEmpty() && parsedContents.isEmpty();
+		}
+
+		private void addResourcePath(String path, ArtifactResourceType type) {
+			// The manifest and the external parameters are not resources.
+			if (type != null) {
+				resourcePaths.computeIfAbsent(type, t -> new LinkedHashSet<>()).add(path);
+			}
+		}
+
+	}
+
 }
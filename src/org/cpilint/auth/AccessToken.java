@@ -5,9 +5,12 @@ import java.util.Objects;
 public final class AccessToken {
 
     private static final long EXPIRY_BUFFER_MILLIS = 10 * 1000;
+    // A new token is requested once this fraction of the lifetime has passed.
+    private static final double REFRESH_AHEAD_FRACTION = 0.75;
 
     private final String token;
     private final long expirationTimeMillis;
+    private final long refreshTimeMillis;
 
     AccessToken(String token, int lifetimeSeconds) {
         Objects.requireNonNull(token, "token must not be null");
@@ -24,13 +27,23 @@ public final class AccessToken {
          * partly to avoid authentication errors happening when a token expires sometime between
          * the call to isValid and the token being used to authenticate an API call.
          */
-        expirationTimeMillis = System.currentTimeMillis() + lifetimeSeconds * 1000 - EXPIRY_BUFFER_MILLIS;
+        long now = System.currentTimeMillis();
+        expirationTimeMillis = now + lifetimeSeconds * 1000L - EXPIRY_BUFFER_MILLIS;
+        refreshTimeMillis = Math.min(expirationTimeMillis, now + (long)(lifetimeSeconds * 1000L * REFRESH_AHEAD_FRACTION));
     }
 
     public boolean isValid() {
         return System.currentTimeMillis() < expirationTimeMillis;
     }
 
+    public boolean isDueForRefresh() {
+        /*
+         * A token that is due for refresh can still be used, but a new one
+         * should be requested, so that it is ready before this one expires.
+         */
+        return System.currentTimeMillis() >= refreshTimeMillis;
+    }
+
     public String getToken() {
         if (!isValid()) {
             throw new IllegalStateException("Access token is no longer valid");
@@ -0,0 +1,102 @@
+package org.cpilint.auth;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class AccessTokenProvider {
+
+    /*
+     * Hands out access tokens from an authorization server to any number of
+     * concurrent API requests. The current token is read without locking.
+     * When it is due for refresh, a new token is requested in the
+     * background while the current one is still handed out, so requests
+     * only wait for a token if there is no valid one at all. At most one
+     * token request is in flight at any time; everyone needing a new token
+     * shares it.
+     */
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessTokenProvider.class);
+    // After a failed background refresh, wait this long before trying again.
+    private static final long REFRESH_RETRY_DELAY_MILLIS = 5 * 1000;
+    private static final String REFRESH_THREAD_NAME = "cpilint-token-refresh";
+
+    private final AuthorizationServer authServer;
+    private final AtomicReference<AccessToken> current = new AtomicReference<>();
+    // The token request in flight, if any.
+    private final AtomicReference<CompletableFuture<AccessToken>> refresh = new AtomicReference<>();
+    private volatile long nextBackgroundRefreshMillis = 0;
+
+    public AccessTokenProvider(AuthorizationServer authServer) {
+        this.authServer = Objects.requireNonNull(authServer, "authServer must not be null");
+    }
+
+    public AccessToken getToken() {
+        AccessToken token = current.get();
+        if (token != null && token.isValid()) {
+            if (token.isDueForRefresh() && System.currentTimeMillis() >= nextBackgroundRefreshMillis) {
+                refresh(token);
+            }
+            return token;
+        }
+        // No valid token, so there is nothing to do but wait for a new one.
+        try {
+            return refresh(token).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof AuthorizationServerError ase) {
+                throw ase;
+            }
+            throw new AuthorizationServerError("Error when requesting access token", e.getCause());
+        }
+    }
+
+    private CompletableFuture<AccessToken> refresh(AccessToken stale) {
+        /*
+         * Returns the token request in flight, or starts one. The stale
+         * token is the one the caller found; if another thread replaced it
+         * in the meantime, no new request is needed.
+         */
+        while (true) {
+            CompletableFuture<AccessToken> inFlight = refresh.get();
+            if (inFlight != null) {
+                return inFlight;
+            }
+            CompletableFuture<AccessToken> started = new CompletableFuture<>();
+            if (!refresh.compareAndSet(null, started)) {
+                continue;
+            }
+            AccessToken latest = current.get();
+            if (latest != stale && latest != null && latest.isValid() && !latest.isDueForRefresh()) {
+                refresh.set(null);
+                started.complete(latest);
+                return started;
+            }
+            Thread t = new Thread(() -> requestToken(started), REFRESH_THREAD_NAME);
+            // A daemon thread, so that a failed run does not keep the JVM alive.
+            t.setDaemon(true);
+            t.start();
+            return started;
+        }
+    }
+
+    private void requestToken(CompletableFuture<AccessToken> started) {
+        AccessToken token;
+        try {
+            token = authServer.requestAccessToken();
+        } catch (RuntimeException | Error e) {
+            logger.warn("Access token request failed", e);
+            nextBackgroundRefreshMillis = System.currentTimeMillis() + REFRESH_RETRY_DELAY_MILLIS;
+            refresh.set(null);
+            started.completeExceptionally(e);
+            return;
+        }
+        current.set(token);
+        refresh.set(null);
+        started.complete(token);
+    }
+
+}
@@ -39,9 +39,14 @@ public final class AuthorizationServer {
     }
 
     public static AuthorizationServer newInstance(String clientId, String clientSecret, URI tokenUri) {
+        return newInstance(clientId, clientSecret, tokenUri, HttpUtil.newHttpClient(false));
+    }
+
+    public static AuthorizationServer newInstance(String clientId, String clientSecret, URI tokenUri, HttpClient client) {
         Objects.requireNonNull(clientId, "clientId must not be null");
         Objects.requireNonNull(clientSecret, "clientSecret must not be null");
         Objects.requireNonNull(tokenUri, "tokenUri must not be null");
+        Objects.requireNonNull(client, "client must not be null");
         if (clientId.isEmpty() || clientId.isBlank()) {
             throw new IllegalArgumentException("clientId must not be empty or blank");
         }
@@ -49,9 +54,6 @@ public final class AuthorizationServer {
             throw new IllegalArgumentException("clientSecret must not be empty or blank");
         }
         final String authHeader = "Basic " + Base64.getEncoder().encodeToString((clientId + ":" + clientSecret).getBytes(StandardCharsets.UTF_8));
-        HttpClient client = HttpClient.newBuilder()
-            .version(HttpClient.Version.HTTP_1_1)
-            .build();        
         HttpRequest request = HttpRequest.newBuilder()
             .uri(tokenUri)
             .header(HttpUtil.REQUEST_HEADER_AUTHORIZATION, authHeader)
@@ -0,0 +1,50 @@
+package org.cpilint.consumers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.cpilint.issues.Issue;
+
+public final class RecordingIssueConsumer implements IssueConsumer {
+
+    private final IssueConsumer nextConsumer;
+    private final ThreadLocal<List<Issue>> recorded = new ThreadLocal<>();
+
+    public RecordingIssueConsumer(IssueConsumer nextConsumer) {
+        this.nextConsumer = Objects.requireNonNull(nextConsumer, "nextConsumer must not be null");
+    }
+
+    @Override
+    public void consume(Issue issue) {
+        /*
+         * Each worker thread inspects one iflow artifact at a time, so the
+         * issues consumed on a thread between startRecording and
+         * stopRecording are the issues found in that artifact.
+         */
+        List<Issue> issues = recorded.get();
+        if (issues != null) {
+            issues.add(issue);
+        }
+        nextConsumer.consume(issue);
+    }
+
+    @Override
+    public int issuesConsumed() {
+        return nextConsumer.issuesConsumed();
+    }
+
+    public void startRecording() {
+        recorded.set(new ArrayList<>());
+    }
+
+    public List<Issue> stopRecording() {
+        List<Issue> issues = recorded.get();
+        if (issues == null) {
+            throw new IllegalStateException("Not recording on this thread");
+        }
+        recorded.remove();
+        return issues;
+    }
+
+}
@@ -0,0 +1,30 @@
+package org.cpilint.consumers;
+
+import java.util.Objects;
+
+import org.cpilint.issues.Issue;
+
+public final class SynchronizedIssueConsumer implements IssueConsumer {
+
+    private final IssueConsumer nextConsumer;
+
+    public SynchronizedIssueConsumer(IssueConsumer nextConsumer) {
+        this.nextConsumer = Objects.requireNonNull(nextConsumer, "nextConsumer must not be null");
+    }
+
+    @Override
+    public synchronized void consume(Issue issue) {
+        /*
+         * Issues are consumed from multiple threads when iflow artifacts are
+         * inspected in parallel. The consumers further down the chain are not
+         * thread-safe, so every call is made while holding this object's lock.
+         */
+        nextConsumer.consume(issue);
+    }
+
+    @Override
+    public synchronized int issuesConsumed() {
+        return nextConsumer.issuesConsumed();
+    }
+
+}
@@ -0,0 +1,18 @@
+package org.cpilint.issues;
+
+import java.util.Optional;
+import java.util.Set;
+
+import org.cpilint.artifacts.IflowArtifactTag;
+
+public final class ReplayedIssue extends IssueBase {
+	
+	/*
+	 * An issue recorded during an earlier run, for an iflow artifact that
+	 * has not changed since. Only what every issue has is kept.
+	 */
+	public ReplayedIssue(Optional<String> ruleId, Set<IflowArtifactTag> tags, String message) {
+		super(ruleId, tags, message);
+	}
+
+}
@@ -1,23 +1,42 @@
 package org.cpilint.model;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import org.cpilint.CompiledXquery;
+import org.cpilint.IflowXml;
 import org.cpilint.util.JarResourceUtil;
+import net.sf.saxon.s9api.Axis;
+import net.sf.saxon.s9api.QName;
 import net.sf.saxon.s9api.XdmNode;
 import net.sf.saxon.s9api.XdmNodeKind;
+import net.sf.saxon.s9api.streams.Predicates;
 
 final class DefaultXmlModel implements XmlModel {
 	
 	private static final String ACTIVITY_TYPE_PROPERTY_KEY = "activityType";
+	private static final String SUB_ACTIVITY_TYPE_PROPERTY_KEY = "subActivityType";
+	private static final String COMPONENT_TYPE_PROPERTY_KEY = "ComponentType";
+	private static final String DIRECTION_PROPERTY_KEY = "direction";
+	private static final Set<String> indexedPropertyKeys = Set.of(ACTIVITY_TYPE_PROPERTY_KEY, SUB_ACTIVITY_TYPE_PROPERTY_KEY, COMPONENT_TYPE_PROPERTY_KEY, DIRECTION_PROPERTY_KEY);
 	private static final String PROPERTY_KEY_ELEMENT_NAME = "key";
 	private static final String PROPERTY_VALUE_ELEMENT_NAME = "value";
+	private static final String BPMN2_NAMESPACE = "http://www.omg.org/spec/BPMN/20100524/MODEL";
+	private static final String IFL_NAMESPACE = "http:///com.sap.ifl.model/Ifl.xsd";
+	private static final Predicate<? super XdmNode> isExtensionElements = Predicates.hasName(BPMN2_NAMESPACE, "extensionElements");
+	private static final Predicate<? super XdmNode> isProperty = Predicates.hasName(IFL_NAMESPACE, "property");
+	private static final Predicate<? super XdmNode> isPropertyKey = Predicates.hasName("", PROPERTY_KEY_ELEMENT_NAME);
+	private static final Predicate<? super XdmNode> isPropertyValue = Predicates.hasName("", PROPERTY_VALUE_ELEMENT_NAME);
+	private static final QName PARTICIPANT_TYPE_QNAME = new QName(IFL_NAMESPACE, "type");
 	
 	private static final Map<ChannelDirection, String> directionPropertyValues;
 	private static final Map<ReceiverAdapter, String> receiverAdapterComponentTypes;
@@ -33,6 +52,12 @@ final class DefaultXmlModel implements XmlModel {
 	private static final Map<SenderAdapter, String> clientCertAuthPropertyValues;
 	private static final Set<ReceiverAdapter> onPremReceiverAdapters;
 	private static final Map<String, SenderAdapter> componentTypeToSenderAdapter;
+	// The XQuery queries are loaded and compiled once, and then used for every iflow.
+	private static final CompiledXquery multiConditionTypeRoutersXquery = compileXqueryResource("multi-condition-type-routers.xquery");
+	private static final CompiledXquery processDirectReceiverChannelsXquery = compileXqueryResource("process-direct-receiver-channels.xquery");
+	private static final CompiledXquery processDirectSenderChannelAddressesXquery = compileXqueryResource("process-direct-sender-channel-addresses.xquery");
+	private static final CompiledXquery cleartextBasicAuthReceiverChannelsXquery = compileXqueryResource("cleartext-basic-auth-not-allowed.xquery");
+	private static final CompiledXquery senderChannelUserRolesXquery = compileXqueryResource("sender-channel-user-roles.xquery");
 	
 	static {
 		// Initialize the directionPropertyValues map.
@@ -372,7 +397,7 @@ final class DefaultXmlModel implements XmlModel {
 	@Override
 	public String stepPredicateForScriptingLanguage(ScriptingLanguage scriptingLanguage) {
 		assert scriptingLanguagePropertyValues.containsKey(scriptingLanguage);
-		String key = "subActivityType";
+		String key = SUB_ACTIVITY_TYPE_PROPERTY_KEY;
 		String value = scriptingLanguagePropertyValues.get(scriptingLanguage);
 		return propertyKeyValuePredicate(key, value);
 	}
@@ -441,27 +466,57 @@ final class DefaultXmlModel implements XmlModel {
 
 	@Override
 	public String xqueryForMultiConditionTypeRouters() {
-		return JarResourceUtil.loadXqueryResource("multi-condition-type-routers.xquery");
+		return multiConditionTypeRoutersXquery.getQuery();
+	}
+
+	@Override
+	public CompiledXquery compiledXqueryForMultiConditionTypeRouters() {
+		return multiConditionTypeRoutersXquery;
 	}
 	
 	@Override
 	public String xqueryForProcessDirectReceiverChannels() {
-		return JarResourceUtil.loadXqueryResource("process-direct-receiver-channels.xquery");
+		return processDirectReceiverChannelsXquery.getQuery();
+	}
+
+	@Override
+	public CompiledXquery compiledXqueryForProcessDirectReceiverChannels() {
+		return processDirectReceiverChannelsXquery;
 	}
 
 	@Override
 	public String xqueryForProcessDirectSenderChannelAddresses() {
-		return JarResourceUtil.loadXqueryResource("process-direct-sender-channel-addresses.xquery");
+		return processDirectSenderChannelAddressesXquery.getQuery();
+	}
+
+	@Override
+	public CompiledXquery compiledXqueryForProcessDirectSenderChannelAddresses() {
+		return processDirectSenderChannelAddressesXquery;
 	}
 
 	@Override
 	public String xqueryForCleartextBasicAuthReceiverChannels() {
-		return JarResourceUtil.loadXqueryResource("cleartext-basic-auth-not-allowed.xquery");
+		return cleartextBasicAuthReceiverChannelsXquery.getQuery();
+	}
+
+	@Override
+	public CompiledXquery compiledXqueryForCleartextBasicAuthReceiverChannels() {
+		return cleartextBasicAuthReceiverChannelsXquery;
 	}
 
 	@Override
 	public String xqueryForSenderChannelUserRoles() {
-		return JarResourceUtil.loadXqueryResource("sender-channel-user-roles.xquery");	}
+		return senderChannelUserRolesXquery.getQuery();
+	}
+
+	@Override
+	public CompiledXquery compiledXqueryForSenderChannelUserRoles() {
+		return senderChannelUserRolesXquery;
+	}
+
+	private static CompiledXquery compileXqueryResource(String xqueryFilename) {
+		return IflowXml.compileXquery(JarResourceUtil.loadXqueryResource(xqueryFilename));
+	}
 
 	private static void nodeMustBeAnElement(XdmNode node) {
 		if (node.getNodeKind() != XdmNodeKind.ELEMENT) {
@@ -497,4 +552,297 @@ final class DefaultXmlModel implements XmlModel {
 		return node.attribute("id");
 	}
 
+	@Override
+	public List<IflowElement> classifyIflowElements(XdmNode documentNode) {
+		Objects.requireNonNull(documentNode, "documentNode must not be null");
+		/*
+		 * Make a single pass over all elements in the document, classifying
+		 * the ones we know about. The classification must match the XPath
+		 * expressions created by this model: channels are bpmn2:messageFlow
+		 * elements, flow steps are bpmn2:callActivity elements and so on.
+		 */
+		List<IflowElement> elements = new ArrayList<>();
+		documentNode.axisIterator(Axis.DESCENDANT).forEachRemaining(node -> {
+			if (node.getNodeKind() != XdmNodeKind.ELEMENT) {
+				return;
+			}
+			QName name = node.getNodeName();
+			if (!BPMN2_NAMESPACE.equals(name.getNamespace())) {
+				return;
+			}
+			IflowElementKind kind = classifyElement(node, name.getLocalName());
+			if (kind != null) {
+				elements.add(new IflowElement(kind, node, extensionProperties(node)));
+			}
+		});
+		return elements;
+	}
+	
+	private static IflowElementKind classifyElement(XdmNode node, String localName) {
+		IflowElementKind kind;
+		if (localName.equals("messageFlow")) {
+			kind = IflowElementKind.CHANNEL;
+		} else if (localName.equals("callActivity")) {
+			kind = IflowElementKind.FLOW_STEP;
+		} else if (localName.equals("participant")) {
+			String participantType = node.getAttributeValue(PARTICIPANT_TYPE_QNAME);
+			if ("EndpointSender".equals(participantType)) {
+				kind = IflowElementKind.SENDER_PARTICIPANT;
+			} else if ("EndpointRecevier".equals(participantType)) { // Yes, that is the spelling to use.
+				kind = IflowElementKind.RECEIVER_PARTICIPANT;
+			} else {
+				kind = null;
+			}
+		} else if (localName.endsWith("Gateway")) {
+			kind = IflowElementKind.GATEWAY;
+		} else if (localName.equals("documentation") && isIflowDescription(node)) {
+			kind = IflowElementKind.IFLOW_DESCRIPTION;
+		} else {
+			kind = null;
+		}
+		return kind;
+	}
+	
+	private static boolean isIflowDescription(XdmNode node) {
+		// The iflow description is /bpmn2:definitions/bpmn2:collaboration/bpmn2:documentation.
+		XdmNode collaboration = node.getParent();
+		XdmNode definitions = collaboration.getParent();
+		return isBpmn2Element(collaboration, "collaboration")
+			&& isBpmn2Element(definitions, "definitions")
+			&& definitions.getParent() != null
+			&& definitions.getParent().getNodeKind() == XdmNodeKind.DOCUMENT;
+	}
+	
+	private static boolean isBpmn2Element(XdmNode node, String localName) {
+		return node != null
+			&& node.getNodeKind() == XdmNodeKind.ELEMENT
+			&& node.getNodeName().getNamespace().equals(BPMN2_NAMESPACE)
+			&& node.getNodeName().getLocalName().equals(localName);
+	}
+	
+	private static Map<String, Set<String>> extensionProperties(XdmNode node) {
+		/*
+		 * Collect the bpmn2:extensionElements/ifl:property children as a map
+		 * from key to values. Like the key/value predicates in the XPath
+		 * expressions, every key of a property is paired with every value of
+		 * that property (normally, there is exactly one of each).
+		 */
+		Map<String, Set<String>> properties = new HashMap<>();
+		for (XdmNode extensionElements : node.children(isExtensionElements)) {
+			for (XdmNode property : extensionElements.children(isProperty)) {
+				Set<String> values = new HashSet<>();
+				property.children(isPropertyValue).forEach(v -> values.add(v.getStringValue()));
+				property.children(isPropertyKey).forEach(k -> properties.computeIfAbsent(k.getStringValue(), x -> new HashSet<>()).addAll(values));
+			}
+		}
+		return properties;
+	}
+	
+	@Override
+	public IflowElementFilter filterForChannels(IflowElementFilter... filters) {
+		return ModelUtil.allOf(IflowElementKind.CHANNEL, filters);
+	}
+	
+	@Override
+	public IflowElementFilter channelFilterForDirection(ChannelDirection direction) {
+		assert directionPropertyValues.containsKey(direction);
+		String propertyValue = directionPropertyValues.get(direction);
+		return propertyKeyValueFilter(DIRECTION_PROPERTY_KEY, propertyValue);
+	}
+	
+	@Override
+	public IflowElementFilter channelFilterForAdapter(ReceiverAdapter receiverAdapter) {
+		assert receiverAdapterComponentTypes.containsKey(receiverAdapter);
+		String componentType = receiverAdapterComponentTypes.get(receiverAdapter);
+		return propertyKeyValueFilter(COMPONENT_TYPE_PROPERTY_KEY, componentType);
+	}
+	
+	@Override
+	public IflowElementFilter channelFilterForAdapter(SenderAdapter senderAdapter) {
+		assert senderAdapterComponentTypes.containsKey(senderAdapter);
+		String componentType = senderAdapterComponentTypes.get(senderAdapter);
+		return propertyKeyValueFilter(COMPONENT_TYPE_PROPERTY_KEY, componentType);
+	}
+	
+	@Override
+	public IflowElementFilter channelFilterForHttpEndpoints(ReceiverAdapter receiverAdapter) {
+		if (!httpEndpointPropertyKeyNames.containsKey(receiverAdapter)) {
+			throw new IllegalArgumentException(String.format("Receiver channels of adapter %s cannot contain HTTP endpoints", receiverAdapter.getName()));
+		}
+		List<String> keys = httpEndpointPropertyKeyNames.get(receiverAdapter);
+		return e -> keys
+			.stream()
+			.flatMap(k -> e.getPropertyValues(k).stream())
+			.anyMatch(v -> v.toLowerCase(Locale.ROOT).startsWith("http://"));
+	}
+	
+	@Override
+	public IflowElementFilter channelFilterForNoCsrfProtection() {
+		return propertyKeyValueFilter("xsrfProtection", "0");
+	}
+	
+	@Override
+	public IflowElementFilter channelFilterForBasicAuthentication(ReceiverAdapter receiverAdapter) {
+		if (!basicAuthPropertyKeys.containsKey(receiverAdapter)) {
+			throw new IllegalArgumentException(String.format("Receiver channels of adapter %s cannot use basic authentication", receiverAdapter.getName()));
+		}
+		assert basicAuthPropertyValues.containsKey(receiverAdapter);
+		String key = basicAuthPropertyKeys.get(receiverAdapter);
+		String value = basicAuthPropertyValues.get(receiverAdapter);
+		return propertyKeyValueFilter(key, value);
+	}
+	
+	@Override
+	public IflowElementFilter channelFilterForClientCertAuth(SenderAdapter senderAdapter) {
+		if (!clientCertAuthPropertyKeys.containsKey(senderAdapter)) {
+			throw new IllegalArgumentException(String.format("Sender channels of adapter %s cannot use client certificate authentication", senderAdapter.getName()));
+		}
+		assert clientCertAuthPropertyValues.containsKey(senderAdapter);
+		String key = clientCertAuthPropertyKeys.get(senderAdapter);
+		String value = clientCertAuthPropertyValues.get(senderAdapter);
+		return propertyKeyValueFilter(key, value);
+	}
+	
+	@Override
+	public IflowElementFilter channelFilterForProxyTypeOnPremise(ReceiverAdapter receiverAdapter) {
+		IflowElementFilter filter;
+		if (receiverAdapter == ReceiverAdapter.ODC) {
+		    // Implicitly on-premise.
+		    filter = ModelUtil.trueFilter();
+		} else if (receiverAdapter == ReceiverAdapter.LDAP) {
+		    filter = propertyKeyValueFilter("ldapProxyType", "ldapProxyTypeOnPremise");
+		} else if (onPremReceiverAdapters.contains(receiverAdapter)) {
+		    filter = propertyKeyValueFilter("proxyType", "sapcc");
+		} else if (receiverAdapter == ReceiverAdapter.IBMMQ) {
+			filter = propertyKeyValueFilter("proxyType", "onPremise");
+		} else {
+		    // Not on-premise enabled.
+		    filter = ModelUtil.falseFilter();
+		}
+		return filter;
+	}
+	
+	@Override
+	public IflowElementFilter filterForFlowSteps(IflowElementFilter... filters) {
+		return ModelUtil.allOf(IflowElementKind.FLOW_STEP, filters);
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForMappingSteps() {
+		return propertyKeyValueFilter(ACTIVITY_TYPE_PROPERTY_KEY, "Mapping");
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForMappingType(MappingType mappingType) {
+		assert mappingTypePropertyKeys.containsKey(mappingType);
+		assert mappingTypePropertyValues.containsKey(mappingType);
+		String key = mappingTypePropertyKeys.get(mappingType);
+		String value = mappingTypePropertyValues.get(mappingType);
+		return propertyKeyValueFilter(key, value);
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForScriptSteps() {
+		return propertyKeyValueFilter(ACTIVITY_TYPE_PROPERTY_KEY, "Script");
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForFilterSteps() {
+		return propertyKeyValueFilter(ACTIVITY_TYPE_PROPERTY_KEY, "Filter");
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForXmlValidatorSteps() {
+		return propertyKeyValueFilter(ACTIVITY_TYPE_PROPERTY_KEY, "XmlValidator");
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForEdiValidatorSteps() {
+		return propertyKeyValueFilter(ACTIVITY_TYPE_PROPERTY_KEY, "EDIValidator");
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForContentModifierSteps() {
+		return propertyKeyValueFilter(ACTIVITY_TYPE_PROPERTY_KEY, "Enricher");
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForScriptingLanguage(ScriptingLanguage scriptingLanguage) {
+		assert scriptingLanguagePropertyValues.containsKey(scriptingLanguage);
+		String key = SUB_ACTIVITY_TYPE_PROPERTY_KEY;
+		String value = scriptingLanguagePropertyValues.get(scriptingLanguage);
+		return propertyKeyValueFilter(key, value);
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForDataStoreSteps() {
+		return propertyKeyValueFilter(ACTIVITY_TYPE_PROPERTY_KEY, "DBstorage");
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForDataStoreOperation(DataStoreOperation dataStoreOperation) {
+		assert datastoreOperationPropertyValues.containsKey(dataStoreOperation);
+		String key = "operation";
+		String value = datastoreOperationPropertyValues.get(dataStoreOperation);
+		return propertyKeyValueFilter(key, value);
+	}
+	
+	@Override
+	public IflowElementFilter stepFilterForUnencryptedWrite() {
+		return propertyKeyValueFilter("encrypt", "false");
+	}
+	
+	@Override
+	public IflowElementFilter filterForSenderParticipants() {
+		return ModelUtil.allOf(IflowElementKind.SENDER_PARTICIPANT);
+	}
+	
+	@Override
+	public IflowElementFilter filterForReceiverParticipants() {
+		return ModelUtil.allOf(IflowElementKind.RECEIVER_PARTICIPANT);
+	}
+	
+	@Override
+	public IflowElementFilter filterForIflowDescription() {
+		return ModelUtil.allOf(IflowElementKind.IFLOW_DESCRIPTION);
+	}
+	
+	@Override
+	public IflowElementIndex indexIflowElements(XdmNode documentNode) {
+		// Index the property keys that the element filters of this model look up the most.
+		return new IflowElementIndex(classifyIflowElements(documentNode), indexedPropertyKeys);
+	}
+	
+	@Override
+	public List<IflowElement> lookupSenderChannels(IflowElementIndex index, SenderAdapter senderAdapter, IflowElementFilter... filters) {
+		assert senderAdapterComponentTypes.containsKey(senderAdapter);
+		String componentType = senderAdapterComponentTypes.get(senderAdapter);
+		List<IflowElement> candidates = index.getElements(IflowElementKind.CHANNEL, COMPONENT_TYPE_PROPERTY_KEY, componentType);
+		return ModelUtil.lookup(candidates, filterForSenderChannels(senderAdapter, filters));
+	}
+	
+	@Override
+	public List<IflowElement> lookupReceiverChannels(IflowElementIndex index, ReceiverAdapter receiverAdapter, IflowElementFilter... filters) {
+		assert receiverAdapterComponentTypes.containsKey(receiverAdapter);
+		String componentType = receiverAdapterComponentTypes.get(receiverAdapter);
+		List<IflowElement> candidates = index.getElements(IflowElementKind.CHANNEL, COMPONENT_TYPE_PROPERTY_KEY, componentType);
+		return ModelUtil.lookup(candidates, filterForReceiverChannels(receiverAdapter, filters));
+	}
+	
+	@Override
+	public List<IflowElement> lookupMappingSteps(IflowElementIndex index, MappingType mappingType) {
+		List<IflowElement> candidates = index.getElements(IflowElementKind.FLOW_STEP, ACTIVITY_TYPE_PROPERTY_KEY, "Mapping");
+		return ModelUtil.lookup(candidates, filterForMappingSteps(mappingType));
+	}
+	
+	@Override
+	public List<IflowElement> lookupScriptSteps(IflowElementIndex index, ScriptingLanguage scriptingLanguage) {
+		List<IflowElement> candidates = index.getElements(IflowElementKind.FLOW_STEP, ACTIVITY_TYPE_PROPERTY_KEY, "Script");
+		return ModelUtil.lookup(candidates, filterForScriptSteps(scriptingLanguage));
+	}
+	
+	private static IflowElementFilter propertyKeyValueFilter(String key, String value) {
+		return e -> e.hasProperty(key, value);
+	}
+
 }
@@ -0,0 +1,52 @@
+package org.cpilint.model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import net.sf.saxon.s9api.XdmNode;
+
+public final class IflowElement {
+	
+	private final IflowElementKind kind;
+	private final XdmNode node;
+	private final Map<String, Set<String>> properties;
+	
+	IflowElement(IflowElementKind kind, XdmNode node, Map<String, Set<String>> properties) {
+		// Instances are created by the model, when classifying the iflow XML.
+		this.kind = Objects.requireNonNull(kind, "kind must not be null");
+		this.node = Objects.requireNonNull(node, "node must not be null");
+		this.properties = Objects.requireNonNull(properties, "properties must not be null");
+	}
+	
+	public IflowElementKind getKind() {
+		return kind;
+	}
+	
+	public XdmNode getNode() {
+		return node;
+	}
+	
+	public String getName() {
+		return node.attribute("name");
+	}
+	
+	public String getId() {
+		return node.attribute("id");
+	}
+	
+	public boolean hasProperty(String key, String value) {
+		return getPropertyValues(key).contains(value);
+	}
+	
+	public Set<String> getPropertyValues(String key) {
+		/*
+		 * An element can have more than one property with the same key, so
+		 * a key maps to a set of values. If the element has no property with
+		 * the provided key, the set is empty.
+		 */
+		return Collections.unmodifiableSet(properties.getOrDefault(key, Collections.emptySet()));
+	}
+
+}
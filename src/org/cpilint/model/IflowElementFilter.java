@@ -0,0 +1,12 @@
+package org.cpilint.model;
+
+@FunctionalInterface
+public interface IflowElementFilter {
+	
+	public boolean test(IflowElement element);
+	
+	public default IflowElementFilter negate() {
+		return e -> !test(e);
+	}
+
+}
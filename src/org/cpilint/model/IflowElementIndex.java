@@ -0,0 +1,75 @@
+package org.cpilint.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+public final class IflowElementIndex {
+
+	private final List<IflowElement> elements;
+	private final Map<IflowElementKind, List<IflowElement>> elementsByKind;
+	private final Set<String> indexedKeys;
+	private final Map<IflowElementKind, Map<String, Map<String, List<IflowElement>>>> elementsByProperty;
+
+	IflowElementIndex(List<IflowElement> elements, Collection<String> indexedKeys) {
+		/*
+		 * Instances are created by the model. Elements are grouped by kind,
+		 * and the elements of each kind are grouped by the values of the
+		 * indexed property keys (e.g. a channel's direction and component
+		 * type). All lists are kept in document order.
+		 */
+		Objects.requireNonNull(elements, "elements must not be null");
+		Objects.requireNonNull(indexedKeys, "indexedKeys must not be null");
+		this.elements = Collections.unmodifiableList(new ArrayList<>(elements));
+		this.indexedKeys = new HashSet<>(indexedKeys);
+		elementsByKind = new EnumMap<>(IflowElementKind.class);
+		elementsByProperty = new EnumMap<>(IflowElementKind.class);
+		for (IflowElement e : this.elements) {
+			elementsByKind.computeIfAbsent(e.getKind(), k -> new ArrayList<>()).add(e);
+			for (String key : this.indexedKeys) {
+				for (String value : e.getPropertyValues(key)) {
+					elementsByProperty
+						.computeIfAbsent(e.getKind(), k -> new HashMap<>())
+						.computeIfAbsent(key, k -> new HashMap<>())
+						.computeIfAbsent(value, v -> new ArrayList<>())
+						.add(e);
+				}
+			}
+		}
+	}
+
+	public List<IflowElement> getElements() {
+		return elements;
+	}
+
+	public List<IflowElement> getElements(IflowElementKind kind) {
+		Objects.requireNonNull(kind, "kind must not be null");
+		return Collections.unmodifiableList(elementsByKind.getOrDefault(kind, Collections.emptyList()));
+	}
+
+	public List<IflowElement> getElements(IflowElementKind kind, String key, String value) {
+		Objects.requireNonNull(kind, "kind must not be null");
+		Objects.requireNonNull(key, "key must not be null");
+		Objects.requireNonNull(value, "value must not be null");
+		if (!indexedKeys.contains(key)) {
+			throw new IllegalArgumentException("Property key is not indexed: " + key);
+		}
+		List<IflowElement> result = elementsByProperty
+			.getOrDefault(kind, Collections.emptyMap())
+			.getOrDefault(key, Collections.emptyMap())
+			.getOrDefault(value, Collections.emptyList());
+		return Collections.unmodifiableList(result);
+	}
+
+	public boolean isIndexed(String key) {
+		return indexedKeys.contains(key);
+	}
+
+}
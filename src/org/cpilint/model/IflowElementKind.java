@@ -0,0 +1,12 @@
+package org.cpilint.model;
+
+public enum IflowElementKind {
+	
+	CHANNEL,
+	FLOW_STEP,
+	SENDER_PARTICIPANT,
+	RECEIVER_PARTICIPANT,
+	GATEWAY,
+	IFLOW_DESCRIPTION
+
+}
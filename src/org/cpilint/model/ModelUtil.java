@@ -1,10 +1,30 @@
 package org.cpilint.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import net.sf.saxon.s9api.Axis;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathExecutable;
+import net.sf.saxon.s9api.XPathSelector;
+import net.sf.saxon.s9api.XdmNode;
 
 final class ModelUtil {
 	
+	private static final Map<String, String> namespacePrefixes = Map.of(
+		"bpmn2", "http://www.omg.org/spec/BPMN/20100524/MODEL",
+		"ifl", "http:///com.sap.ifl.model/Ifl.xsd"
+	);
+	
 	private ModelUtil() {
 		throw new AssertionError("Never supposed to be instantiated");
 	}
@@ -20,5 +40,102 @@ final class ModelUtil {
 	static String xpathFalsePredicate() {
 	    return "[false()]";
 	}
+
+	static IflowElementFilter allOf(IflowElementKind kind, IflowElementFilter... filters) {
+		/*
+		 * The returned filter is the element filter counterpart of an XPath
+		 * expression selecting elements of a certain kind, followed by a
+		 * number of predicates.
+		 */
+		return e -> {
+			if (e.getKind() != kind) {
+				return false;
+			}
+			for (IflowElementFilter filter : filters) {
+				if (!filter.test(e)) {
+					return false;
+				}
+			}
+			return true;
+		};
+	}
+
+	static IflowElementFilter trueFilter() {
+		return e -> true;
+	}
+
+	static IflowElementFilter falseFilter() {
+		return e -> false;
+	}
+
+	static List<IflowElement> lookup(List<IflowElement> candidates, IflowElementFilter filter) {
+		return candidates
+			.stream()
+			.filter(filter::test)
+			.collect(Collectors.toList());
+	}
+
+	static IflowElementFilter xpathPredicateFilter(String predicate) {
+		/*
+		 * The element filter counterpart of an XPath predicate, for models
+		 * that only provide the predicate: it is evaluated with the element
+		 * as the context node. The expression is compiled the first time the
+		 * filter is used with nodes built by a given Processor.
+		 */
+		String xpath = "exists(self::node()" + predicate + ")";
+		Map<Processor, XPathExecutable> executables = new ConcurrentHashMap<>();
+		return e -> {
+			XdmNode node = e.getNode();
+			XPathExecutable exe = executables.computeIfAbsent(node.getProcessor(), p -> compileXpath(p, xpath));
+			try {
+				XPathSelector selector = exe.load();
+				selector.setContextItem(node);
+				return selector.effectiveBooleanValue();
+			} catch (SaxonApiException ex) {
+				throw new XmlModelError("Error evaluating XPath predicate", ex);
+			}
+		};
+	}
+
+	static List<IflowElement> classifyByXpath(XdmNode documentNode, Map<IflowElementKind, String> xpaths) {
+		/*
+		 * Classify the nodes selected by each kind's XPath expression, and
+		 * return them in document order, like a single pass would. Their
+		 * properties are not known, so filters on them must evaluate the
+		 * corresponding XPath predicates.
+		 */
+		Map<XdmNode, IflowElementKind> kinds = new HashMap<>();
+		for (Map.Entry<IflowElementKind, String> xpath : xpaths.entrySet()) {
+			try {
+				XPathSelector selector = compileXpath(documentNode.getProcessor(), xpath.getValue()).load();
+				selector.setContextItem(documentNode);
+				selector.forEach(item -> {
+					if (item instanceof XdmNode) {
+						kinds.putIfAbsent((XdmNode)item, xpath.getKey());
+					}
+				});
+			} catch (SaxonApiException e) {
+				throw new XmlModelError("Error evaluating XPath expression", e);
+			}
+		}
+		List<IflowElement> elements = new ArrayList<>();
+		documentNode.axisIterator(Axis.DESCENDANT).forEachRemaining(node -> {
+			IflowElementKind kind = kinds.get(node);
+			if (kind != null) {
+				elements.add(new IflowElement(kind, node, Collections.emptyMap()));
+			}
+		});
+		return elements;
+	}
+
+	private static XPathExecutable compileXpath(Processor processor, String xpath) {
+		XPathCompiler compiler = processor.newXPathCompiler();
+		namespacePrefixes.forEach((prefix, ns) -> compiler.declareNamespace(prefix, ns));
+		try {
+			return compiler.compile(xpath);
+		} catch (SaxonApiException e) {
+			throw new XmlModelError("Error compiling XPath expression", e);
+		}
+	}
 	
 }
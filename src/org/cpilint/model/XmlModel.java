@@ -1,5 +1,12 @@
 package org.cpilint.model;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cpilint.CompiledXquery;
+import org.cpilint.IflowXml;
 import net.sf.saxon.s9api.XdmNode;
 
 public interface XmlModel {
@@ -58,12 +65,33 @@ public interface XmlModel {
 	
 	public String xqueryForProcessDirectReceiverChannels();
 	
+	public default CompiledXquery compiledXqueryForProcessDirectReceiverChannels() {
+		/*
+		 * The compiledXqueryFor methods return the same queries as the
+		 * xqueryFor methods, compiled. Implementations can override them to
+		 * compile each query only once.
+		 */
+		return IflowXml.compileXquery(xqueryForProcessDirectReceiverChannels());
+	}
+	
 	public String xqueryForProcessDirectSenderChannelAddresses();
 	
+	public default CompiledXquery compiledXqueryForProcessDirectSenderChannelAddresses() {
+		return IflowXml.compileXquery(xqueryForProcessDirectSenderChannelAddresses());
+	}
+	
 	public String xqueryForCleartextBasicAuthReceiverChannels();
+	
+	public default CompiledXquery compiledXqueryForCleartextBasicAuthReceiverChannels() {
+		return IflowXml.compileXquery(xqueryForCleartextBasicAuthReceiverChannels());
+	}
 
 	public String xqueryForSenderChannelUserRoles();
 	
+	public default CompiledXquery compiledXqueryForSenderChannelUserRoles() {
+		return IflowXml.compileXquery(xqueryForSenderChannelUserRoles());
+	}
+	
 	// Flow step related.
 	
 	public String xpathForFlowSteps(String... predicates);
@@ -110,6 +138,10 @@ public interface XmlModel {
 	
 	public String xqueryForMultiConditionTypeRouters();
 	
+	public default CompiledXquery compiledXqueryForMultiConditionTypeRouters() {
+		return IflowXml.compileXquery(xqueryForMultiConditionTypeRouters());
+	}
+	
 	// Participant related.
 
 	public String xpathForSenderParticipants();
@@ -123,5 +155,181 @@ public interface XmlModel {
 	// Other iflow content.
 	
 	public String xpathForIflowDescription();
+	
+	/*
+	 * Single-pass classification. Instead of evaluating an XPath expression
+	 * per rule (and per adapter, mapping type etc.), the iflow XML can be
+	 * traversed once, classifying every channel, flow step, participant,
+	 * gateway and the iflow description as an IflowElement. The filters
+	 * below are the counterparts of the XPath predicates above, and select
+	 * exactly the same elements. The default implementations are built from
+	 * the XPath expressions and predicates, so every model supports them;
+	 * a model can override them to classify without evaluating XPath.
+	 */
+	
+	public default List<IflowElement> classifyIflowElements(XdmNode documentNode) {
+		// Without a single pass of its own, a model cannot classify gateways.
+		Map<IflowElementKind, String> xpaths = new EnumMap<>(IflowElementKind.class);
+		xpaths.put(IflowElementKind.CHANNEL, xpathForChannels());
+		xpaths.put(IflowElementKind.FLOW_STEP, xpathForFlowSteps());
+		xpaths.put(IflowElementKind.SENDER_PARTICIPANT, xpathForSenderParticipants());
+		xpaths.put(IflowElementKind.RECEIVER_PARTICIPANT, xpathForReceiverParticipants());
+		xpaths.put(IflowElementKind.IFLOW_DESCRIPTION, xpathForIflowDescription());
+		return ModelUtil.classifyByXpath(documentNode, xpaths);
+	}
+	
+	public default IflowElementFilter filterForChannels(IflowElementFilter... filters) {
+		return ModelUtil.allOf(IflowElementKind.CHANNEL, filters);
+	}
+	
+	public default IflowElementFilter channelFilterForDirection(ChannelDirection direction) {
+		return ModelUtil.xpathPredicateFilter(channelPredicateForDirection(direction));
+	}
+	
+	public default IflowElementFilter channelFilterForAdapter(ReceiverAdapter receiverAdapter) {
+		return ModelUtil.xpathPredicateFilter(channelPredicateForAdapter(receiverAdapter));
+	}
+	
+	public default IflowElementFilter channelFilterForAdapter(SenderAdapter senderAdapter) {
+		return ModelUtil.xpathPredicateFilter(channelPredicateForAdapter(senderAdapter));
+	}
+	
+	public default IflowElementFilter channelFilterForHttpEndpoints(ReceiverAdapter receiverAdapter) {
+		return ModelUtil.xpathPredicateFilter(channelPredicateForHttpEndpoints(receiverAdapter));
+	}
+	
+	public default IflowElementFilter channelFilterForNoCsrfProtection() {
+		return ModelUtil.xpathPredicateFilter(channelPredicateForNoCsrfProtection());
+	}
+	
+	public default IflowElementFilter channelFilterForBasicAuthentication(ReceiverAdapter receiverAdapter) {
+		return ModelUtil.xpathPredicateFilter(channelPredicateForBasicAuthentication(receiverAdapter));
+	}
+	
+	public default IflowElementFilter channelFilterForClientCertAuth(SenderAdapter senderAdapter) {
+		return ModelUtil.xpathPredicateFilter(channelPredicateForClientCertAuth(senderAdapter));
+	}
+	
+	public default IflowElementFilter channelFilterForProxyTypeOnPremise(ReceiverAdapter receiverAdapter) {
+		return ModelUtil.xpathPredicateFilter(channelPredicateForProxyTypeOnPremise(receiverAdapter));
+	}
+	
+	public default IflowElementFilter filterForSenderChannels(SenderAdapter senderAdapter, IflowElementFilter... filters) {
+		IflowElementFilter[] newFilters = new IflowElementFilter[filters.length + 2];
+		newFilters[0] = channelFilterForDirection(ChannelDirection.SENDER);
+		newFilters[1] = channelFilterForAdapter(senderAdapter);
+		System.arraycopy(filters, 0, newFilters, 2, filters.length);
+		return filterForChannels(newFilters);
+	}
+	
+	public default IflowElementFilter filterForReceiverChannels(ReceiverAdapter receiverAdapter, IflowElementFilter... filters) {
+		IflowElementFilter[] newFilters = new IflowElementFilter[filters.length + 2];
+		newFilters[0] = channelFilterForDirection(ChannelDirection.RECEIVER);
+		newFilters[1] = channelFilterForAdapter(receiverAdapter);
+		System.arraycopy(filters, 0, newFilters, 2, filters.length);
+		return filterForChannels(newFilters);
+	}
+	
+	public default IflowElementFilter filterForFlowSteps(IflowElementFilter... filters) {
+		return ModelUtil.allOf(IflowElementKind.FLOW_STEP, filters);
+	}
+	
+	public default IflowElementFilter stepFilterForMappingSteps() {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForMappingSteps());
+	}
+	
+	public default IflowElementFilter stepFilterForMappingType(MappingType mappingType) {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForMappingType(mappingType));
+	}
+	
+	public default IflowElementFilter filterForMappingSteps(MappingType mappingType) {
+		return filterForFlowSteps(
+			stepFilterForMappingSteps(),
+			stepFilterForMappingType(mappingType)
+		);
+	}
+	
+	public default IflowElementFilter stepFilterForScriptSteps() {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForScriptSteps());
+	}
+	
+	public default IflowElementFilter stepFilterForFilterSteps() {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForFilterSteps());
+	}
+	
+	public default IflowElementFilter stepFilterForXmlValidatorSteps() {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForXmlValidatorSteps());
+	}
+	
+	public default IflowElementFilter stepFilterForEdiValidatorSteps() {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForEdiValidatorSteps());
+	}
+	
+	public default IflowElementFilter stepFilterForContentModifierSteps() {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForContentModifierSteps());
+	}
+	
+	public default IflowElementFilter stepFilterForScriptingLanguage(ScriptingLanguage scriptingLanguage) {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForScriptingLanguage(scriptingLanguage));
+	}
+	
+	public default IflowElementFilter filterForScriptSteps(ScriptingLanguage scriptingLanguage) {
+		return filterForFlowSteps(
+			stepFilterForScriptSteps(),
+			stepFilterForScriptingLanguage(scriptingLanguage)
+		);
+	}
+	
+	public default IflowElementFilter stepFilterForDataStoreSteps() {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForDataStoreSteps());
+	}
+	
+	public default IflowElementFilter stepFilterForDataStoreOperation(DataStoreOperation dataStoreOperation) {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForDataStoreOperation(dataStoreOperation));
+	}
+	
+	public default IflowElementFilter stepFilterForUnencryptedWrite() {
+		return ModelUtil.xpathPredicateFilter(stepPredicateForUnencryptedWrite());
+	}
+	
+	public default IflowElementFilter filterForSenderParticipants() {
+		return ModelUtil.allOf(IflowElementKind.SENDER_PARTICIPANT);
+	}
+	
+	public default IflowElementFilter filterForReceiverParticipants() {
+		return ModelUtil.allOf(IflowElementKind.RECEIVER_PARTICIPANT);
+	}
+	
+	public default IflowElementFilter filterForIflowDescription() {
+		return ModelUtil.allOf(IflowElementKind.IFLOW_DESCRIPTION);
+	}
+	
+	/*
+	 * Index lookups. Rather than testing every classified element against a
+	 * filter, these methods start from the elements that an index has
+	 * already grouped by kind and property value (e.g. all channels with a
+	 * certain component type), and only test those. By default, no property
+	 * keys are indexed, and a lookup tests all elements of the kind.
+	 */
+	
+	public default IflowElementIndex indexIflowElements(XdmNode documentNode) {
+		return new IflowElementIndex(classifyIflowElements(documentNode), Collections.emptySet());
+	}
+	
+	public default List<IflowElement> lookupSenderChannels(IflowElementIndex index, SenderAdapter senderAdapter, IflowElementFilter... filters) {
+		return ModelUtil.lookup(index.getElements(IflowElementKind.CHANNEL), filterForSenderChannels(senderAdapter, filters));
+	}
+	
+	public default List<IflowElement> lookupReceiverChannels(IflowElementIndex index, ReceiverAdapter receiverAdapter, IflowElementFilter... filters) {
+		return ModelUtil.lookup(index.getElements(IflowElementKind.CHANNEL), filterForReceiverChannels(receiverAdapter, filters));
+	}
+	
+	public default List<IflowElement> lookupMappingSteps(IflowElementIndex index, MappingType mappingType) {
+		return ModelUtil.lookup(index.getElements(IflowElementKind.FLOW_STEP), filterForMappingSteps(mappingType));
+	}
+	
+	public default List<IflowElement> lookupScriptSteps(IflowElementIndex index, ScriptingLanguage scriptingLanguage) {
+		return ModelUtil.lookup(index.getElements(IflowElementKind.FLOW_STEP), filterForScriptSteps(scriptingLanguage));
+	}
 
 }
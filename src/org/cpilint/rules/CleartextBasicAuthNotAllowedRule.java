@@ -4,7 +4,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import org.cpilint.CompiledXquery;
 import org.cpilint.IflowXml;
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.CleartextBasicAuthNotAllowedIssue;
@@ -18,8 +20,6 @@ final class CleartextBasicAuthNotAllowedRule extends RuleBase {
 	
 	private static final Map<String, ReceiverAdapter> componentTypeToReceiverAdapterMap;
 	
-	private String xquery;
-	
 	static {
 		// TODO: This really ought to be in the model rather than here.
 		componentTypeToReceiverAdapterMap = new HashMap<>();
@@ -39,13 +39,7 @@ final class CleartextBasicAuthNotAllowedRule extends RuleBase {
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
 		IflowArtifactTag tag = iflow.getTag();
-		/*
-		 *  Only load the XQuery content once. Since only one version of the
-		 *  XQuery exists, this optimization is okay.
-		 */
-		if (xquery == null) {
-			xquery = model.xqueryForCleartextBasicAuthReceiverChannels();
-		}
+		CompiledXquery xquery = model.compiledXqueryForCleartextBasicAuthReceiverChannels();
 		XdmValue result = iflowXml.executeXquery(xquery);
 		/*
 		 * The returned sequence must either be empty, or the number of
@@ -72,4 +66,14 @@ final class CleartextBasicAuthNotAllowedRule extends RuleBase {
 
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	public ArtifactRequirements getRequirements() {
+		return ArtifactRequirements.none().withIflowXml();
+	}
+
 }
@@ -8,12 +8,13 @@ import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.ClientCertSenderChannelAuthNotAllowedIssue;
 import org.cpilint.issues.Issue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
 import org.cpilint.model.SenderAdapter;
 import org.cpilint.model.XmlModel;
 import org.cpilint.model.XmlModelFactory;
-import net.sf.saxon.s9api.XdmNode;
 
-final class ClientCertSenderChannelAuthNotAllowedRule extends RuleBase {
+final class ClientCertSenderChannelAuthNotAllowedRule extends VisitingRuleBase {
 	
 	private static final Set<SenderAdapter> adaptersOfInterest = Set.of(
 			SenderAdapter.HTTPS,
@@ -26,13 +27,18 @@ final class ClientCertSenderChannelAuthNotAllowedRule extends RuleBase {
 		);
 
 	@Override
-	public void inspect(IflowArtifact iflow) {
+	public IflowElementVisitor visitorFor(IflowArtifact iflow) {
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
 		IflowArtifactTag tag = iflow.getTag();
-		Function<SenderAdapter, String> xpathFunction = a -> model.xpathForSenderChannels(a, model.channelPredicateForClientCertAuth(a));
-		Function<SenderAdapter, Function<XdmNode, Issue>> issueFunctionFunction = a -> n -> new ClientCertSenderChannelAuthNotAllowedIssue(ruleId, tag, a, model.getChannelNameFromElement(n), model.getChannelIdFromElement(n));
-		XpathRulesUtil.iterateMultipleXpathsAndConsumeIssues(iflowXml, adaptersOfInterest, xpathFunction, issueFunctionFunction, consumer::consume);
+		Function<SenderAdapter, IflowElementFilter> filterFunction = a -> model.filterForSenderChannels(a, model.channelFilterForClientCertAuth(a));
+		Function<SenderAdapter, Function<IflowElement, Issue>> issueFunctionFunction = a -> e -> new ClientCertSenderChannelAuthNotAllowedIssue(ruleId, tag, a, model.getChannelNameFromElement(e.getNode()), model.getChannelIdFromElement(e.getNode()));
+		return VisitingRulesUtil.visitorForMultipleFilters(adaptersOfInterest, filterFunction, issueFunctionFunction, consumer::consume);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
 	}
 
 }
@@ -0,0 +1,31 @@
+package org.cpilint.rules;
+
+import org.json.JSONObject;
+
+import org.cpilint.artifacts.IflowArtifact;
+import org.cpilint.artifacts.IflowArtifactTag;
+
+public interface CrossIflowRule extends Rule {
+
+	/*
+	 * A rule that collects state from every iflow artifact and reports its
+	 * issues in endTesting, once all artifacts have been inspected. During
+	 * an incremental run, CpiLint records what each artifact contributed to
+	 * that state, and hands it back for artifacts that have not changed
+	 * since, instead of inspecting them again. A thread-safe rule must also
+	 * allow addContribution to be called concurrently with inspect.
+	 */
+
+	/*
+	 * Inspects the iflow artifact exactly like inspect does, and returns
+	 * what the artifact contributed to the rule's state.
+	 */
+	public JSONObject inspectForContribution(IflowArtifact iflow);
+
+	/*
+	 * Adds a contribution previously returned by inspectForContribution
+	 * for an iflow artifact with the provided tag.
+	 */
+	public void addContribution(IflowArtifactTag tag, JSONObject contribution);
+
+}
@@ -7,21 +7,27 @@ import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.CsrfProtectionRequiredIssue;
 import org.cpilint.issues.Issue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
 import org.cpilint.model.SenderAdapter;
 import org.cpilint.model.XmlModel;
 import org.cpilint.model.XmlModelFactory;
-import net.sf.saxon.s9api.XdmNode;
 
-final class CsrfProtectionRequiredRule extends RuleBase {
+final class CsrfProtectionRequiredRule extends VisitingRuleBase {
 	
 	@Override
-	public void inspect(IflowArtifact iflow) {
+	public IflowElementVisitor visitorFor(IflowArtifact iflow) {
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
 		IflowArtifactTag tag = iflow.getTag();
-		String noCsrfChannelsXpath = model.xpathForSenderChannels(SenderAdapter.HTTPS, model.channelPredicateForNoCsrfProtection());
-		Function<XdmNode, Issue> issueFunction = n -> new CsrfProtectionRequiredIssue(ruleId, tag, model.getChannelNameFromElement(n), model.getChannelIdFromElement(n));
-		XpathRulesUtil.iterateSingleXpathAndConsumeIssues(iflowXml, noCsrfChannelsXpath, issueFunction, consumer::consume);
+		IflowElementFilter noCsrfChannelsFilter = model.filterForSenderChannels(SenderAdapter.HTTPS, model.channelFilterForNoCsrfProtection());
+		Function<IflowElement, Issue> issueFunction = e -> new CsrfProtectionRequiredIssue(ruleId, tag, model.getChannelNameFromElement(e.getNode()), model.getChannelIdFromElement(e.getNode()));
+		return VisitingRulesUtil.visitorForSingleFilter(noCsrfChannelsFilter, issueFunction, consumer::consume);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
 	}
 
 }
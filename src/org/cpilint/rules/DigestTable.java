@@ -0,0 +1,204 @@
+package org.cpilint.rules;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import org.cpilint.artifacts.ArtifactResource;
+import org.cpilint.artifacts.IflowArtifactTag;
+import org.cpilint.artifacts.ResourceDigest;
+
+final class DigestTable {
+
+	/*
+	 * Groups resources (iflow tag and resource name) by the size of their
+	 * contents, without an object per size or per resource, so that only
+	 * resources of the same size ever need to be compared. A resource is
+	 * added either with the fixed-width hash of its contents, if that is
+	 * already known, or as a reference to the resource itself, so that it
+	 * can be hashed later, if its size turns out not to be unique. Each
+	 * distinct size takes a slot in an open-addressing table with linear
+	 * probing. The resources are kept in parallel arrays, their hashes in a
+	 * long array, and the resources of the same size are chained together.
+	 * Not thread-safe.
+	 */
+
+	private static final int INITIAL_SLOTS = 64;
+	private static final int INITIAL_ENTRIES = 64;
+	private static final int NO_ENTRY = -1;
+
+	private final int hashLength;
+	private final int hashWords;
+	// Slots, by size.
+	private long[] sizes;
+	private int[] firstEntries;
+	private int[] entryCounts;
+	private int slotsUsed = 0;
+	// Entries, i.e. resources, in the order they were added.
+	private IflowArtifactTag[] tags;
+	private String[] names;
+	// The resource, for entries whose hash is not known; otherwise null.
+	private ArtifactResource[] resources;
+	// The hash of entry i is in words i * hashWords and on, if it is known.
+	private long[] hashes;
+	private int[] nextEntries;
+	private int entries = 0;
+
+	DigestTable(int hashLength) {
+		if (hashLength < 1 || hashLength % Long.BYTES != 0) {
+			throw new IllegalArgumentException("hashLength must be a positive multiple of " + Long.BYTES);
+		}
+		this.hashLength = hashLength;
+		this.hashWords = hashLength / Long.BYTES;
+		allocateSlots(INITIAL_SLOTS);
+		tags = new IflowArtifactTag[INITIAL_ENTRIES];
+		names = new String[INITIAL_ENTRIES];
+		resources = new ArtifactResource[INITIAL_ENTRIES];
+		hashes = new long[INITIAL_ENTRIES * hashWords];
+		nextEntries = new int[INITIAL_ENTRIES];
+	}
+
+	void add(long size, ByteBuffer hash, IflowArtifactTag tag, String name) {
+		/*
+		 * The hash is read from the buffer's start, in big-endian order,
+		 * without changing the buffer's position.
+		 */
+		Objects.requireNonNull(hash, "hash must not be null");
+		Objects.requireNonNull(tag, "tag must not be null");
+		Objects.requireNonNull(name, "name must not be null");
+		if (hash.limit() != hashLength) {
+			throw new IllegalArgumentException(String.format("hash must be %d bytes long", hashLength));
+		}
+		int e = addEntry(size, tag, name, null);
+		for (int w = 0; w < hashWords; w++) {
+			hashes[e * hashWords + w] = hash.getLong(w * Long.BYTES);
+		}
+	}
+
+	void add(long size, ArtifactResource resource) {
+		// Only the resource's size is known; its contents are loaded again if it needs to be hashed.
+		Objects.requireNonNull(resource, "resource must not be null");
+		addEntry(size, resource.getTag(), resource.getName(), resource);
+	}
+
+	int size() {
+		// The number of resources recorded.
+		return entries;
+	}
+
+	void forEachSharedSize(Consumer<List<Entry>> action) {
+		/*
+		 * Calls the action once for every size shared by more than one
+		 * resource, with those resources in the order they were added.
+		 */
+		Objects.requireNonNull(action, "action must not be null");
+		for (int slot = 0; slot < firstEntries.length; slot++) {
+			if (entryCounts[slot] < 2) {
+				continue;
+			}
+			List<Entry> sameSize = new ArrayList<>(entryCounts[slot]);
+			for (int e = firstEntries[slot]; e != NO_ENTRY; e = nextEntries[e]) {
+				sameSize.add(new Entry(tags[e], names[e], digestOf(e, sizes[slot]), resources[e]));
+			}
+			Collections.reverse(sameSize);
+			action.accept(sameSize);
+		}
+	}
+
+	private ResourceDigest digestOf(int e, long size) {
+		// The digest of an entry whose hash is known; otherwise null.
+		if (resources[e] != null) {
+			return null;
+		}
+		ByteBuffer hash = ByteBuffer.allocate(hashLength);
+		for (int w = 0; w < hashWords; w++) {
+			hash.putLong(hashes[e * hashWords + w]);
+		}
+		return new ResourceDigest(size, hash.array());
+	}
+
+	private int addEntry(long size, IflowArtifactTag tag, String name, ArtifactResource resource) {
+		int slot = findSlot(size);
+		if (firstEntries[slot] == NO_ENTRY) {
+			// A size not seen before.
+			sizes[slot] = size;
+			slotsUsed++;
+		}
+		if (entries == tags.length) {
+			int capacity = entries * 2;
+			tags = Arrays.copyOf(tags, capacity);
+			names = Arrays.copyOf(names, capacity);
+			resources = Arrays.copyOf(resources, capacity);
+			hashes = Arrays.copyOf(hashes, capacity * hashWords);
+			nextEntries = Arrays.copyOf(nextEntries, capacity);
+		}
+		int e = entries++;
+		tags[e] = tag;
+		names[e] = name;
+		resources[e] = resource;
+		nextEntries[e] = firstEntries[slot];
+		firstEntries[slot] = e;
+		entryCounts[slot]++;
+		if (slotsUsed * 2 > firstEntries.length) {
+			growSlots();
+		}
+		return e;
+	}
+
+	private int findSlot(long size) {
+		// Returns the slot holding the size, or the empty slot where it belongs.
+		int mask = firstEntries.length - 1;
+		int slot = slotFor(size, mask);
+		while (firstEntries[slot] != NO_ENTRY && sizes[slot] != size) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void allocateSlots(int slots) {
+		assert Integer.bitCount(slots) == 1;
+		sizes = new long[slots];
+		firstEntries = new int[slots];
+		Arrays.fill(firstEntries, NO_ENTRY);
+		entryCounts = new int[slots];
+	}
+
+	private void growSlots() {
+		long[] oldSizes = sizes;
+		int[] oldFirstEntries = firstEntries;
+		int[] oldEntryCounts = entryCounts;
+		allocateSlots(oldFirstEntries.length * 2);
+		int mask = firstEntries.length - 1;
+		for (int old = 0; old < oldFirstEntries.length; old++) {
+			if (oldFirstEntries[old] == NO_ENTRY) {
+				continue;
+			}
+			int slot = slotFor(oldSizes[old], mask);
+			while (firstEntries[slot] != NO_ENTRY) {
+				slot = (slot + 1) & mask;
+			}
+			sizes[slot] = oldSizes[old];
+			firstEntries[slot] = oldFirstEntries[old];
+			entryCounts[slot] = oldEntryCounts[old];
+		}
+	}
+
+	private static int slotFor(long size, int mask) {
+		// Sizes are not uniformly distributed, so they are scrambled first.
+		return Long.hashCode(size * 0x9e3779b97f4a7c15L) & mask;
+	}
+
+	record Entry(IflowArtifactTag tag, String name, ResourceDigest digest, ArtifactResource resource) {
+
+		/*
+		 * A resource of a shared size. Either its digest is known, or the
+		 * resource itself is available to be hashed.
+		 */
+
+	}
+
+}
@@ -1,25 +1,43 @@
 package org.cpilint.rules;
 
-import java.io.IOException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.ArtifactResource;
 import org.cpilint.artifacts.ArtifactResourceType;
 import org.cpilint.artifacts.IflowArtifact;
+import org.cpilint.artifacts.IflowArtifactTag;
+import org.cpilint.artifacts.ResourceDigest;
 import org.cpilint.issues.DuplicateResourcesNotAllowedIssue;
 
-final class DuplicateResourcesNotAllowedRule extends RuleBase {
+final class DuplicateResourcesNotAllowedRule extends RuleBase implements CrossIflowRule {
 	
-	private static final String HASHING_ALGORITHM = "SHA-256";
+	private static final String NAME_KEY = "name";
+	private static final String SIZE_KEY = "size";
+	private static final String HASH_KEY = "sha256";
 	
 	private final Set<ArtifactResourceType> typesToInspect;
-	private final Map<ArtifactResourceType, Map<BigInteger, Set<ArtifactResource>>> resources = new HashMap<>();
+	/*
+	 * The resources seen so far are kept until endTesting, so only their
+	 * sizes, digests, tags and names are kept, not their contents. Each
+	 * table is guarded by itself.
+	 */
+	private final Map<ArtifactResourceType, DigestTable> resources = new EnumMap<>(ArtifactResourceType.class);
 	
 	DuplicateResourcesNotAllowedRule() {
 		// Look for duplicates of all supported resource types.
@@ -40,58 +58,154 @@ final class DuplicateResourcesNotAllowedRule extends RuleBase {
 	DuplicateResourcesNotAllowedRule(Set<ArtifactResourceType> typesToInspect) {
 		// Only look for duplicates in the provided types of resources.
 		this.typesToInspect = new HashSet<>(typesToInspect);
+		for (ArtifactResourceType type : this.typesToInspect) {
+			resources.put(type, new DigestTable(ResourceDigest.HASH_LENGTH));
+		}
 	}
 
 	@Override
 	public void inspect(IflowArtifact iflow) {
+		/*
+		 * Duplicates are found in stages. Resources are grouped by size, and
+		 * only resources of a shared size are compared, in endTesting. A
+		 * digest that is already known, e.g. because it was calculated while
+		 * the artifact was read from a stream, is kept. A resource that is
+		 * loaded on demand is kept instead, with the size known without
+		 * loading it, so it is only hashed if its size turns out not to be
+		 * unique. Other resources are digested now, since their contents are
+		 * not kept until endTesting.
+		 */
 		for (ArtifactResourceType type : typesToInspect) {
-			Map<BigInteger, Set<ArtifactResource>> digests = resources.getOrDefault(type, new HashMap<>());
+			DigestTable digests = resources.get(type);
 			for (ArtifactResource resource : iflow.getResourcesByType(type)) {
-				BigInteger digest = calculateDigest(resource);
-				if (digests.containsKey(digest)) {
-					digests.get(digest).add(resource);
+				Optional<ResourceDigest> digest = resource.getDigestIfCalculated();
+				if (digest.isEmpty() && resource.isLoadedOnDemand()) {
+					long size = resource.getSize();
+					synchronized (digests) {
+						digests.add(size, resource);
+					}
 				} else {
-					/*
-					 * Set.of(resource) returns an immutable set, and therefore
-					 * cannot be used here. Too bad, really.
-					 */
-					Set<ArtifactResource> resourceSet = new HashSet<>();
-					resourceSet.add(resource);
-					digests.put(digest, resourceSet);
+					addResource(digests, digest.orElseGet(resource::getDigest), resource.getTag(), resource.getName());
 				}
 			}
-			resources.put(type, digests);
 		}
 	}
 
 	@Override
-	public void endTesting() {
-		if (resources.isEmpty()) {
-			// No iflows were inspected.
-			return;
+	public JSONObject inspectForContribution(IflowArtifact iflow) {
+		/*
+		 * Iflow artifacts may be inspected concurrently, so digests are
+		 * obtained outside the lock of the table they are added to. A
+		 * resource's digest is only calculated once; for an artifact read
+		 * from a stream, that happened while it was read. The contribution
+		 * holds the name and digest of each resource, by resource type. It
+		 * is added again in a later run, when the resources can no longer
+		 * be loaded, so every resource is digested here.
+		 */
+		JSONObject contribution = new JSONObject();
+		for (ArtifactResourceType type : typesToInspect) {
+			DigestTable digests = resources.get(type);
+			JSONArray contributed = new JSONArray();
+			for (ArtifactResource resource : iflow.getResourcesByType(type)) {
+				ResourceDigest digest = resource.getDigest();
+				addResource(digests, digest, resource.getTag(), resource.getName());
+				contributed.put(new JSONObject()
+					.put(NAME_KEY, resource.getName())
+					.put(SIZE_KEY, digest.getSize())
+					.put(HASH_KEY, HexFormat.of().formatHex(digest.getHash())));
+			}
+			contribution.put(type.name(), contributed);
 		}
+		return contribution;
+	}
+
+	@Override
+	public void addContribution(IflowArtifactTag tag, JSONObject contribution) {
 		for (ArtifactResourceType type : typesToInspect) {
-			assert resources.containsKey(type);
-			Map<BigInteger, Set<ArtifactResource>> digests = resources.get(type);
-			digests.values()
-				.stream()
-				.filter(s -> s.size() > 1)
-				.map(s -> new DuplicateResourcesNotAllowedIssue(ruleId, type, s))
-				.forEach(consumer::consume);
+			DigestTable digests = resources.get(type);
+			JSONArray contributed = contribution.optJSONArray(type.name(), new JSONArray());
+			for (int i = 0; i < contributed.length(); i++) {
+				JSONObject r = contributed.getJSONObject(i);
+				addResource(digests, digestFromContribution(r), tag, r.getString(NAME_KEY));
+			}
+		}
+	}
+
+	@Override
+	public void endTesting() {
+		/*
+		 * Only resources of a shared size can be duplicates. If none of
+		 * their digests are known, they are all loaded on demand, and a fast
+		 * fingerprint is calculated first; only resources that share one are
+		 * digested. Otherwise, the digests of the resources that lack one are
+		 * calculated, so that they can be compared to the known ones.
+		 */
+		for (ArtifactResourceType type : typesToInspect) {
+			DigestTable digests = resources.get(type);
+			synchronized (digests) {
+				digests.forEachSharedSize(sameSize -> {
+					if (sameSize.stream().allMatch(e -> e.digest() == null)) {
+						for (List<DigestTable.Entry> sameFingerprint : groupBy(sameSize, e -> ResourceFingerprint.of(e.resource().getContentsBuffer()))) {
+							consumeDuplicates(type, groupBy(sameFingerprint, e -> e.resource().getDigest()));
+						}
+					} else {
+						consumeDuplicates(type, groupBy(sameSize, e -> e.digest() != null ? e.digest() : e.resource().getDigest()));
+					}
+				});
+			}
 		}
 	}
+
+	private void consumeDuplicates(ArtifactResourceType type, List<List<DigestTable.Entry>> sameDigest) {
+		/*
+		 * Only the tag and name of a duplicate resource are reported, so the
+		 * reported resources have no contents. A resource that was added more
+		 * than once, e.g. by the same iflow in two archives, counts once.
+		 */
+		for (List<DigestTable.Entry> entries : sameDigest) {
+			Set<ArtifactResource> duplicates = new LinkedHashSet<>();
+			for (DigestTable.Entry e : entries) {
+				duplicates.add(ArtifactResource.withoutContents(e.tag(), type, e.name()));
+			}
+			if (duplicates.size() > 1) {
+				consumer.consume(new DuplicateResourcesNotAllowedIssue(ruleId, type, duplicates));
+			}
+		}
+	}
+
+	private static <K> List<List<DigestTable.Entry>> groupBy(List<DigestTable.Entry> entries, Function<DigestTable.Entry, K> keyFunction) {
+		// The groups of more than one entry with the same key, in the order they were added.
+		Map<K, List<DigestTable.Entry>> groups = new LinkedHashMap<>();
+		for (DigestTable.Entry e : entries) {
+			groups.computeIfAbsent(keyFunction.apply(e), k -> new ArrayList<>()).add(e);
+		}
+		return groups.values().stream()
+			.filter(g -> g.size() > 1)
+			.collect(Collectors.toList());
+	}
 	
-	private static BigInteger calculateDigest(ArtifactResource resource) {
-		MessageDigest md;
+	private static void addResource(DigestTable digests, ResourceDigest digest, IflowArtifactTag tag, String name) {
+		synchronized (digests) {
+			digests.add(digest.getSize(), digest.getHashBuffer(), tag, name);
+		}
+	}
+
+	private static ResourceDigest digestFromContribution(JSONObject contributed) {
 		try {
-			md = MessageDigest.getInstance(HASHING_ALGORITHM);
-			md.update(resource.getContents().readAllBytes());
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuleError(String.format("Unknown hashing algorithm '%s'", HASHING_ALGORITHM), e);
-		} catch (IOException e) {
-			throw new RuleError("I/O error reading artifact resource contents", e);
+			return new ResourceDigest(contributed.getLong(SIZE_KEY), HexFormat.of().parseHex(contributed.getString(HASH_KEY)));
+		} catch (JSONException | IllegalArgumentException e) {
+			throw new RuleError("Invalid resource digest in contribution", e);
 		}
-		return new BigInteger(1, md.digest());
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	public ArtifactRequirements getRequirements() {
+		return ArtifactRequirements.none().withResourceContents(typesToInspect);
 	}
 
 }
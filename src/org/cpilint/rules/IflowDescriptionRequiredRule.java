@@ -4,24 +4,46 @@ import org.cpilint.IflowXml;
 import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.IflowDescriptionRequiredIssue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
 import org.cpilint.model.XmlModel;
 import org.cpilint.model.XmlModelFactory;
-import net.sf.saxon.s9api.XdmValue;
 
-final class IflowDescriptionRequiredRule extends RuleBase {
+final class IflowDescriptionRequiredRule extends VisitingRuleBase {
 
 	@Override
-	public void inspect(IflowArtifact iflow) {
+	public IflowElementVisitor visitorFor(IflowArtifact iflow) {
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
 		IflowArtifactTag tag = iflow.getTag();
-		XdmValue descriptionNodes = iflowXml.evaluateXpath(model.xpathForIflowDescription());
-		if (descriptionNodes.size() > 1) {
-			throw new RuleError("Unable to locate iflow description");
-		}
-		if (descriptionNodes.size() == 0) {
-			consumer.consume(new IflowDescriptionRequiredIssue(ruleId, tag));
-		}
+		IflowElementFilter descriptionFilter = model.filterForIflowDescription();
+		return new IflowElementVisitor() {
+			
+			private int descriptionCount = 0;
+
+			@Override
+			public void visit(IflowElement element) {
+				if (descriptionFilter.test(element)) {
+					descriptionCount++;
+				}
+			}
+
+			@Override
+			public void endVisit() {
+				if (descriptionCount > 1) {
+					throw new RuleError("Unable to locate iflow description");
+				}
+				if (descriptionCount == 0) {
+					consumer.consume(new IflowDescriptionRequiredIssue(ruleId, tag));
+				}
+			}
+			
+		};
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
 	}
 
 }
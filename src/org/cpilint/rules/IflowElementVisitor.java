@@ -0,0 +1,13 @@
+package org.cpilint.rules;
+
+import org.cpilint.model.IflowElement;
+
+public interface IflowElementVisitor {
+	
+	public void visit(IflowElement element);
+	
+	public default void endVisit() {
+		// Called once, after all elements of the iflow have been visited.
+	}
+
+}
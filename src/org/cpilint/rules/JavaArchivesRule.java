@@ -5,6 +5,7 @@ import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.ArtifactResource;
 import org.cpilint.artifacts.ArtifactResourceType;
 import org.cpilint.artifacts.IflowArtifact;
@@ -36,5 +37,16 @@ final class JavaArchivesRule extends RuleBase {
         	}
         }
     }
-	
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public ArtifactRequirements getRequirements() {
+        // Only the names of the Java archives are inspected.
+        return ArtifactRequirements.none().withResourceNames(ArtifactResourceType.JAVA_ARCHIVE);
+    }
+
 }
@@ -1,6 +1,7 @@
 package org.cpilint.rules;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -9,12 +10,14 @@ import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.DisallowedMappingTypeIssue;
 import org.cpilint.issues.Issue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
+import org.cpilint.model.IflowElementIndex;
 import org.cpilint.model.MappingType;
 import org.cpilint.model.XmlModel;
 import org.cpilint.model.XmlModelFactory;
-import net.sf.saxon.s9api.XdmNode;
 
-final class MappingTypesRule extends RuleBase {
+final class MappingTypesRule extends VisitingRuleBase {
 	
 	private final boolean allowed;
 	private final Set<MappingType> mappingTypes;
@@ -26,14 +29,34 @@ final class MappingTypesRule extends RuleBase {
 
 	@Override
 	public void inspect(IflowArtifact iflow) {
+		// Outside of a single pass, look up the steps of each disallowed mapping type in the element index.
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
-		IflowArtifactTag tag = iflow.getTag();
+		IflowElementIndex index = iflowXml.getElementIndex();
+		Function<MappingType, List<IflowElement>> lookupFunction = t -> model.lookupMappingSteps(index, t);
+		VisitingRulesUtil.lookupAndConsumeIssues(disallowedTypes(), lookupFunction, issueFunctionFunction(iflow, model), consumer::consume);
+	}
+
+	@Override
+	public IflowElementVisitor visitorFor(IflowArtifact iflow) {
+		XmlModel model = XmlModelFactory.getModelFor(iflow.getIflowXml());
+		Function<MappingType, IflowElementFilter> filterFunction = t -> model.filterForMappingSteps(t);
+		return VisitingRulesUtil.visitorForMultipleFilters(disallowedTypes(), filterFunction, issueFunctionFunction(iflow, model), consumer::consume);
+	}
+
+	private Set<MappingType> disallowedTypes() {
 		// We are only checking for the mapping types that are _not_ allowed.
-		Set<MappingType> disallowedTypes = allowed ? MappingType.allValuesExcept(mappingTypes) : mappingTypes;
-		Function<MappingType, String> xpathFunction = t ->  model.xpathForMappingSteps(t);
-		Function<MappingType, Function<XdmNode, Issue>> issueFunctionFunction = t -> n -> new DisallowedMappingTypeIssue(ruleId, tag, model.getStepNameFromElement(n), model.getStepIdFromElement(n), t);
-		XpathRulesUtil.iterateMultipleXpathsAndConsumeIssues(iflowXml, disallowedTypes, xpathFunction, issueFunctionFunction, consumer::consume);
+		return allowed ? MappingType.allValuesExcept(mappingTypes) : mappingTypes;
+	}
+
+	private Function<MappingType, Function<IflowElement, Issue>> issueFunctionFunction(IflowArtifact iflow, XmlModel model) {
+		IflowArtifactTag tag = iflow.getTag();
+		return t -> e -> new DisallowedMappingTypeIssue(ruleId, tag, model.getStepNameFromElement(e.getNode()), model.getStepIdFromElement(e.getNode()), t);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
 	}
 
 }
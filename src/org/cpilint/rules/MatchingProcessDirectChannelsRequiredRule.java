@@ -2,17 +2,23 @@ package org.cpilint.rules;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.cpilint.CompiledXquery;
 import org.cpilint.IflowXml;
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.MatchingProcessDirectChannelsRequiredIssue;
@@ -21,22 +27,60 @@ import org.cpilint.model.XmlModelFactory;
 import net.sf.saxon.s9api.XdmItem;
 import net.sf.saxon.s9api.XdmValue;
 
-final class MatchingProcessDirectChannelsRequiredRule extends RuleBase {
+final class MatchingProcessDirectChannelsRequiredRule extends RuleBase implements CrossIflowRule {
 	
 	private static final Logger logger = LoggerFactory.getLogger(MatchingProcessDirectChannelsRequiredRule.class);
 	private static final Pattern simpleExpressionPattern = Pattern.compile("\\$\\{.+?\\}");
+	private static final String RECEIVER_CHANNELS_KEY = "receiverChannels";
+	private static final String SENDER_CHANNEL_ADDRESSES_KEY = "senderChannelAddresses";
+	private static final String CHANNEL_NAME_KEY = "name";
+	private static final String CHANNEL_ID_KEY = "id";
+	private static final String ADDRESS_KEY = "address";
 
-	private Collection<MatchingProcessDirectChannelsRequiredIssue> issues = new ArrayList<>();
-	private Set<String> senderChannelAddresses = new HashSet<>();
+	// Iflow artifacts may be inspected concurrently.
+	private Collection<MatchingProcessDirectChannelsRequiredIssue> issues = new ConcurrentLinkedQueue<>();
+	private Set<String> senderChannelAddresses = ConcurrentHashMap.newKeySet();
 
 	@Override
 	public void inspect(IflowArtifact iflow) {
+		inspectForContribution(iflow);
+	}
+
+	@Override
+	public JSONObject inspectForContribution(IflowArtifact iflow) {
 		/*
 		 * Create an issue for each ProcessDirect receiver channel, and store
 		 * each sender ProcessDirect sender channel address.
 		 */
-		createIssues(iflow);
-		storeChannelAddresses(iflow);
+		List<MatchingProcessDirectChannelsRequiredIssue> newIssues = createIssues(iflow);
+		Set<String> addresses = storeChannelAddresses(iflow);
+		/*
+		 * The contribution holds the receiver channels that the issues were
+		 * created for, and the sender channel addresses.
+		 */
+		JSONArray receiverChannels = new JSONArray();
+		for (MatchingProcessDirectChannelsRequiredIssue i : newIssues) {
+			receiverChannels.put(new JSONObject()
+				.put(CHANNEL_NAME_KEY, i.getChannelName())
+				.put(CHANNEL_ID_KEY, i.getChannelId())
+				.put(ADDRESS_KEY, i.getAddress()));
+		}
+		return new JSONObject()
+			.put(RECEIVER_CHANNELS_KEY, receiverChannels)
+			.put(SENDER_CHANNEL_ADDRESSES_KEY, new JSONArray(addresses));
+	}
+
+	@Override
+	public void addContribution(IflowArtifactTag tag, JSONObject contribution) {
+		JSONArray receiverChannels = contribution.getJSONArray(RECEIVER_CHANNELS_KEY);
+		for (int i = 0; i < receiverChannels.length(); i++) {
+			JSONObject c = receiverChannels.getJSONObject(i);
+			issues.add(new MatchingProcessDirectChannelsRequiredIssue(ruleId, tag, c.getString(CHANNEL_NAME_KEY), c.getString(CHANNEL_ID_KEY), c.getString(ADDRESS_KEY)));
+		}
+		JSONArray addresses = contribution.getJSONArray(SENDER_CHANNEL_ADDRESSES_KEY);
+		for (int i = 0; i < addresses.length(); i++) {
+			senderChannelAddresses.add(addresses.getString(i));
+		}
 	}
 
 	@Override
@@ -51,11 +95,11 @@ final class MatchingProcessDirectChannelsRequiredRule extends RuleBase {
 			.forEach(consumer::consume);
 	}
 	
-	private void createIssues(IflowArtifact iflow) {
+	private List<MatchingProcessDirectChannelsRequiredIssue> createIssues(IflowArtifact iflow) {
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
 		IflowArtifactTag tag = iflow.getTag();
-		String xquery = model.xqueryForProcessDirectReceiverChannels();
+		CompiledXquery xquery = model.compiledXqueryForProcessDirectReceiverChannels();
 		XdmValue result = iflowXml.executeXquery(xquery);
 		/*
 		 * The returned sequence must either be empty, or the number of
@@ -70,6 +114,7 @@ final class MatchingProcessDirectChannelsRequiredRule extends RuleBase {
 		 * Process the sequence elements three at a time, creating an issue
 		 * for each tuple.
 		 */
+		List<MatchingProcessDirectChannelsRequiredIssue> newIssues = new ArrayList<>();
 		Iterator<XdmItem> itemIterator = result.iterator();
 		while (itemIterator.hasNext()) {
 			String channelName = itemIterator.next().getStringValue();
@@ -83,22 +128,26 @@ final class MatchingProcessDirectChannelsRequiredRule extends RuleBase {
 				logger.debug("Skipping channel '{}' (ID '{}') because it is dynamically configured", channelName, channelId);
 				continue;
 			}
-			issues.add(new MatchingProcessDirectChannelsRequiredIssue(ruleId, tag, channelName, channelId, address));
+			newIssues.add(new MatchingProcessDirectChannelsRequiredIssue(ruleId, tag, channelName, channelId, address));
 		}
+		issues.addAll(newIssues);
+		return newIssues;
 	}
 	
-	private void storeChannelAddresses(IflowArtifact iflow) {
+	private Set<String> storeChannelAddresses(IflowArtifact iflow) {
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
-		String xquery = model.xqueryForProcessDirectSenderChannelAddresses();
+		CompiledXquery xquery = model.compiledXqueryForProcessDirectSenderChannelAddresses();
 		/*
 		 * The query returns a sequence of strings, each one a ProcessDirect
 		 * sender channel address. Add each address to the Set of addresses.
 		 */
-		senderChannelAddresses.addAll(iflowXml.executeXquery(xquery)
+		Set<String> addresses = iflowXml.executeXquery(xquery)
 			.stream()
 			.map(XdmItem::getStringValue)
-			.collect(Collectors.toSet()));
+			.collect(Collectors.toSet());
+		senderChannelAddresses.addAll(addresses);
+		return addresses;
 	}
 	
 	private static boolean containsSimpleExpression(String s) {
@@ -106,4 +155,14 @@ final class MatchingProcessDirectChannelsRequiredRule extends RuleBase {
 		return m.find();
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	public ArtifactRequirements getRequirements() {
+		return ArtifactRequirements.none().withIflowXml();
+	}
+
 }
@@ -1,6 +1,8 @@
 package org.cpilint.rules;
 
+import org.cpilint.CompiledXquery;
 import org.cpilint.IflowXml;
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.MultiConditionTypeRoutersNotAllowedIssue;
@@ -15,7 +17,7 @@ final class MultiConditionTypeRoutersNotAllowedRule extends RuleBase {
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
 		IflowArtifactTag tag = iflow.getTag();
-		String query = model.xqueryForMultiConditionTypeRouters();
+		CompiledXquery query = model.compiledXqueryForMultiConditionTypeRouters();
 		iflowXml.executeXquery(query)
 			.stream()
 			.map(XdmNode.class::cast)
@@ -23,4 +25,14 @@ final class MultiConditionTypeRoutersNotAllowedRule extends RuleBase {
 			.forEach(consumer::consume);
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	public ArtifactRequirements getRequirements() {
+		return ArtifactRequirements.none().withIflowXml();
+	}
+
 }
@@ -2,6 +2,7 @@ package org.cpilint.rules;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -17,6 +18,8 @@ import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.NamingConventionsRuleIssue;
 import org.cpilint.model.ChannelDirection;
 import org.cpilint.model.DataStoreOperation;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
 import org.cpilint.model.MappingType;
 import org.cpilint.model.Nameable;
 import org.cpilint.model.ReceiverAdapter;
@@ -25,109 +28,108 @@ import org.cpilint.model.SenderAdapter;
 import org.cpilint.model.XmlModel;
 import org.cpilint.model.XmlModelFactory;
 import org.cpilint.rules.naming.NamingScheme;
-import net.sf.saxon.s9api.XdmItem;
 import net.sf.saxon.s9api.XdmNode;
 
-final class NamingConventionsRule extends RuleBase {
+final class NamingConventionsRule extends VisitingRuleBase {
 	
-	private static final Map<Nameable, Function<XmlModel, String>> nameableToXpathFunctionMap;
+	private static final Map<Nameable, Function<XmlModel, IflowElementFilter>> nameableToFilterFunctionMap;
 	private static final Map<Nameable, BiFunction<XdmNode, XmlModel, String>> nameableToNameFunctionMap;
 	private static final Map<Nameable, BiFunction<XdmNode, XmlModel, String>> nameableToIdentFunctionMap;
 	private static final Logger logger = LoggerFactory.getLogger(NamingConventionsRule.class);
 	
 	static {
-		// Initialize the nameableToXpathFunctionMap map.
-		nameableToXpathFunctionMap = new HashMap<>();
-		nameableToXpathFunctionMap.put(Nameable.CHANNEL_NAME, m -> m.xpathForChannels());
-		nameableToXpathFunctionMap.put(Nameable.SENDER_CHANNEL_NAME, m -> m.xpathForChannels(m.channelPredicateForDirection(ChannelDirection.SENDER)));
-		nameableToXpathFunctionMap.put(Nameable.ADVANCEDEVENTMESH_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.ADVANCEDEVENTMESH));
-		nameableToXpathFunctionMap.put(Nameable.AMQP_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.AMQP));
-		nameableToXpathFunctionMap.put(Nameable.ARIBA_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.ARIBA));
-		nameableToXpathFunctionMap.put(Nameable.AS2_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.AS2));
-		nameableToXpathFunctionMap.put(Nameable.AS4_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.AS4));
-		nameableToXpathFunctionMap.put(Nameable.AZURESTORAGE_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.AZURESTORAGE));
-		nameableToXpathFunctionMap.put(Nameable.DATA_STORE_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.DATASTORE));
-		nameableToXpathFunctionMap.put(Nameable.DROPBOX_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.DROPBOX));
-		nameableToXpathFunctionMap.put(Nameable.FTP_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.FTP));
-		nameableToXpathFunctionMap.put(Nameable.HTTPS_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.HTTPS));
-		nameableToXpathFunctionMap.put(Nameable.IDOC_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.IDOC));
-		nameableToXpathFunctionMap.put(Nameable.JMS_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.JMS));
-		nameableToXpathFunctionMap.put(Nameable.KAFKA_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.KAFKA));
-		nameableToXpathFunctionMap.put(Nameable.MAIL_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.MAIL));
-		nameableToXpathFunctionMap.put(Nameable.MICROSOFT_SHAREPOINT_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.MICROSOFTSHAREPOINT));
-		nameableToXpathFunctionMap.put(Nameable.ODATA_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.ODATA));
-		nameableToXpathFunctionMap.put(Nameable.PROCESSDIRECT_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.PROCESSDIRECT));
-		nameableToXpathFunctionMap.put(Nameable.RABBITMQ_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.RABBITMQ));
-		nameableToXpathFunctionMap.put(Nameable.SFTP_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.SFTP));
-		nameableToXpathFunctionMap.put(Nameable.SLACK_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.SLACK));
-		nameableToXpathFunctionMap.put(Nameable.SMB_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.SMB));
-		nameableToXpathFunctionMap.put(Nameable.SOAP_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.SOAP));
-		nameableToXpathFunctionMap.put(Nameable.SPLUNK_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.SPLUNK));
-		nameableToXpathFunctionMap.put(Nameable.SUCCESSFACTORS_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.SUCCESSFACTORS));
-		nameableToXpathFunctionMap.put(Nameable.XI_SENDER_CHANNEL_NAME, m -> m.xpathForSenderChannels(SenderAdapter.XI));
-		nameableToXpathFunctionMap.put(Nameable.RECEIVER_CHANNEL_NAME, m -> m.xpathForChannels(m.channelPredicateForDirection(ChannelDirection.RECEIVER)));
-		nameableToXpathFunctionMap.put(Nameable.ADVANCEDEVENTMESH_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.ADVANCEDEVENTMESH));
-		nameableToXpathFunctionMap.put(Nameable.AMAZONDYNAMODB_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.AMAZONDYNAMODB));
-		nameableToXpathFunctionMap.put(Nameable.AMAZONEVENTBRIDGE_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.AMAZONEVENTBRIDGE));
-		nameableToXpathFunctionMap.put(Nameable.AMQP_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.AMQP));
-		nameableToXpathFunctionMap.put(Nameable.ANAPLAN_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.ANAPLAN));
-		nameableToXpathFunctionMap.put(Nameable.ARIBA_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.ARIBA));
-		nameableToXpathFunctionMap.put(Nameable.AS2_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.AS2));
-		nameableToXpathFunctionMap.put(Nameable.AS4_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.AS4));
-		nameableToXpathFunctionMap.put(Nameable.AZURESTORAGE_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.AZURESTORAGE));
-		nameableToXpathFunctionMap.put(Nameable.COUPA_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.COUPA));
-		nameableToXpathFunctionMap.put(Nameable.DROPBOX_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.DROPBOX));
-		nameableToXpathFunctionMap.put(Nameable.ELSTER_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.ELSTER));
-		nameableToXpathFunctionMap.put(Nameable.FACEBOOK_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.FACEBOOK));
-		nameableToXpathFunctionMap.put(Nameable.FTP_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.FTP));
-		nameableToXpathFunctionMap.put(Nameable.ODATA_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.ODATA));
-		nameableToXpathFunctionMap.put(Nameable.HTTP_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.HTTP));
-		nameableToXpathFunctionMap.put(Nameable.HUBSPOT_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.HUBSPOT));
-		nameableToXpathFunctionMap.put(Nameable.IDOC_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.IDOC));
-		nameableToXpathFunctionMap.put(Nameable.JDBC_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.JDBC));
-		nameableToXpathFunctionMap.put(Nameable.JIRA_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.JIRA));
-		nameableToXpathFunctionMap.put(Nameable.JMS_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.JMS));
-		nameableToXpathFunctionMap.put(Nameable.KAFKA_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.KAFKA));
-		nameableToXpathFunctionMap.put(Nameable.LDAP_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.LDAP));
-		nameableToXpathFunctionMap.put(Nameable.MAIL_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.MAIL));
-		nameableToXpathFunctionMap.put(Nameable.MDI_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.MDI));
-		nameableToXpathFunctionMap.put(Nameable.MICROSOFT_SHAREPOINT_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.MICROSOFTSHAREPOINT));
-		nameableToXpathFunctionMap.put(Nameable.NETSUITE_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.NETSUITE));
-		nameableToXpathFunctionMap.put(Nameable.ODC_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.ODC));
-		nameableToXpathFunctionMap.put(Nameable.OPENCONNECTORS_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.OPENCONNECTORS));
-		nameableToXpathFunctionMap.put(Nameable.PROCESSDIRECT_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.PROCESSDIRECT));
-		nameableToXpathFunctionMap.put(Nameable.RABBITMQ_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.RABBITMQ));
-		nameableToXpathFunctionMap.put(Nameable.RFC_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.RFC));
-		nameableToXpathFunctionMap.put(Nameable.SERVICENOW_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.SERVICENOW));
-		nameableToXpathFunctionMap.put(Nameable.SFTP_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.SFTP));
-		nameableToXpathFunctionMap.put(Nameable.SLACK_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.SLACK));
-		nameableToXpathFunctionMap.put(Nameable.SMB_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.SMB));
-		nameableToXpathFunctionMap.put(Nameable.SNOWFLAKE_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.SNOWFLAKE));
-		nameableToXpathFunctionMap.put(Nameable.SOAP_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.SOAP));
-		nameableToXpathFunctionMap.put(Nameable.SPLUNK_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.SPLUNK));
-		nameableToXpathFunctionMap.put(Nameable.SUCCESSFACTORS_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.SUCCESSFACTORS));
-		nameableToXpathFunctionMap.put(Nameable.SUGARCRM_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.SUGARCRM));
-		nameableToXpathFunctionMap.put(Nameable.TWITTER_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.TWITTER));
-		nameableToXpathFunctionMap.put(Nameable.WORKDAY_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.WORKDAY));
-		nameableToXpathFunctionMap.put(Nameable.XI_RECEIVER_CHANNEL_NAME, m -> m.xpathForReceiverChannels(ReceiverAdapter.XI));
-		nameableToXpathFunctionMap.put(Nameable.MAPPING_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForMappingSteps()));
-		nameableToXpathFunctionMap.put(Nameable.MESSAGE_MAPPING_STEP_NAME, m -> m.xpathForMappingSteps(MappingType.MESSAGE_MAPPING));
-		nameableToXpathFunctionMap.put(Nameable.XSLT_MAPPING_STEP_NAME, m -> m.xpathForMappingSteps(MappingType.XSLT_MAPPING));
-		nameableToXpathFunctionMap.put(Nameable.OPERATION_MAPPING_STEP_NAME, m -> m.xpathForMappingSteps(MappingType.OPERATION_MAPPING));
-		nameableToXpathFunctionMap.put(Nameable.SCRIPT_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForScriptSteps()));
-		nameableToXpathFunctionMap.put(Nameable.GROOVY_SCRIPT_STEP_NAME, m -> m.xpathForScriptSteps(ScriptingLanguage.GROOVY));
-		nameableToXpathFunctionMap.put(Nameable.JS_SCRIPT_STEP_NAME, m -> m.xpathForScriptSteps(ScriptingLanguage.JAVASCRIPT));
-		nameableToXpathFunctionMap.put(Nameable.SENDER_NAME, m -> m.xpathForSenderParticipants());
-		nameableToXpathFunctionMap.put(Nameable.RECEIVER_NAME, m -> m.xpathForReceiverParticipants());
-		nameableToXpathFunctionMap.put(Nameable.CONTENT_MODIFIER_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForContentModifierSteps()));
-		nameableToXpathFunctionMap.put(Nameable.FILTER_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForFilterSteps()));
-		nameableToXpathFunctionMap.put(Nameable.XML_VALIDATOR_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForXmlValidatorSteps()));
-		nameableToXpathFunctionMap.put(Nameable.EDI_VALIDATOR_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForEdiValidatorSteps()));
-		nameableToXpathFunctionMap.put(Nameable.DATA_STORE_OPERATIONS_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForDataStoreSteps()));
-		nameableToXpathFunctionMap.put(Nameable.GET_DATA_STORE_OPERATIONS_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForDataStoreSteps(), m.stepPredicateForDataStoreOperation(DataStoreOperation.GET)));
-		nameableToXpathFunctionMap.put(Nameable.SELECT_DATA_STORE_OPERATIONS_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForDataStoreSteps(), m.stepPredicateForDataStoreOperation(DataStoreOperation.SELECT)));
-		nameableToXpathFunctionMap.put(Nameable.DELETE_DATA_STORE_OPERATIONS_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForDataStoreSteps(), m.stepPredicateForDataStoreOperation(DataStoreOperation.DELETE)));
-		nameableToXpathFunctionMap.put(Nameable.WRITE_DATA_STORE_OPERATIONS_STEP_NAME, m -> m.xpathForFlowSteps(m.stepPredicateForDataStoreSteps(), m.stepPredicateForDataStoreOperation(DataStoreOperation.WRITE)));
+		// Initialize the nameableToFilterFunctionMap map.
+		nameableToFilterFunctionMap = new HashMap<>();
+		nameableToFilterFunctionMap.put(Nameable.CHANNEL_NAME, m -> m.filterForChannels());
+		nameableToFilterFunctionMap.put(Nameable.SENDER_CHANNEL_NAME, m -> m.filterForChannels(m.channelFilterForDirection(ChannelDirection.SENDER)));
+		nameableToFilterFunctionMap.put(Nameable.ADVANCEDEVENTMESH_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.ADVANCEDEVENTMESH));
+		nameableToFilterFunctionMap.put(Nameable.AMQP_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.AMQP));
+		nameableToFilterFunctionMap.put(Nameable.ARIBA_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.ARIBA));
+		nameableToFilterFunctionMap.put(Nameable.AS2_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.AS2));
+		nameableToFilterFunctionMap.put(Nameable.AS4_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.AS4));
+		nameableToFilterFunctionMap.put(Nameable.AZURESTORAGE_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.AZURESTORAGE));
+		nameableToFilterFunctionMap.put(Nameable.DATA_STORE_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.DATASTORE));
+		nameableToFilterFunctionMap.put(Nameable.DROPBOX_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.DROPBOX));
+		nameableToFilterFunctionMap.put(Nameable.FTP_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.FTP));
+		nameableToFilterFunctionMap.put(Nameable.HTTPS_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.HTTPS));
+		nameableToFilterFunctionMap.put(Nameable.IDOC_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.IDOC));
+		nameableToFilterFunctionMap.put(Nameable.JMS_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.JMS));
+		nameableToFilterFunctionMap.put(Nameable.KAFKA_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.KAFKA));
+		nameableToFilterFunctionMap.put(Nameable.MAIL_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.MAIL));
+		nameableToFilterFunctionMap.put(Nameable.MICROSOFT_SHAREPOINT_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.MICROSOFTSHAREPOINT));
+		nameableToFilterFunctionMap.put(Nameable.ODATA_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.ODATA));
+		nameableToFilterFunctionMap.put(Nameable.PROCESSDIRECT_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.PROCESSDIRECT));
+		nameableToFilterFunctionMap.put(Nameable.RABBITMQ_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.RABBITMQ));
+		nameableToFilterFunctionMap.put(Nameable.SFTP_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.SFTP));
+		nameableToFilterFunctionMap.put(Nameable.SLACK_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.SLACK));
+		nameableToFilterFunctionMap.put(Nameable.SMB_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.SMB));
+		nameableToFilterFunctionMap.put(Nameable.SOAP_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.SOAP));
+		nameableToFilterFunctionMap.put(Nameable.SPLUNK_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.SPLUNK));
+		nameableToFilterFunctionMap.put(Nameable.SUCCESSFACTORS_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.SUCCESSFACTORS));
+		nameableToFilterFunctionMap.put(Nameable.XI_SENDER_CHANNEL_NAME, m -> m.filterForSenderChannels(SenderAdapter.XI));
+		nameableToFilterFunctionMap.put(Nameable.RECEIVER_CHANNEL_NAME, m -> m.filterForChannels(m.channelFilterForDirection(ChannelDirection.RECEIVER)));
+		nameableToFilterFunctionMap.put(Nameable.ADVANCEDEVENTMESH_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.ADVANCEDEVENTMESH));
+		nameableToFilterFunctionMap.put(Nameable.AMAZONDYNAMODB_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.AMAZONDYNAMODB));
+		nameableToFilterFunctionMap.put(Nameable.AMAZONEVENTBRIDGE_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.AMAZONEVENTBRIDGE));
+		nameableToFilterFunctionMap.put(Nameable.AMQP_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.AMQP));
+		nameableToFilterFunctionMap.put(Nameable.ANAPLAN_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.ANAPLAN));
+		nameableToFilterFunctionMap.put(Nameable.ARIBA_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.ARIBA));
+		nameableToFilterFunctionMap.put(Nameable.AS2_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.AS2));
+		nameableToFilterFunctionMap.put(Nameable.AS4_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.AS4));
+		nameableToFilterFunctionMap.put(Nameable.AZURESTORAGE_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.AZURESTORAGE));
+		nameableToFilterFunctionMap.put(Nameable.COUPA_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.COUPA));
+		nameableToFilterFunctionMap.put(Nameable.DROPBOX_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.DROPBOX));
+		nameableToFilterFunctionMap.put(Nameable.ELSTER_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.ELSTER));
+		nameableToFilterFunctionMap.put(Nameable.FACEBOOK_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.FACEBOOK));
+		nameableToFilterFunctionMap.put(Nameable.FTP_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.FTP));
+		nameableToFilterFunctionMap.put(Nameable.ODATA_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.ODATA));
+		nameableToFilterFunctionMap.put(Nameable.HTTP_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.HTTP));
+		nameableToFilterFunctionMap.put(Nameable.HUBSPOT_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.HUBSPOT));
+		nameableToFilterFunctionMap.put(Nameable.IDOC_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.IDOC));
+		nameableToFilterFunctionMap.put(Nameable.JDBC_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.JDBC));
+		nameableToFilterFunctionMap.put(Nameable.JIRA_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.JIRA));
+		nameableToFilterFunctionMap.put(Nameable.JMS_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.JMS));
+		nameableToFilterFunctionMap.put(Nameable.KAFKA_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.KAFKA));
+		nameableToFilterFunctionMap.put(Nameable.LDAP_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.LDAP));
+		nameableToFilterFunctionMap.put(Nameable.MAIL_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.MAIL));
+		nameableToFilterFunctionMap.put(Nameable.MDI_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.MDI));
+		nameableToFilterFunctionMap.put(Nameable.MICROSOFT_SHAREPOINT_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.MICROSOFTSHAREPOINT));
+		nameableToFilterFunctionMap.put(Nameable.NETSUITE_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.NETSUITE));
+		nameableToFilterFunctionMap.put(Nameable.ODC_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.ODC));
+		nameableToFilterFunctionMap.put(Nameable.OPENCONNECTORS_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.OPENCONNECTORS));
+		nameableToFilterFunctionMap.put(Nameable.PROCESSDIRECT_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.PROCESSDIRECT));
+		nameableToFilterFunctionMap.put(Nameable.RABBITMQ_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.RABBITMQ));
+		nameableToFilterFunctionMap.put(Nameable.RFC_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.RFC));
+		nameableToFilterFunctionMap.put(Nameable.SERVICENOW_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.SERVICENOW));
+		nameableToFilterFunctionMap.put(Nameable.SFTP_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.SFTP));
+		nameableToFilterFunctionMap.put(Nameable.SLACK_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.SLACK));
+		nameableToFilterFunctionMap.put(Nameable.SMB_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.SMB));
+		nameableToFilterFunctionMap.put(Nameable.SNOWFLAKE_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.SNOWFLAKE));
+		nameableToFilterFunctionMap.put(Nameable.SOAP_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.SOAP));
+		nameableToFilterFunctionMap.put(Nameable.SPLUNK_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.SPLUNK));
+		nameableToFilterFunctionMap.put(Nameable.SUCCESSFACTORS_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.SUCCESSFACTORS));
+		nameableToFilterFunctionMap.put(Nameable.SUGARCRM_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.SUGARCRM));
+		nameableToFilterFunctionMap.put(Nameable.TWITTER_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.TWITTER));
+		nameableToFilterFunctionMap.put(Nameable.WORKDAY_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.WORKDAY));
+		nameableToFilterFunctionMap.put(Nameable.XI_RECEIVER_CHANNEL_NAME, m -> m.filterForReceiverChannels(ReceiverAdapter.XI));
+		nameableToFilterFunctionMap.put(Nameable.MAPPING_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForMappingSteps()));
+		nameableToFilterFunctionMap.put(Nameable.MESSAGE_MAPPING_STEP_NAME, m -> m.filterForMappingSteps(MappingType.MESSAGE_MAPPING));
+		nameableToFilterFunctionMap.put(Nameable.XSLT_MAPPING_STEP_NAME, m -> m.filterForMappingSteps(MappingType.XSLT_MAPPING));
+		nameableToFilterFunctionMap.put(Nameable.OPERATION_MAPPING_STEP_NAME, m -> m.filterForMappingSteps(MappingType.OPERATION_MAPPING));
+		nameableToFilterFunctionMap.put(Nameable.SCRIPT_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForScriptSteps()));
+		nameableToFilterFunctionMap.put(Nameable.GROOVY_SCRIPT_STEP_NAME, m -> m.filterForScriptSteps(ScriptingLanguage.GROOVY));
+		nameableToFilterFunctionMap.put(Nameable.JS_SCRIPT_STEP_NAME, m -> m.filterForScriptSteps(ScriptingLanguage.JAVASCRIPT));
+		nameableToFilterFunctionMap.put(Nameable.SENDER_NAME, m -> m.filterForSenderParticipants());
+		nameableToFilterFunctionMap.put(Nameable.RECEIVER_NAME, m -> m.filterForReceiverParticipants());
+		nameableToFilterFunctionMap.put(Nameable.CONTENT_MODIFIER_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForContentModifierSteps()));
+		nameableToFilterFunctionMap.put(Nameable.FILTER_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForFilterSteps()));
+		nameableToFilterFunctionMap.put(Nameable.XML_VALIDATOR_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForXmlValidatorSteps()));
+		nameableToFilterFunctionMap.put(Nameable.EDI_VALIDATOR_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForEdiValidatorSteps()));
+		nameableToFilterFunctionMap.put(Nameable.DATA_STORE_OPERATIONS_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForDataStoreSteps()));
+		nameableToFilterFunctionMap.put(Nameable.GET_DATA_STORE_OPERATIONS_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForDataStoreSteps(), m.stepFilterForDataStoreOperation(DataStoreOperation.GET)));
+		nameableToFilterFunctionMap.put(Nameable.SELECT_DATA_STORE_OPERATIONS_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForDataStoreSteps(), m.stepFilterForDataStoreOperation(DataStoreOperation.SELECT)));
+		nameableToFilterFunctionMap.put(Nameable.DELETE_DATA_STORE_OPERATIONS_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForDataStoreSteps(), m.stepFilterForDataStoreOperation(DataStoreOperation.DELETE)));
+		nameableToFilterFunctionMap.put(Nameable.WRITE_DATA_STORE_OPERATIONS_STEP_NAME, m -> m.filterForFlowSteps(m.stepFilterForDataStoreSteps(), m.stepFilterForDataStoreOperation(DataStoreOperation.WRITE)));
 		// Initialize the nameableToNameFunctionMap map.
 		nameableToNameFunctionMap = new HashMap<>();
 		nameableToNameFunctionMap.put(Nameable.CHANNEL_NAME, (n, m) -> m.getChannelNameFromElement(n));
@@ -313,7 +315,7 @@ final class NamingConventionsRule extends RuleBase {
 		nameableToIdentFunctionMap.put(Nameable.DELETE_DATA_STORE_OPERATIONS_STEP_NAME, (n, m) -> String.format("Delete Data Store Operations step '%s' (ID '%s')", m.getStepNameFromElement(n), m.getStepIdFromElement(n)));
 		nameableToIdentFunctionMap.put(Nameable.WRITE_DATA_STORE_OPERATIONS_STEP_NAME, (n, m) -> String.format("Write Data Store Operations step '%s' (ID '%s')", m.getStepNameFromElement(n), m.getStepIdFromElement(n)));
 		// The keys of the above maps should be identical.
-		assert nameableToXpathFunctionMap.keySet().equals(nameableToNameFunctionMap.keySet());
+		assert nameableToFilterFunctionMap.keySet().equals(nameableToNameFunctionMap.keySet());
 		assert nameableToNameFunctionMap.keySet().equals(nameableToIdentFunctionMap.keySet());
 	}
 	
@@ -344,52 +346,100 @@ final class NamingConventionsRule extends RuleBase {
 
 	@Override
 	public void inspect(IflowArtifact iflow) {
+		/*
+		 * Outside a single pass, check one Nameable at a time, each in
+		 * document order, so that issues are reported in the same order as
+		 * when every Nameable was checked with its own XPath expression.
+		 */
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
 		IflowArtifactTag tag = iflow.getTag();
+		List<IflowElement> elements = iflowXml.getElementIndex().getElements();
 		for (Nameable n : applyTo) {
-			/*
-			 *  Iflow name and ID are special cases, since they're the only
-			 *  ones that are not extracted with XPath from the iflow XML.
-			 */
-			if (n == Nameable.IFLOW_NAME) {
-				String iflowName = tag.getName();
-				logger.debug("Checking {} name '{}'", n, iflowName);
-				if (!scheme.test(iflowName)) {
-					logger.debug("Name is not compliant ('{}')", message);
-					consumer.consume(new NamingConventionsRuleIssue(ruleId, tag, errorMessage("iflow name"), iflowName));
-				}
+			if (n == Nameable.IFLOW_NAME || n == Nameable.IFLOW_ID) {
+				checkIflowNameOrId(n, tag);
 				continue;
 			}
-			if (n == Nameable.IFLOW_ID) {
-				String iflowId = tag.getId();
-				logger.debug("Checking {} name '{}'", n, iflowId);
-				if (!scheme.test(iflowId)) {
-					logger.debug("Name is not compliant ('{}')", message);
-					consumer.consume(new NamingConventionsRuleIssue(ruleId, tag, errorMessage("iflow ID"), iflowId));
+			IflowElementFilter filter = filterFor(n, model);
+			for (IflowElement element : elements) {
+				if (filter.test(element)) {
+					checkElementName(n, element, model, tag);
 				}
+			}
+		}
+	}
+
+	@Override
+	public IflowElementVisitor visitorFor(IflowArtifact iflow) {
+		IflowXml iflowXml = iflow.getIflowXml();
+		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
+		IflowArtifactTag tag = iflow.getTag();
+		/*
+		 *  Iflow name and ID are special cases, since they're the only
+		 *  ones that are not classified elements of the iflow XML. They
+		 *  are checked once all elements have been visited.
+		 */
+		Map<Nameable, IflowElementFilter> filters = new HashMap<>();
+		for (Nameable n : applyTo) {
+			if (n == Nameable.IFLOW_NAME || n == Nameable.IFLOW_ID) {
 				continue;
 			}
-			/*
-			 * Since we've already asserted that the keys of the three maps are
-			 * identical, we only need to assert that the current Nameable
-			 * is a key in one of them. Since we got this far, the current
-			 * Nameable is not the iflow name or ID.
-			 */
-			assert nameableToXpathFunctionMap.containsKey(n);
-			String xpath = nameableToXpathFunctionMap.get(n).apply(model);
-			for (XdmItem i : iflowXml.evaluateXpath(xpath)) {
-				assert i.isNode();
-				XdmNode node = (XdmNode)i;
-				String name = nameableToNameFunctionMap.get(n).apply(node, model);
-				logger.debug("Checking {} name '{}'", n, name);
-				if (!scheme.test(name)) {
-					// This name does not follow the naming scheme.
-					logger.debug("Name is not compliant ('{}')", message);
-					String ident = nameableToIdentFunctionMap.get(n).apply(node, model);
-					consumer.consume(new NamingConventionsRuleIssue(ruleId, tag, errorMessage(ident), name));
+			filters.put(n, filterFor(n, model));
+		}
+		return new IflowElementVisitor() {
+
+			@Override
+			public void visit(IflowElement element) {
+				filters.forEach((n, filter) -> {
+					if (filter.test(element)) {
+						checkElementName(n, element, model, tag);
+					}
+				});
+			}
+
+			@Override
+			public void endVisit() {
+				if (applyTo.contains(Nameable.IFLOW_NAME)) {
+					checkIflowNameOrId(Nameable.IFLOW_NAME, tag);
+				}
+				if (applyTo.contains(Nameable.IFLOW_ID)) {
+					checkIflowNameOrId(Nameable.IFLOW_ID, tag);
 				}
 			}
+
+		};
+	}
+
+	private static IflowElementFilter filterFor(Nameable n, XmlModel model) {
+		/*
+		 * Since we've already asserted that the keys of the three maps are
+		 * identical, we only need to assert that the current Nameable
+		 * is a key in one of them.
+		 */
+		assert nameableToFilterFunctionMap.containsKey(n);
+		return nameableToFilterFunctionMap.get(n).apply(model);
+	}
+
+	private void checkElementName(Nameable n, IflowElement element, XmlModel model, IflowArtifactTag tag) {
+		XdmNode node = element.getNode();
+		String name = nameableToNameFunctionMap.get(n).apply(node, model);
+		logger.debug("Checking {} name '{}'", n, name);
+		if (!scheme.test(name)) {
+			// This name does not follow the naming scheme.
+			logger.debug("Name is not compliant ('{}')", message);
+			String ident = nameableToIdentFunctionMap.get(n).apply(node, model);
+			consumer.consume(new NamingConventionsRuleIssue(ruleId, tag, errorMessage(ident), name));
+		}
+	}
+
+	private void checkIflowNameOrId(Nameable n, IflowArtifactTag tag) {
+		assert n == Nameable.IFLOW_NAME || n == Nameable.IFLOW_ID;
+		boolean isName = n == Nameable.IFLOW_NAME;
+		String value = isName ? tag.getName() : tag.getId();
+		logger.debug("Checking {} name '{}'", n, value);
+		if (!scheme.test(value)) {
+			logger.debug("Name is not compliant ('{}')", message);
+			consumer.consume(new NamingConventionsRuleIssue(ruleId, tag, errorMessage(isName ? "iflow name" : "iflow ID"), value));
 		}
 	}
 	
@@ -397,4 +447,9 @@ final class NamingConventionsRule extends RuleBase {
 		return String.format("The %s does not follow the naming scheme: %s", ident, message);
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 }
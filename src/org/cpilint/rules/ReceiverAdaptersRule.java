@@ -1,6 +1,7 @@
 package org.cpilint.rules;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -9,12 +10,14 @@ import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.DisallowedReceiverAdapterIssue;
 import org.cpilint.issues.Issue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
+import org.cpilint.model.IflowElementIndex;
 import org.cpilint.model.ReceiverAdapter;
 import org.cpilint.model.XmlModel;
 import org.cpilint.model.XmlModelFactory;
-import net.sf.saxon.s9api.XdmNode;
 
-final class ReceiverAdaptersRule extends RuleBase {
+final class ReceiverAdaptersRule extends VisitingRuleBase {
 	
 	private final boolean allowed;
 	private final Set<ReceiverAdapter> adapters;
@@ -26,14 +29,34 @@ final class ReceiverAdaptersRule extends RuleBase {
 
 	@Override
 	public void inspect(IflowArtifact iflow) {
+		// Outside of a single pass, look up the channels of each disallowed adapter in the element index.
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
-		IflowArtifactTag tag = iflow.getTag();
+		IflowElementIndex index = iflowXml.getElementIndex();
+		Function<ReceiverAdapter, List<IflowElement>> lookupFunction = a -> model.lookupReceiverChannels(index, a);
+		VisitingRulesUtil.lookupAndConsumeIssues(disallowedAdapters(), lookupFunction, issueFunctionFunction(iflow, model), consumer::consume);
+	}
+
+	@Override
+	public IflowElementVisitor visitorFor(IflowArtifact iflow) {
+		XmlModel model = XmlModelFactory.getModelFor(iflow.getIflowXml());
+		Function<ReceiverAdapter, IflowElementFilter> filterFunction = a -> model.filterForReceiverChannels(a);
+		return VisitingRulesUtil.visitorForMultipleFilters(disallowedAdapters(), filterFunction, issueFunctionFunction(iflow, model), consumer::consume);
+	}
+
+	private Set<ReceiverAdapter> disallowedAdapters() {
 		// We are only checking for the receiver adapters that are _not_ allowed.
-		Set<ReceiverAdapter> disallowedAdapters = allowed ? ReceiverAdapter.allValuesExcept(adapters) : adapters;
-		Function<ReceiverAdapter, String> xpathFunction = a -> model.xpathForReceiverChannels(a);
-		Function<ReceiverAdapter, Function<XdmNode, Issue>> issueFunctionFunction = a -> n -> new DisallowedReceiverAdapterIssue(ruleId, tag, a, model.getChannelNameFromElement(n), model.getChannelIdFromElement(n));
-		XpathRulesUtil.iterateMultipleXpathsAndConsumeIssues(iflowXml, disallowedAdapters, xpathFunction, issueFunctionFunction, consumer::consume);
+		return allowed ? ReceiverAdapter.allValuesExcept(adapters) : adapters;
+	}
+
+	private Function<ReceiverAdapter, Function<IflowElement, Issue>> issueFunctionFunction(IflowArtifact iflow, XmlModel model) {
+		IflowArtifactTag tag = iflow.getTag();
+		return a -> e -> new DisallowedReceiverAdapterIssue(ruleId, tag, a, model.getChannelNameFromElement(e.getNode()), model.getChannelIdFromElement(e.getNode()));
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
 	}
 
 }
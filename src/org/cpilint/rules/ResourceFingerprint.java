@@ -0,0 +1,81 @@
+package org.cpilint.rules;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+record ResourceFingerprint(long h1, long h2) {
+
+	/*
+	 * A 128-bit fingerprint of a resource's contents: their MurmurHash3
+	 * (x64 variant, seed 0). MurmurHash3 is not a cryptographic hash, but
+	 * it is several times faster than SHA-256. It is used to tell apart
+	 * resources of the same size cheaply, before the ones that share a
+	 * fingerprint are compared by SHA-256. The contents are hashed where
+	 * they are, so nothing is allocated but the fingerprint itself.
+	 */
+
+	private static final int BLOCK_SIZE = 16;
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	static ResourceFingerprint of(ByteBuffer contents) {
+		// The remaining bytes of the buffer are hashed; its position is not changed.
+		ByteBuffer buffer = contents.slice().order(ByteOrder.LITTLE_ENDIAN);
+		int length = buffer.remaining();
+		int blocksEnd = length - length % BLOCK_SIZE;
+		long h1 = 0;
+		long h2 = 0;
+		for (int i = 0; i < blocksEnd; i += BLOCK_SIZE) {
+			h1 ^= mixK1(buffer.getLong(i));
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+			h2 ^= mixK2(buffer.getLong(i + Long.BYTES));
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+		// The final, partial block.
+		long k1 = 0;
+		long k2 = 0;
+		for (int i = length - 1; i >= blocksEnd + Long.BYTES; i--) {
+			k2 = (k2 << 8) | (buffer.get(i) & 0xff);
+		}
+		for (int i = Math.min(length, blocksEnd + Long.BYTES) - 1; i >= blocksEnd; i--) {
+			k1 = (k1 << 8) | (buffer.get(i) & 0xff);
+		}
+		h2 ^= mixK2(k2);
+		h1 ^= mixK1(k1);
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix(h1);
+		h2 = fmix(h2);
+		h1 += h2;
+		h2 += h1;
+		return new ResourceFingerprint(h1, h2);
+	}
+
+	private static long mixK1(long k1) {
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		return k1 * C2;
+	}
+
+	private static long mixK2(long k2) {
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		return k2 * C1;
+	}
+
+	private static long fmix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+}
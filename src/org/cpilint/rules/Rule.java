@@ -2,6 +2,7 @@ package org.cpilint.rules;
 
 import java.util.Optional;
 
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.consumers.IssueConsumer;
 
@@ -17,4 +18,27 @@ public interface Rule {
 
 	public Optional<String> getId();
 
+	/*
+	 * CpiLint may inspect several iflow artifacts at the same time. The
+	 * startTesting and endTesting methods are always called from a single
+	 * thread, but a rule that returns true here must also allow inspect to
+	 * be called concurrently from multiple threads (each call with its own
+	 * iflow artifact). Calls to inspect on a rule that returns false are
+	 * serialized by CpiLint.
+	 */
+	public default boolean isThreadSafe() {
+		return false;
+	}
+
+	/*
+	 * Declares what this rule needs from each iflow artifact. CpiLint
+	 * combines the requirements of all rules and passes them on to the
+	 * supplier, so that nothing is extracted or parsed that no rule needs.
+	 * A rule must not access anything it has not declared. The default is
+	 * to require everything.
+	 */
+	public default ArtifactRequirements getRequirements() {
+		return ArtifactRequirements.all();
+	}
+
 }
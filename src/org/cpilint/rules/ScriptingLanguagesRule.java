@@ -1,6 +1,7 @@
 package org.cpilint.rules;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -9,12 +10,14 @@ import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.DisallowedScriptingLanguageIssue;
 import org.cpilint.issues.Issue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
+import org.cpilint.model.IflowElementIndex;
 import org.cpilint.model.ScriptingLanguage;
 import org.cpilint.model.XmlModel;
 import org.cpilint.model.XmlModelFactory;
-import net.sf.saxon.s9api.XdmNode;
 
-final class ScriptingLanguagesRule extends RuleBase {
+final class ScriptingLanguagesRule extends VisitingRuleBase {
 	
 	private final boolean allowed;
 	private final Set<ScriptingLanguage> scriptingLanguages;
@@ -26,14 +29,34 @@ final class ScriptingLanguagesRule extends RuleBase {
 	
 	@Override
 	public void inspect(IflowArtifact iflow) {
+		// Outside of a single pass, look up the steps of each disallowed scripting language in the element index.
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
-		IflowArtifactTag tag = iflow.getTag();
+		IflowElementIndex index = iflowXml.getElementIndex();
+		Function<ScriptingLanguage, List<IflowElement>> lookupFunction = l -> model.lookupScriptSteps(index, l);
+		VisitingRulesUtil.lookupAndConsumeIssues(disallowedLanguages(), lookupFunction, issueFunctionFunction(iflow, model), consumer::consume);
+	}
+
+	@Override
+	public IflowElementVisitor visitorFor(IflowArtifact iflow) {
+		XmlModel model = XmlModelFactory.getModelFor(iflow.getIflowXml());
+		Function<ScriptingLanguage, IflowElementFilter> filterFunction = l -> model.filterForScriptSteps(l);
+		return VisitingRulesUtil.visitorForMultipleFilters(disallowedLanguages(), filterFunction, issueFunctionFunction(iflow, model), consumer::consume);
+	}
+
+	private Set<ScriptingLanguage> disallowedLanguages() {
 		// We are only checking for the scripting languages that are _not_ allowed.
-		Set<ScriptingLanguage> disallowedLanguages = allowed ? ScriptingLanguage.allValuesExcept(scriptingLanguages) : scriptingLanguages;
-		Function<ScriptingLanguage, String> xpathFunction = l -> model.xpathForScriptSteps(l);
-		Function<ScriptingLanguage, Function<XdmNode, Issue>> issueFunctionFunction = l -> n -> new DisallowedScriptingLanguageIssue(ruleId, tag, model.getStepNameFromElement(n), model.getStepIdFromElement(n), l);
-		XpathRulesUtil.iterateMultipleXpathsAndConsumeIssues(iflowXml, disallowedLanguages, xpathFunction, issueFunctionFunction, consumer::consume);
+		return allowed ? ScriptingLanguage.allValuesExcept(scriptingLanguages) : scriptingLanguages;
+	}
+
+	private Function<ScriptingLanguage, Function<IflowElement, Issue>> issueFunctionFunction(IflowArtifact iflow, XmlModel model) {
+		IflowArtifactTag tag = iflow.getTag();
+		return l -> e -> new DisallowedScriptingLanguageIssue(ruleId, tag, model.getStepNameFromElement(e.getNode()), model.getStepIdFromElement(e.getNode()), l);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
 	}
 
 }
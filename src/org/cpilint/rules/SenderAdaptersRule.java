@@ -1,6 +1,7 @@
 package org.cpilint.rules;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -9,12 +10,14 @@ import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.DisallowedSenderAdapterIssue;
 import org.cpilint.issues.Issue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
+import org.cpilint.model.IflowElementIndex;
 import org.cpilint.model.SenderAdapter;
 import org.cpilint.model.XmlModel;
 import org.cpilint.model.XmlModelFactory;
-import net.sf.saxon.s9api.XdmNode;
 
-final class SenderAdaptersRule extends RuleBase {
+final class SenderAdaptersRule extends VisitingRuleBase {
 	
 	private final boolean allowed;
 	private final Set<SenderAdapter> adapters;
@@ -28,14 +31,34 @@ final class SenderAdaptersRule extends RuleBase {
 
 	@Override
 	public void inspect(IflowArtifact iflow) {
+		// Outside of a single pass, look up the channels of each disallowed adapter in the element index.
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
-		IflowArtifactTag tag = iflow.getTag();
+		IflowElementIndex index = iflowXml.getElementIndex();
+		Function<SenderAdapter, List<IflowElement>> lookupFunction = a -> model.lookupSenderChannels(index, a);
+		VisitingRulesUtil.lookupAndConsumeIssues(disallowedAdapters(), lookupFunction, issueFunctionFunction(iflow, model), consumer::consume);
+	}
+
+	@Override
+	public IflowElementVisitor visitorFor(IflowArtifact iflow) {
+		XmlModel model = XmlModelFactory.getModelFor(iflow.getIflowXml());
+		Function<SenderAdapter, IflowElementFilter> filterFunction = a -> model.filterForSenderChannels(a);
+		return VisitingRulesUtil.visitorForMultipleFilters(disallowedAdapters(), filterFunction, issueFunctionFunction(iflow, model), consumer::consume);
+	}
+
+	private Set<SenderAdapter> disallowedAdapters() {
 		// We are only checking for the sender adapters that are _not_ allowed.
-		Set<SenderAdapter> disallowedAdapters = allowed ? SenderAdapter.allValuesExcept(adapters) : adapters;
-		Function<SenderAdapter, String> xpathFunction = a -> model.xpathForSenderChannels(a);
-		Function<SenderAdapter, Function<XdmNode, Issue>> issueFunctionFunction = a -> n -> new DisallowedSenderAdapterIssue(ruleId, tag, model.getChannelNameFromElement(n), model.getChannelIdFromElement(n), a);
-		XpathRulesUtil.iterateMultipleXpathsAndConsumeIssues(iflowXml, disallowedAdapters, xpathFunction, issueFunctionFunction, consumer::consume);
+		return allowed ? SenderAdapter.allValuesExcept(adapters) : adapters;
 	}
-	
+
+	private Function<SenderAdapter, Function<IflowElement, Issue>> issueFunctionFunction(IflowArtifact iflow, XmlModel model) {
+		IflowArtifactTag tag = iflow.getTag();
+		return a -> e -> new DisallowedSenderAdapterIssue(ruleId, tag, model.getChannelNameFromElement(e.getNode()), model.getChannelIdFromElement(e.getNode()), a);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 }
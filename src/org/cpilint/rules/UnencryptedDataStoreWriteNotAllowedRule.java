@@ -7,24 +7,30 @@ import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.Issue;
 import org.cpilint.issues.UnencryptedDataStoreWriteNotAllowedIssue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
 import org.cpilint.model.DataStoreOperation;
 import org.cpilint.model.XmlModel;
 import org.cpilint.model.XmlModelFactory;
-import net.sf.saxon.s9api.XdmNode;
 
-final class UnencryptedDataStoreWriteNotAllowedRule extends RuleBase {
+final class UnencryptedDataStoreWriteNotAllowedRule extends VisitingRuleBase {
 	
 	@Override
-	public void inspect(IflowArtifact iflow) {
+	public IflowElementVisitor visitorFor(IflowArtifact iflow) {
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
 		IflowArtifactTag tag = iflow.getTag();
-		String unencryptedWriteXpath = model.xpathForFlowSteps(
-			model.stepPredicateForDataStoreSteps(),
-			model.stepPredicateForDataStoreOperation(DataStoreOperation.WRITE),
-			model.stepPredicateForUnencryptedWrite());
-		Function<XdmNode, Issue> issueFunction = n -> new UnencryptedDataStoreWriteNotAllowedIssue(ruleId, tag, model.getStepNameFromElement(n), model.getStepIdFromElement(n));
-		XpathRulesUtil.iterateSingleXpathAndConsumeIssues(iflowXml, unencryptedWriteXpath, issueFunction, consumer::consume);
+		IflowElementFilter unencryptedWriteFilter = model.filterForFlowSteps(
+			model.stepFilterForDataStoreSteps(),
+			model.stepFilterForDataStoreOperation(DataStoreOperation.WRITE),
+			model.stepFilterForUnencryptedWrite());
+		Function<IflowElement, Issue> issueFunction = e -> new UnencryptedDataStoreWriteNotAllowedIssue(ruleId, tag, model.getStepNameFromElement(e.getNode()), model.getStepIdFromElement(e.getNode()));
+		return VisitingRulesUtil.visitorForSingleFilter(unencryptedWriteFilter, issueFunction, consumer::consume);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
 	}
 
 }
@@ -8,12 +8,13 @@ import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.issues.Issue;
 import org.cpilint.issues.UnencryptedEndpointsNotAllowedIssue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
 import org.cpilint.model.ReceiverAdapter;
 import org.cpilint.model.XmlModel;
 import org.cpilint.model.XmlModelFactory;
-import net.sf.saxon.s9api.XdmNode;
 
-final class UnencryptedEndpointsNotAllowedRule extends RuleBase {
+final class UnencryptedEndpointsNotAllowedRule extends VisitingRuleBase {
 	
 	private static final Set<ReceiverAdapter> receiverAdaptersOfInterest = Set.of(
 		ReceiverAdapter.AS4,
@@ -31,19 +32,23 @@ final class UnencryptedEndpointsNotAllowedRule extends RuleBase {
 	);
 
 	@Override
-	public void inspect(IflowArtifact iflow) {
+	public IflowElementVisitor visitorFor(IflowArtifact iflow) {
 		// TODO: This currently only handles receiver adapters. However, since the IBMMQ sender adapter polls an HTTP endpoint, this rule also needs to check sender adapters.
 		IflowXml iflowXml = iflow.getIflowXml();
 		XmlModel model = XmlModelFactory.getModelFor(iflowXml);
 		IflowArtifactTag tag = iflow.getTag();
-		Function<ReceiverAdapter, String> xpathFunction = a -> model.xpathForReceiverChannels(a, model.channelPredicateForHttpEndpoints(a), XpathRulesUtil.negateXpathPredicate(model.channelPredicateForProxyTypeOnPremise(a)));
-		Function<ReceiverAdapter, Function<XdmNode, Issue>> issueFunctionFunction = a -> n -> new UnencryptedEndpointsNotAllowedIssue(ruleId, tag, a, model.getChannelNameFromElement(n), model.getChannelIdFromElement(n));
-		XpathRulesUtil.iterateMultipleXpathsAndConsumeIssues(
-			iflowXml,
+		Function<ReceiverAdapter, IflowElementFilter> filterFunction = a -> model.filterForReceiverChannels(a, model.channelFilterForHttpEndpoints(a), model.channelFilterForProxyTypeOnPremise(a).negate());
+		Function<ReceiverAdapter, Function<IflowElement, Issue>> issueFunctionFunction = a -> e -> new UnencryptedEndpointsNotAllowedIssue(ruleId, tag, a, model.getChannelNameFromElement(e.getNode()), model.getChannelIdFromElement(e.getNode()));
+		return VisitingRulesUtil.visitorForMultipleFilters(
 			receiverAdaptersOfInterest,
-			xpathFunction,
+			filterFunction,
 			issueFunctionFunction,
 			consumer::consume);
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 }
@@ -4,7 +4,9 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
+import org.cpilint.CompiledXquery;
 import org.cpilint.IflowXml;
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
 import org.cpilint.issues.UserRoleIssue;
 import org.cpilint.model.SenderAdapter;
@@ -37,7 +39,7 @@ public final class UserRolesRule extends RuleBase {
          */
         final IflowXml iflowXml = iflow.getIflowXml();
 		final XmlModel model = XmlModelFactory.getModelFor(iflowXml);
-		final String xquery = model.xqueryForSenderChannelUserRoles();
+		final CompiledXquery xquery = model.compiledXqueryForSenderChannelUserRoles();
 		final XdmValue result = iflowXml.executeXquery(xquery);
 		/*
 		 * The returned sequence must either be empty, or the number of
@@ -75,4 +77,14 @@ public final class UserRolesRule extends RuleBase {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public ArtifactRequirements getRequirements() {
+        return ArtifactRequirements.none().withIflowXml();
+    }
+
 }
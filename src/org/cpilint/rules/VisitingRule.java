@@ -0,0 +1,16 @@
+package org.cpilint.rules;
+
+import org.cpilint.artifacts.IflowArtifact;
+
+public interface VisitingRule extends Rule {
+	
+	/*
+	 * A visiting rule inspects an iflow by visiting its classified elements
+	 * (channels, flow steps etc.). This allows CpiLint to classify the
+	 * elements of an iflow once, and then dispatch them to all visiting
+	 * rules in a single pass. The returned visitor is only used for the
+	 * provided iflow, and only from a single thread.
+	 */
+	public IflowElementVisitor visitorFor(IflowArtifact iflow);
+
+}
@@ -0,0 +1,29 @@
+package org.cpilint.rules;
+
+import org.cpilint.artifacts.ArtifactRequirements;
+import org.cpilint.artifacts.IflowArtifact;
+import org.cpilint.model.IflowElement;
+
+public abstract class VisitingRuleBase extends RuleBase implements VisitingRule {
+
+	@Override
+	public void inspect(IflowArtifact iflow) {
+		/*
+		 * When not inspected in a single pass with other rules, visit the
+		 * elements for this rule alone. The elements are classified once per
+		 * iflow, and shared by all visiting rules.
+		 */
+		IflowElementVisitor visitor = visitorFor(iflow);
+		for (IflowElement element : iflow.getIflowXml().getElementIndex().getElements()) {
+			visitor.visit(element);
+		}
+		visitor.endVisit();
+	}
+
+	@Override
+	public ArtifactRequirements getRequirements() {
+		// Visiting rules only inspect the iflow XML.
+		return ArtifactRequirements.none().withIflowXml();
+	}
+
+}
@@ -0,0 +1,51 @@
+package org.cpilint.rules;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.cpilint.issues.Issue;
+import org.cpilint.model.IflowElement;
+import org.cpilint.model.IflowElementFilter;
+
+final class VisitingRulesUtil {
+	
+	private VisitingRulesUtil() {
+		throw new AssertionError("Never supposed to be instantiated");
+	}
+	
+	static IflowElementVisitor visitorForSingleFilter(IflowElementFilter filter, Function<IflowElement, Issue> issueFunction, Consumer<Issue> issueConsumer) {
+		return e -> {
+			if (filter.test(e)) {
+				issueConsumer.accept(issueFunction.apply(e));
+			}
+		};
+	}
+	
+	static <T> IflowElementVisitor visitorForMultipleFilters(Set<T> tSet, Function<T, IflowElementFilter> filterFunction, Function<T, Function<IflowElement, Issue>> issueFunctionFunction, Consumer<Issue> issueConsumer) {
+		// Create the filters up front, rather than once per visited element.
+		Map<T, IflowElementFilter> filters = new LinkedHashMap<>();
+		for (T t : tSet) {
+			filters.put(t, filterFunction.apply(t));
+		}
+		return e -> filters.forEach((t, filter) -> {
+			if (filter.test(e)) {
+				issueConsumer.accept(issueFunctionFunction.apply(t).apply(e));
+			}
+		});
+	}
+	
+	static <T> void lookupAndConsumeIssues(Set<T> tSet, Function<T, List<IflowElement>> lookupFunction, Function<T, Function<IflowElement, Issue>> issueFunctionFunction, Consumer<Issue> issueConsumer) {
+		for (T t : tSet) {
+			Function<IflowElement, Issue> issueFunction = issueFunctionFunction.apply(t);
+			lookupFunction.apply(t)
+				.stream()
+				.map(issueFunction)
+				.forEach(issueConsumer);
+		}
+	}
+
+}
@@ -10,6 +10,7 @@ import org.dom4j.DocumentException;
 import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
 
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.ArtifactResourceType;
 import org.cpilint.artifacts.ArtifactResource;
 import org.cpilint.artifacts.IflowArtifact;
@@ -63,4 +64,14 @@ final class XsltVersionsRule extends RuleBase {
         return versionAttribute.getValue();
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	public ArtifactRequirements getRequirements() {
+		return ArtifactRequirements.none().withResourceContents(ArtifactResourceType.XSLT_MAPPING);
+	}
+
 }
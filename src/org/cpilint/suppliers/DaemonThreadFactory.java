@@ -0,0 +1,24 @@
+package org.cpilint.suppliers;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class DaemonThreadFactory implements ThreadFactory {
+
+	private final String namePrefix;
+	private final AtomicInteger threadCount = new AtomicInteger();
+
+	DaemonThreadFactory(String namePrefix) {
+		this.namePrefix = Objects.requireNonNull(namePrefix, "namePrefix must not be null");
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		// Daemon threads, so that a failed run does not keep the JVM alive.
+		Thread t = new Thread(r, namePrefix + threadCount.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	}
+
+}
@@ -0,0 +1,49 @@
+package org.cpilint.suppliers;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import org.cpilint.IflowXml;
+import org.cpilint.artifacts.ArtifactResource;
+import org.cpilint.artifacts.ArtifactResourceType;
+import org.cpilint.artifacts.IflowArtifact;
+import org.cpilint.artifacts.IflowArtifactTag;
+
+final class DigestedIflowArtifact implements IflowArtifact {
+
+	/*
+	 * An extracted iflow artifact, along with the digest of the archive it
+	 * was extracted from.
+	 */
+
+	private final IflowArtifact iflow;
+	private final String archiveDigest;
+
+	DigestedIflowArtifact(IflowArtifact iflow, String archiveDigest) {
+		assert iflow != null;
+		assert archiveDigest != null;
+		this.iflow = iflow;
+		this.archiveDigest = archiveDigest;
+	}
+
+	@Override
+	public Collection<ArtifactResource> getResourcesByType(ArtifactResourceType type) {
+		return iflow.getResourcesByType(type);
+	}
+
+	@Override
+	public IflowXml getIflowXml() {
+		return iflow.getIflowXml();
+	}
+
+	@Override
+	public IflowArtifactTag getTag() {
+		return iflow.getTag();
+	}
+
+	@Override
+	public Optional<String> getArchiveDigest() {
+		return Optional.of(archiveDigest);
+	}
+
+}
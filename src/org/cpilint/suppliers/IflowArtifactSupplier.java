@@ -1,5 +1,7 @@
 package org.cpilint.suppliers;
 
+import org.cpilint.LintResultsCache;
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
 
 public interface IflowArtifactSupplier {
@@ -14,4 +16,17 @@ public interface IflowArtifactSupplier {
 	
 	public int artifactsSupplied();
 
+	public default void setRequirements(ArtifactRequirements requirements) {
+		// Suppliers that cannot reduce their work based on the requirements ignore them.
+	}
+
+	public default void setResultsCache(LintResultsCache resultsCache) {
+		/*
+		 * Suppliers that can digest an archive before extracting it supply
+		 * each iflow artifact with its archive digest, and skip extracting
+		 * artifacts that the results cache already holds results for. Other
+		 * suppliers ignore the results cache.
+		 */
+	}
+
 }
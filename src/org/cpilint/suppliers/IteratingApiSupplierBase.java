@@ -2,19 +2,39 @@ package org.cpilint.suppliers;
 
 import java.util.Iterator;
 import java.util.Objects;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.cpilint.api.CloudIntegrationApi;
 import org.cpilint.api.CloudIntegrationApiError;
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
 
 abstract class IteratingApiSupplierBase implements IflowArtifactSupplier {
 
+	private static final Logger logger = LoggerFactory.getLogger(IteratingApiSupplierBase.class);
 	protected final CloudIntegrationApi api;
 	protected Iterator<String> iflowArtifactIdIterator;
 	private int artifactsSupplied = 0;
-	
-	protected IteratingApiSupplierBase(CloudIntegrationApi api) {
+	private ArtifactRequirements requirements = ArtifactRequirements.all();
+	protected final int maxDownloads;
+	private ExecutorService downloadExecutor;
+	private CompletionService<IflowArtifact> downloads;
+	private int downloadsInFlight = 0;
+
+	protected IteratingApiSupplierBase(CloudIntegrationApi api, int maxDownloads) {
 		this.api = Objects.requireNonNull(api, "api must not be null");
+		if (maxDownloads < 1) {
+			throw new IllegalArgumentException("maxDownloads must be at least one");
+		}
+		this.maxDownloads = maxDownloads;
 	}
 
 	@Override
@@ -23,23 +43,89 @@ abstract class IteratingApiSupplierBase implements IflowArtifactSupplier {
 			throw new IllegalStateException("Cannot supply further iflow artifacts");
 		}
 		IflowArtifact iflow = null;
-		try {
-			iflow = api.getIflowArtifact(iflowArtifactIdIterator.next());
-		} catch (CloudIntegrationApiError e) {
-			throw new IflowArtifactSupplierError("API error when retrieving iflow", e);
+		if (maxDownloads == 1) {
+			try {
+				iflow = api.getIflowArtifact(iflowArtifactIdIterator.next(), requirements);
+			} catch (CloudIntegrationApiError e) {
+				throw new IflowArtifactSupplierError("API error when retrieving iflow", e);
+			}
+		} else {
+			iflow = supplyFromDownloads();
 		}
 		artifactsSupplied++;
 		return iflow;
 	}
-	
+
 	@Override
 	public boolean canSupply() {
-		return iflowArtifactIdIterator.hasNext();
+		return downloadsInFlight > 0 || iflowArtifactIdIterator.hasNext();
 	}
 
 	@Override
 	public int artifactsSupplied() {
 		return artifactsSupplied;
 	}
-	
+
+	@Override
+	public void setRequirements(ArtifactRequirements requirements) {
+		this.requirements = Objects.requireNonNull(requirements, "requirements must not be null");
+	}
+
+	@Override
+	public void shutdown() {
+		if (downloadExecutor != null) {
+			downloadExecutor.shutdownNow();
+		}
+	}
+
+	private IflowArtifact supplyFromDownloads() {
+		/*
+		 * Keep up to maxDownloads iflow artifacts downloading at the same time,
+		 * and supply them in the order they complete. Since the supplier is
+		 * only called from a single thread, the bookkeeping fields need no
+		 * synchronization; the API itself must be thread-safe.
+		 */
+		if (downloads == null) {
+			logger.info("Retrieving up to {} iflow artifacts concurrently", maxDownloads);
+			downloadExecutor = Executors.newFixedThreadPool(maxDownloads, new DaemonThreadFactory("cpilint-download-"));
+			downloads = new ExecutorCompletionService<>(downloadExecutor);
+		}
+		while (downloadsInFlight < maxDownloads && iflowArtifactIdIterator.hasNext()) {
+			final String iflowArtifactId = iflowArtifactIdIterator.next();
+			final ArtifactRequirements downloadRequirements = requirements;
+			downloads.submit(() -> api.getIflowArtifact(iflowArtifactId, downloadRequirements));
+			downloadsInFlight++;
+		}
+		Future<IflowArtifact> completed;
+		try {
+			completed = downloads.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			downloadExecutor.shutdownNow();
+			throw new IflowArtifactSupplierError("Interrupted while retrieving iflow", e);
+		}
+		downloadsInFlight--;
+		try {
+			return completed.get();
+		} catch (ExecutionException e) {
+			// There's no point in finishing the remaining downloads.
+			downloadExecutor.shutdownNow();
+			Throwable cause = e.getCause();
+			if (cause instanceof CloudIntegrationApiError) {
+				throw new IflowArtifactSupplierError("API error when retrieving iflow", cause);
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			// getIflowArtifact cannot throw checked exceptions, so this should never happen.
+			throw new AssertionError("Unexpected Throwable from download", cause);
+		} catch (InterruptedException e) {
+			// The Future has already completed, so this should never happen.
+			throw new AssertionError("Interrupted while getting a completed download", e);
+		}
+	}
+
 }
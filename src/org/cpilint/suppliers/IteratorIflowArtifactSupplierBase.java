@@ -4,14 +4,22 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.Objects;
+import java.util.Optional;
+import org.cpilint.LintResultsCache;
+import org.cpilint.artifacts.ArtifactRequirements;
 import org.cpilint.artifacts.IflowArtifact;
+import org.cpilint.artifacts.IflowArtifactTag;
 import org.cpilint.artifacts.ZipArchiveIflowArtifact;
+import org.cpilint.util.SaxonUtil;
 import net.sf.saxon.s9api.SaxonApiException;
 
 abstract class IteratorIflowArtifactSupplierBase implements IflowArtifactSupplier {
 	
 	protected Iterator<Path> iterator;
 	private int artifactsSupplied = 0;
+	private ArtifactRequirements requirements = ArtifactRequirements.all();
+	private LintResultsCache resultsCache;
 
 	@Override
 	public void setup() {
@@ -28,10 +36,12 @@ abstract class IteratorIflowArtifactSupplierBase implements IflowArtifactSupplie
 		IflowArtifact iflow;
 		try {
 			// The current Path can be either a file or a directory and they are processed differently.
-			if (Files.isRegularFile(p)) {
-				iflow = ZipArchiveIflowArtifact.fromArchiveFile(p);
+			if (Files.isRegularFile(p) && resultsCache != null) {
+				iflow = fromZipFileIfChanged(p);
+			} else if (Files.isRegularFile(p)) {
+				iflow = ZipArchiveIflowArtifact.fromZipFile(p, SaxonUtil.getSharedProcessor(), requirements);
 			} else if (Files.isDirectory(p)) {
-				iflow = ZipArchiveIflowArtifact.fromDirectory(p);
+				iflow = ZipArchiveIflowArtifact.fromDirectory(p, SaxonUtil.getSharedProcessor(), requirements);
 			} else {
 				// This should never happen.
 				throw new AssertionError("Current Path is neither a file nor a directory: " + p.toString());
@@ -58,4 +68,28 @@ abstract class IteratorIflowArtifactSupplierBase implements IflowArtifactSupplie
 		return artifactsSupplied;
 	}
 
+	@Override
+	public void setRequirements(ArtifactRequirements requirements) {
+		this.requirements = Objects.requireNonNull(requirements, "requirements must not be null");
+	}
+
+	@Override
+	public void setResultsCache(LintResultsCache resultsCache) {
+		this.resultsCache = Objects.requireNonNull(resultsCache, "resultsCache must not be null");
+	}
+
+	private IflowArtifact fromZipFileIfChanged(Path p) throws IOException, SaxonApiException {
+		/*
+		 * Digesting the archive is much cheaper than extracting it, so
+		 * archives that the results cache holds results for are never
+		 * extracted. Unpacked directories are always extracted.
+		 */
+		String archiveDigest = LintResultsCache.digestOf(p);
+		Optional<IflowArtifactTag> unchangedTag = resultsCache.unchangedTag(archiveDigest);
+		if (unchangedTag.isPresent()) {
+			return new UnchangedIflowArtifact(unchangedTag.get(), archiveDigest);
+		}
+		return new DigestedIflowArtifact(ZipArchiveIflowArtifact.fromZipFile(p, SaxonUtil.getSharedProcessor(), requirements), archiveDigest);
+	}
+
 }
@@ -1,8 +1,19 @@
 package org.cpilint.suppliers;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -12,49 +23,165 @@ import org.cpilint.api.CloudIntegrationApi;
 import org.cpilint.api.CloudIntegrationApiError;
 
 abstract class PackageSupplierBase extends IteratingApiSupplierBase {
-	
+
 	private static final Logger logger = LoggerFactory.getLogger(PackageSupplierBase.class);
-	 
-	protected PackageSupplierBase(CloudIntegrationApi api) {
-		super(api);
+	private PackageListingIterator listingIterator;
+
+	protected PackageSupplierBase(CloudIntegrationApi api, int maxDownloads) {
+		super(api, maxDownloads);
+	}
+
+	@Override
+	public void shutdown() {
+		// Listings may still be running, e.g. if inspection stopped early.
+		if (listingIterator != null) {
+			listingIterator.shutdown();
+		}
+		super.shutdown();
 	}
-	 
+
 	protected Iterator<String> iteratorFromPackages(Set<String> packageIds, boolean skipDrafts, Set<String> skipIflowIds) {
 		assert packageIds != null;
 		assert skipIflowIds != null;
+		if (packageIds.isEmpty()) {
+			logger.info("Please note that there are no iflows left to iterate");
+			return Collections.emptyIterator();
+		}
+		listingIterator = new PackageListingIterator(packageIds, skipDrafts, skipIflowIds);
+		return listingIterator;
+	}
+
+	protected Iterator<String> iteratorFromListedPackages(Map<String, Set<String>> iflowIdsByPackage, Set<String> skipIflowIds) {
+		assert iflowIdsByPackage != null;
+		assert skipIflowIds != null;
 		/*
-		 * Fetch all iflow artifact IDs from the provided packages
-		 * (possibly skipping drafts).
+		 * The packages have already been listed, e.g. in a single expanded
+		 * request, so all that remains is to filter out the iflow IDs that
+		 * are to be skipped (if any).
 		 */
 		Set<String> iflowIds = new HashSet<>();
-		try {
-			for (String packageId : packageIds) {
-				iflowIds.addAll(api.getIflowArtifactIdsFromPackage(packageId, skipDrafts));
-			}
-		} catch (CloudIntegrationApiError e) {
-			throw new IflowArtifactSupplierError("API error when fetching iflow IDs", e);
-		}
-		/*
-		 * Filter out all iflow IDs, that are to be skipped (if any).
-		 */ 
-		Set<String> filteredIflowIds = iflowIds
+		iflowIdsByPackage.values().forEach(iflowIds::addAll);
+		Set<String> skippedIflowIds = iflowIds
 			.stream()
-			.filter(i -> !skipIflowIds.contains(i))
+			.filter(skipIflowIds::contains)
 			.collect(Collectors.toSet());
+		iflowIds.removeAll(skippedIflowIds);
+		logListingResult(skippedIflowIds, iflowIds.isEmpty());
+		return iflowIds.iterator();
+	}
+
+	private static void logListingResult(Set<String> skippedIflowIds, boolean noIflowsLeft) {
 		/*
 		 * Log the iflows that were skipped (if any).
 		 */
-		if (filteredIflowIds.size() < iflowIds.size()) {
+		if (!skippedIflowIds.isEmpty()) {
 			logger.debug("The following iflow IDs were skipped: {}",
-				iflowIds.stream().filter(i -> !filteredIflowIds.contains(i)).collect(Collectors.joining(",")));
+				skippedIflowIds.stream().collect(Collectors.joining(",")));
 		}
 		/*
-		 * If there are no iflows left at this point, log that fact.
+		 * If there are no iflows left to iterate, log that fact.
 		 */
-		if (filteredIflowIds.isEmpty()) {
+		if (noIflowsLeft) {
 			logger.info("Please note that there are no iflows left to iterate");
 		}
-		return filteredIflowIds.iterator();
 	}
 
-}
\ No newline at end of file
+	private final class PackageListingIterator implements Iterator<String> {
+
+		/*
+		 * Fetches the iflow artifact IDs of the provided packages (possibly
+		 * skipping drafts) concurrently, with at most maxDownloads listings
+		 * in flight. The IDs of a package are handed out as soon as its
+		 * listing completes, so iflows can be retrieved and inspected while
+		 * the remaining packages are still being listed. Like the supplier,
+		 * the iterator is only used from a single thread.
+		 */
+
+		private final Set<String> skipIflowIds;
+		private final ExecutorService listingExecutor;
+		private final CompletionService<Set<String>> listings;
+		private int listingsPending;
+		private final Deque<String> ready = new ArrayDeque<>();
+		private final Set<String> seenIflowIds = new HashSet<>();
+		private final Set<String> skippedIflowIds = new HashSet<>();
+		private boolean finished = false;
+
+		private PackageListingIterator(Set<String> packageIds, boolean skipDrafts, Set<String> skipIflowIds) {
+			this.skipIflowIds = skipIflowIds;
+			listingExecutor = Executors.newFixedThreadPool(Math.min(maxDownloads, packageIds.size()), new DaemonThreadFactory("cpilint-listing-"));
+			listings = new ExecutorCompletionService<>(listingExecutor);
+			for (String packageId : packageIds) {
+				listings.submit(() -> api.getIflowArtifactIdsFromPackage(packageId, skipDrafts));
+			}
+			listingsPending = packageIds.size();
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (ready.isEmpty() && listingsPending > 0) {
+				addIflowIds(nextListing());
+				listingsPending--;
+			}
+			if (ready.isEmpty() && !finished) {
+				finish();
+			}
+			return !ready.isEmpty();
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return ready.poll();
+		}
+
+		private Set<String> nextListing() {
+			try {
+				return listings.take().get();
+			} catch (ExecutionException e) {
+				// There's no point in finishing the remaining listings.
+				listingExecutor.shutdownNow();
+				Throwable cause = e.getCause();
+				if (cause instanceof CloudIntegrationApiError) {
+					throw new IflowArtifactSupplierError("API error when fetching iflow IDs", cause);
+				}
+				if (cause instanceof Error) {
+					throw (Error)cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				}
+				// getIflowArtifactIdsFromPackage cannot throw checked exceptions, so this should never happen.
+				throw new AssertionError("Unexpected Throwable from package listing", cause);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				listingExecutor.shutdownNow();
+				throw new IflowArtifactSupplierError("Interrupted while fetching iflow IDs", e);
+			}
+		}
+
+		private void addIflowIds(Set<String> iflowIds) {
+			for (String iflowId : iflowIds) {
+				if (skipIflowIds.contains(iflowId)) {
+					// Filter out iflow IDs, that are to be skipped.
+					skippedIflowIds.add(iflowId);
+				} else if (seenIflowIds.add(iflowId)) {
+					ready.add(iflowId);
+				}
+			}
+		}
+
+		private void shutdown() {
+			listingExecutor.shutdownNow();
+		}
+
+		private void finish() {
+			finished = true;
+			listingExecutor.shutdown();
+			logListingResult(skippedIflowIds, seenIflowIds.isEmpty());
+		}
+
+	}
+
+}
@@ -1,6 +1,7 @@
 package org.cpilint.suppliers;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -18,11 +19,17 @@ public final class TenantAllArtifactsSupplier extends PackageSupplierBase {
 	private boolean skipDrafts;
 	private Set<String> skipIflowArtifactIds;
 	private Set<String> skipPackageIds;
+	private boolean expandPackages;
 	
 	public TenantAllArtifactsSupplier(CloudIntegrationApi api, boolean skipSapPackages, boolean skipDrafts, Set<String> skipIflowArtifactIds, Set<String> skipPackageIds) {
-		super(api);
+		this(api, skipSapPackages, skipDrafts, skipIflowArtifactIds, skipPackageIds, 1, false);
+	}
+
+	public TenantAllArtifactsSupplier(CloudIntegrationApi api, boolean skipSapPackages, boolean skipDrafts, Set<String> skipIflowArtifactIds, Set<String> skipPackageIds, int maxDownloads, boolean expandPackages) {
+		super(api, maxDownloads);
 		this.skipSapPackages = skipSapPackages;
 		this.skipDrafts = skipDrafts;
+		this.expandPackages = expandPackages;
 		/*
 		 * It's okay for skipIflowArtifactIds to reference an empty Set, but
 		 * it must not be null.
@@ -41,10 +48,18 @@ public final class TenantAllArtifactsSupplier extends PackageSupplierBase {
 	public void setup() {
 		/*
 		 * Fetch all packages from the tenant (possibly skipping SAP packages).
+		 * When expanding packages, their iflow IDs are fetched along with
+		 * them (possibly skipping drafts).
 		 */
 		Set<String> packageIds;
+		Map<String, Set<String>> iflowIdsByPackage = null;
 		try {
-			packageIds = api.getEditableIntegrationPackageIds(skipSapPackages);
+			if (expandPackages) {
+				iflowIdsByPackage = api.getEditableIntegrationPackagesWithIflowArtifactIds(skipSapPackages, skipDrafts);
+				packageIds = iflowIdsByPackage.keySet();
+			} else {
+				packageIds = api.getEditableIntegrationPackageIds(skipSapPackages);
+			}
 		} catch (CloudIntegrationApiError e) {
 			throw new IflowArtifactSupplierError("API error when fetching package IDs", e);
 		}
@@ -62,12 +77,12 @@ public final class TenantAllArtifactsSupplier extends PackageSupplierBase {
 			logger.debug("The following package IDs were skipped: {}",
 				packageIds.stream().filter(p -> !filteredPackageIds.contains(p)).collect(Collectors.joining(",")));
 		}
-		iflowArtifactIdIterator = iteratorFromPackages(filteredPackageIds, skipDrafts, skipIflowArtifactIds);
-	}
-	
-	@Override
-	public void shutdown() {
-		// No shutdown steps needed.
+		if (expandPackages) {
+			iflowIdsByPackage.keySet().retainAll(filteredPackageIds);
+			iflowArtifactIdIterator = iteratorFromListedPackages(iflowIdsByPackage, skipIflowArtifactIds);
+		} else {
+			iflowArtifactIdIterator = iteratorFromPackages(filteredPackageIds, skipDrafts, skipIflowArtifactIds);
+		}
 	}
 
 }
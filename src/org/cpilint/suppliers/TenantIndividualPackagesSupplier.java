@@ -1,6 +1,7 @@
 package org.cpilint.suppliers;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -17,10 +18,16 @@ public final class TenantIndividualPackagesSupplier extends PackageSupplierBase
 	private boolean skipDrafts;
 	private Set<String> packageIds;
 	private Set<String> skipIflowArtifactIds;
+	private boolean expandPackages;
 
 	public TenantIndividualPackagesSupplier(CloudIntegrationApi api, boolean skipDrafts, Set<String> packageIds, Set<String> skipIflowArtifactIds) {
-		super(api);
+		this(api, skipDrafts, packageIds, skipIflowArtifactIds, 1, false);
+	}
+
+	public TenantIndividualPackagesSupplier(CloudIntegrationApi api, boolean skipDrafts, Set<String> packageIds, Set<String> skipIflowArtifactIds, int maxDownloads, boolean expandPackages) {
+		super(api, maxDownloads);
 		this.skipDrafts = skipDrafts;
+		this.expandPackages = expandPackages;
 		Objects.requireNonNull(packageIds, "packageIds must not be null");
 		if (packageIds.isEmpty()) {
 			throw new IllegalArgumentException("No package IDs provided");
@@ -43,9 +50,16 @@ public final class TenantIndividualPackagesSupplier extends PackageSupplierBase
 		 * HTTP 404 when trying to fetch their iflow artifacts.
 		 */
 		Set<String> editablePackageIds = new HashSet<>(packageIds);
+		Map<String, Set<String>> iflowIdsByPackage = null;
 		final boolean packagesFiltered;
 		try {
-			packagesFiltered = editablePackageIds.retainAll(api.getEditableIntegrationPackageIds(false));
+			if (expandPackages) {
+				// The iflow IDs are fetched along with the packages.
+				iflowIdsByPackage = api.getEditableIntegrationPackagesWithIflowArtifactIds(false, skipDrafts);
+				packagesFiltered = editablePackageIds.retainAll(iflowIdsByPackage.keySet());
+			} else {
+				packagesFiltered = editablePackageIds.retainAll(api.getEditableIntegrationPackageIds(false));
+			}
 		} catch (CloudIntegrationApiError e) {
 			throw new IflowArtifactSupplierError("API error when fetching editable packages", e);
 		}
@@ -56,12 +70,12 @@ public final class TenantIndividualPackagesSupplier extends PackageSupplierBase
 			logger.debug("The following read-only or nonexistent packages were filtered out: {}",
 				packageIds.stream().filter(p -> !editablePackageIds.contains(p)).collect(Collectors.joining(",")));
 		}
-		iflowArtifactIdIterator = iteratorFromPackages(editablePackageIds, skipDrafts, skipIflowArtifactIds);
-	}
-
-	@Override
-	public void shutdown() {
-		// No shutdown steps required.
+		if (expandPackages) {
+			iflowIdsByPackage.keySet().retainAll(editablePackageIds);
+			iflowArtifactIdIterator = iteratorFromListedPackages(iflowIdsByPackage, skipIflowArtifactIds);
+		} else {
+			iflowArtifactIdIterator = iteratorFromPackages(editablePackageIds, skipDrafts, skipIflowArtifactIds);
+		}
 	}
 
 }
@@ -14,17 +14,16 @@ public final class TenantSingleArtifactsSupplier extends IteratingApiSupplierBas
 	}
 	
 	public TenantSingleArtifactsSupplier(CloudIntegrationApi api, Set<String> iflowArtifactIds) {
-		super(api);
+		this(api, iflowArtifactIds, 1);
+	}
+
+	public TenantSingleArtifactsSupplier(CloudIntegrationApi api, Set<String> iflowArtifactIds, int maxDownloads) {
+		super(api, maxDownloads);
 		Objects.requireNonNull(iflowArtifactIds, "iflowArtifactIds must not be null");
 		if (iflowArtifactIds.isEmpty()) {
 			throw new IllegalArgumentException("No iflow artifact IDs provided");
 		}
 		iflowArtifactIdIterator = new HashSet<>(iflowArtifactIds).iterator();
 	}
-	
-	@Override
-	public void shutdown() {
-		// No shutdown steps needed either.
-	}
 
 }
@@ -0,0 +1,51 @@
+package org.cpilint.suppliers;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import org.cpilint.IflowXml;
+import org.cpilint.artifacts.ArtifactResource;
+import org.cpilint.artifacts.ArtifactResourceType;
+import org.cpilint.artifacts.IflowArtifact;
+import org.cpilint.artifacts.IflowArtifactError;
+import org.cpilint.artifacts.IflowArtifactTag;
+
+final class UnchangedIflowArtifact implements IflowArtifact {
+
+	/*
+	 * An iflow artifact that the results cache already holds results for.
+	 * Its archive is never extracted; only the tag and the digest are
+	 * known, and the results are replayed instead of inspecting it.
+	 */
+
+	private final IflowArtifactTag tag;
+	private final String archiveDigest;
+
+	UnchangedIflowArtifact(IflowArtifactTag tag, String archiveDigest) {
+		assert tag != null;
+		assert archiveDigest != null;
+		this.tag = tag;
+		this.archiveDigest = archiveDigest;
+	}
+
+	@Override
+	public Collection<ArtifactResource> getResourcesByType(ArtifactResourceType type) {
+		throw new IflowArtifactError("Resources not extracted, since the iflow artifact has not changed");
+	}
+
+	@Override
+	public IflowXml getIflowXml() {
+		throw new IflowArtifactError("Iflow XML not extracted, since the iflow artifact has not changed");
+	}
+
+	@Override
+	public IflowArtifactTag getTag() {
+		return tag;
+	}
+
+	@Override
+	public Optional<String> getArchiveDigest() {
+		return Optional.of(archiveDigest);
+	}
+
+}
@@ -1,5 +1,15 @@
 package org.cpilint.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
 public final class HttpUtil {
 
     // Status code constants.
@@ -13,10 +23,92 @@ public final class HttpUtil {
     // Header name constants.
 
     public static final String REQUEST_HEADER_AUTHORIZATION = "Authorization";
+    public static final String REQUEST_HEADER_ACCEPT_ENCODING = "Accept-Encoding";
     public static final String RESPONSE_HEADER_CONTENT_TYPE = "content-type";
+    public static final String RESPONSE_HEADER_CONTENT_ENCODING = "content-encoding";
+    public static final String RESPONSE_HEADER_RETRY_AFTER = "retry-after";
+
+    // Content coding constants.
+
+    public static final String GZIP_CONTENT_CODING = "gzip";
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
 
     private HttpUtil() {
-        throw new AssertionError("Never supposed to be instantiated"); 
+        throw new AssertionError("Never supposed to be instantiated");
+    }
+
+    public static HttpClient newHttpClient(boolean http2) {
+        /*
+         * An HttpClient keeps a pool of open connections, which are only
+         * reused by requests sent with the same client. So the caller should
+         * create one client and pass it to everything that sends requests to
+         * the same server.
+         */
+        return HttpClient.newBuilder()
+            // HTTP/2 falls back to HTTP/1.1 if the server does not support it.
+            .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
+    }
+
+    public static BodyHandler<InputStream> ofDecompressedInputStream() {
+        /*
+         * Like BodyHandlers.ofInputStream, except that a gzip compressed body
+         * is decompressed. HttpClient does not do that by itself.
+         */
+        return responseInfo -> {
+            boolean gzipped = responseInfo.headers()
+                .firstValue(RESPONSE_HEADER_CONTENT_ENCODING)
+                .map(GZIP_CONTENT_CODING::equalsIgnoreCase)
+                .orElse(false);
+            BodySubscriber<InputStream> subscriber = BodySubscribers.ofInputStream();
+            return gzipped ? BodySubscribers.mapping(subscriber, GzipBodyInputStream::new) : subscriber;
+        };
+    }
+
+    private static final class GzipBodyInputStream extends InputStream {
+
+        /*
+         * The GZIPInputStream constructor reads the gzip header, which would
+         * block the HttpClient thread that maps the body. So the
+         * GZIPInputStream is only created on the first read, by the thread
+         * consuming the body.
+         */
+
+        private final InputStream compressed;
+        private InputStream decompressed;
+
+        private GzipBodyInputStream(InputStream compressed) {
+            this.compressed = compressed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return decompressed().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return decompressed().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decompressed != null) {
+                decompressed.close();
+            } else {
+                compressed.close();
+            }
+        }
+
+        private InputStream decompressed() throws IOException {
+            if (decompressed == null) {
+                decompressed = new GZIPInputStream(compressed);
+            }
+            return decompressed;
+        }
+
     }
 
 }
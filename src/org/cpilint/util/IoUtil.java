@@ -1,11 +1,16 @@
 package org.cpilint.util;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.Objects;
 
 public final class IoUtil {
 	
+	private static final int SKIP_BUFFER_SIZE = 8192;
+
 	private IoUtil() {
 		throw new AssertionError("Never supposed to be instantiated");
 	}
@@ -15,4 +20,72 @@ public final class IoUtil {
 		return new String(bytes, cs);
 	}
 
+	public static InputStream nonClosing(InputStream in) {
+		/*
+		 * Returns a stream that reads from the provided stream, but does not
+		 * close it. Useful when handing a stream to code that closes it when
+		 * done, while the caller still needs it afterwards (e.g. a ZIP entry
+		 * stream, or a download that is not fully read yet).
+		 */
+		Objects.requireNonNull(in, "in must not be null");
+		return new FilterInputStream(in) {
+			@Override
+			public void close() {
+				// The caller closes the underlying stream.
+			}
+		};
+	}
+
+	public static InputStream copying(InputStream in, OutputStream copy) {
+		/*
+		 * Returns a stream that reads from the provided stream, and writes
+		 * every byte read to the copy as well. Closing the returned stream
+		 * closes the provided stream, but not the copy.
+		 */
+		Objects.requireNonNull(in, "in must not be null");
+		Objects.requireNonNull(copy, "copy must not be null");
+		return new FilterInputStream(in) {
+			@Override
+			public int read() throws IOException {
+				int b = in.read();
+				if (b != -1) {
+					copy.write(b);
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = in.read(b, off, len);
+				if (n > 0) {
+					copy.write(b, off, n);
+				}
+				return n;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				// Skipped bytes must be copied too, so they are read instead.
+				if (n <= 0) {
+					return 0;
+				}
+				byte[] buffer = new byte[(int)Math.min(n, SKIP_BUFFER_SIZE)];
+				long skipped = 0;
+				while (skipped < n) {
+					int read = read(buffer, 0, (int)Math.min(n - skipped, buffer.length));
+					if (read == -1) {
+						break;
+					}
+					skipped += read;
+				}
+				return skipped;
+			}
+
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+		};
+	}
+
 }
@@ -0,0 +1,24 @@
+package org.cpilint.util;
+
+import net.sf.saxon.s9api.Processor;
+
+public final class SaxonUtil {
+
+	/*
+	 * Creating a Processor creates a new Saxon Configuration (with its own
+	 * name pool etc.), which is expensive. A Processor is thread-safe, so a
+	 * single instance is shared by everything in CPILint that needs one.
+	 * Nodes, compilers and executables from the shared Processor can be
+	 * combined freely, which is not the case for separate Processors.
+	 */
+	private static final Processor sharedProcessor = new Processor(false);
+
+	private SaxonUtil() {
+		throw new AssertionError("Never supposed to be instantiated");
+	}
+
+	public static Processor getSharedProcessor() {
+		return sharedProcessor;
+	}
+
+}